@@ -0,0 +1,171 @@
+#include "biquad_cascade.h"
+#include <algorithm>
+#include <cmath>
+
+// ── RBJ biquad design ───────────────────────────────────────────────────────
+Biquad designBiquad(int type, double fc, double Q, double gainDb, double fs) {
+    double A     = std::pow(10.0, gainDb / 40.0);
+    double w0    = 2 * M_PI * fc / fs;
+    double cosW0 = std::cos(w0);
+    double alpha = std::sin(w0) / (2 * Q);
+    double b0, b1, b2, a0, a1, a2;
+    if (type == BAND_LOW_SHELF) {
+        double sqA2 = 2 * std::sqrt(A) * alpha;
+        a0 = (A + 1) + (A - 1) * cosW0 + sqA2;
+        a1 = -2 * ((A - 1) + (A + 1) * cosW0);
+        a2 = (A + 1) + (A - 1) * cosW0 - sqA2;
+        b0 = A * ((A + 1) - (A - 1) * cosW0 + sqA2);
+        b1 = 2 * A * ((A - 1) - (A + 1) * cosW0);
+        b2 = A * ((A + 1) - (A - 1) * cosW0 - sqA2);
+    } else if (type == BAND_HIGH_SHELF) {
+        double sqA2 = 2 * std::sqrt(A) * alpha;
+        a0 = (A + 1) - (A - 1) * cosW0 + sqA2;
+        a1 = 2 * ((A - 1) - (A + 1) * cosW0);
+        a2 = (A + 1) - (A - 1) * cosW0 - sqA2;
+        b0 = A * ((A + 1) + (A - 1) * cosW0 + sqA2);
+        b1 = -2 * A * ((A - 1) + (A + 1) * cosW0);
+        b2 = A * ((A + 1) + (A - 1) * cosW0 - sqA2);
+    } else {
+        a0 = 1 + alpha / A;
+        a1 = -2 * cosW0;
+        a2 = 1 - alpha / A;
+        b0 = 1 + alpha * A;
+        b1 = -2 * cosW0;
+        b2 = 1 - alpha * A;
+    }
+    return { float(b0 / a0), float(b1 / a0), float(b2 / a0), float(a1 / a0), float(a2 / a0) };
+}
+
+double biquadMagnitudeDb(const Biquad& c, double f, double fs) {
+    // widen first: near DC the terms cancel, and float products lose dBs on low shelves
+    double b0 = c.b0, b1 = c.b1, b2 = c.b2, a1 = c.a1, a2 = c.a2;
+    double w   = 2 * M_PI * f / fs;
+    double cw  = std::cos(w), c2w = std::cos(2 * w);
+    double num = b0*b0 + b1*b1 + b2*b2
+               + 2 * (b0*b1 + b1*b2) * cw + 2 * b0*b2 * c2w;
+    double den = 1 + a1*a1 + a2*a2
+               + 2 * (a1 + a1*a2) * cw + 2 * a2 * c2w;
+    return 10.0 * std::log10(num / den);
+}
+
+static const Biquad kIdentity = { 1.f, 0.f, 0.f, 0.f, 0.f };
+
+// ── BiquadCascade ───────────────────────────────────────────────────────────
+BiquadCascade::BiquadCascade(int sampleRate, int channels)
+        : m_fs(sampleRate), m_channels(std::max(1, channels)),
+          m_state(size_t(std::max(1, channels)) * kMaxBands * 2, 0.f) {
+    for (auto &s : m_sets) {
+        s.numBands = 0;
+        s.preamp   = 1.f;
+        std::fill(std::begin(s.bands), std::end(s.bands), kIdentity);
+    }
+    m_active = m_sets[0];
+    m_target = m_sets[0];
+}
+
+void BiquadCascade::setBands(const int* types, const float* fc, const float* q,
+                             const float* gainDb, int numBands, float preampDb) {
+    CoeffSet &s = m_sets[m_back];
+    s.numBands = std::min(std::max(numBands, 0), int(kMaxBands));
+    s.preamp   = std::pow(10.f, preampDb / 20.f);
+    // keep every band strictly below Nyquist with a positive Q; outside that the
+    // RBJ design has poles on or outside the unit circle and the cascade blows up
+    const float fcMax = 0.49f * m_fs;
+    for (int b = 0; b < kMaxBands; b++) {
+        s.bands[b] = b < s.numBands
+                ? designBiquad(types[b], std::min(std::max(fc[b], 1.f), fcMax),
+                               std::max(q[b], 0.01f), gainDb[b], m_fs)
+                : kIdentity;
+    }
+    // publish: hand the filled buffer to the middle slot and take the old one back
+    m_back = m_middle.exchange(m_back | kDirty, std::memory_order_acq_rel) & ~kDirty;
+}
+
+void BiquadCascade::pullPending() {
+    if (!(m_middle.load(std::memory_order_acquire) & kDirty)) return;
+    m_front  = m_middle.exchange(m_front, std::memory_order_acq_rel) & ~kDirty;
+    m_target = m_sets[m_front];
+    m_ramping = true;
+}
+
+void BiquadCascade::reset() {
+    std::fill(m_state.begin(), m_state.end(), 0.f);
+}
+
+void BiquadCascade::processChannel(float* x, int frames, int stride, int ch) {
+    float* z = &m_state[size_t(ch) * kMaxBands * 2];
+    float inv = 1.f / float(frames);
+
+    // preamp first, ramped if it changed
+    float g  = m_active.preamp;
+    float dg = m_ramping ? (m_target.preamp - g) * inv : 0.f;
+    for (int n = 0; n < frames; n++) {
+        x[n * stride] *= g;
+        g += dg;
+    }
+
+    int bands = m_ramping ? std::max(m_activeBands, m_target.numBands) : m_activeBands;
+    for (int b = 0; b < bands; b++) {
+        Biquad c = m_active.bands[b];
+        float z1 = z[2*b], z2 = z[2*b + 1];
+        if (m_ramping) {
+            const Biquad &t = m_target.bands[b];
+            float db0 = (t.b0 - c.b0) * inv, db1 = (t.b1 - c.b1) * inv, db2 = (t.b2 - c.b2) * inv;
+            float da1 = (t.a1 - c.a1) * inv, da2 = (t.a2 - c.a2) * inv;
+            for (int n = 0; n < frames; n++) {
+                float in  = x[n * stride];
+                float out = c.b0 * in + z1;
+                z1 = c.b1 * in - c.a1 * out + z2;
+                z2 = c.b2 * in - c.a2 * out;
+                x[n * stride] = out;
+                c.b0 += db0; c.b1 += db1; c.b2 += db2; c.a1 += da1; c.a2 += da2;
+            }
+        } else {
+            for (int n = 0; n < frames; n++) {
+                float in  = x[n * stride];
+                float out = c.b0 * in + z1;
+                z1 = c.b1 * in - c.a1 * out + z2;
+                z2 = c.b2 * in - c.a2 * out;
+                x[n * stride] = out;
+            }
+        }
+        // flush denormals so a silent tail does not stall the core
+        if (std::fabs(z1) < 1e-20f) z1 = 0.f;
+        if (std::fabs(z2) < 1e-20f) z2 = 0.f;
+        z[2*b] = z1;
+        z[2*b + 1] = z2;
+    }
+}
+
+void BiquadCascade::process(float* interleaved, int frames) {
+    if (frames <= 0) return;
+    pullPending();
+    for (int ch = 0; ch < m_channels; ch++) {
+        processChannel(interleaved + ch, frames, m_channels, ch);
+    }
+    if (m_ramping) {
+        // bands that were removed ended the ramp as identity; run them one more block so
+        // their memory drains (identity clears z1/z2 within two samples) before dropping them
+        m_retiring    = m_activeBands > m_target.numBands;
+        m_activeBands = std::max(m_activeBands, m_target.numBands);
+        m_active      = m_target;
+        m_ramping     = false;
+    } else if (m_retiring) {
+        m_activeBands = m_active.numBands;
+        m_retiring    = false;
+    }
+}
+
+void BiquadCascade::process(int16_t* interleaved, int frames) {
+    if (frames <= 0) return;
+    size_t n = size_t(frames) * m_channels;
+    if (m_scratch.size() < n) m_scratch.resize(n);
+    const float k = 1.f / 32768.f;
+    for (size_t i = 0; i < n; i++) m_scratch[i] = interleaved[i] * k;
+    process(m_scratch.data(), frames);
+    for (size_t i = 0; i < n; i++) {
+        float v = m_scratch[i] * 32768.f;
+        v = std::min(32767.f, std::max(-32768.f, v));
+        interleaved[i] = int16_t(std::lrintf(v));
+    }
+}
@@ -0,0 +1,79 @@
+#ifndef BIQUAD_CASCADE_H
+#define BIQUAD_CASCADE_H
+
+#include <atomic>
+#include <cstdint>
+#include <vector>
+
+// Band types, same order as PEQBand.Type
+enum BandType { BAND_PEAKING = 0, BAND_LOW_SHELF = 1, BAND_HIGH_SHELF = 2 };
+
+// Normalized biquad (a0 = 1)
+struct Biquad {
+    float b0, b1, b2, a1, a2;
+};
+
+// RBJ cookbook design, same formulas as ParametricEQUtils.biquadCoefficients / peq.py
+Biquad designBiquad(int type, double fc, double Q, double gainDb, double fs);
+
+// Magnitude (dB) of a normalized biquad at frequency f
+double biquadMagnitudeDb(const Biquad& c, double f, double fs);
+
+// ── Streaming cascade ─────────────────────────────────────────────────────
+// Stateful per-channel transposed direct form II cascade with a preamp.
+// setBands() may be called from one control thread while process*() runs on the
+// audio thread: coefficient sets go through a lock-free triple buffer, and the audio
+// thread ramps from the old to the new set across one block so updates do not click.
+class BiquadCascade {
+public:
+    static constexpr int kMaxBands = 16;
+
+    BiquadCascade(int sampleRate, int channels);
+
+    int sampleRate() const { return m_fs; }
+    int channels()   const { return m_channels; }
+
+    // Control thread (one at a time). Bands beyond kMaxBands are ignored.
+    void setBands(const int* types, const float* fc, const float* q, const float* gainDb,
+                  int numBands, float preampDb);
+
+    // Audio thread. In-place on interleaved frames.
+    void process(float* interleaved, int frames);
+    void process(int16_t* interleaved, int frames);
+
+    // Audio thread. Clears filter memory (e.g. after a seek).
+    void reset();
+
+private:
+    struct CoeffSet {
+        int    numBands;
+        float  preamp;               // linear
+        Biquad bands[kMaxBands];
+    };
+
+    void pullPending();
+    void processChannel(float* x, int frames, int stride, int ch);
+
+    int m_fs;
+    int m_channels;
+
+    // triple buffer: writer owns m_back, audio thread owns m_front, m_middle is shared
+    static constexpr int kDirty = 4;
+    CoeffSet          m_sets[3];
+    int               m_back  = 1;
+    int               m_front = 0;
+    std::atomic<int>  m_middle{2};
+
+    // coefficients the audio thread is actually running, plus per-sample ramp
+    CoeffSet m_active;
+    CoeffSet m_target;
+    bool     m_ramping  = false;
+    bool     m_retiring = false;
+    int      m_activeBands = 0;
+
+    // filter memory [channel][band][z1, z2]
+    std::vector<float> m_state;
+    std::vector<float> m_scratch;
+};
+
+#endif // BIQUAD_CASCADE_H
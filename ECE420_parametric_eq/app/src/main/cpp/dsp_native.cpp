@@ -3,206 +3,134 @@
 #include <vector>
 #include <cmath>
 #include <algorithm>
-#include "kiss_fft/kiss_fft.h"
-#include "kiss_fft/kiss_fftr.h"
-#include <cassert>
-
-// ── Helper: next power of two  ────────────────────────────────────────────────
-static int nextPow2(int v) {
-    int p = 1;
-    while (p < v) p <<= 1;
-    return p;
-}
-
-// ── Farina inverse filter ─────────────────────────────────────────────────
-// Generate exponential sweep, invert, fade, normalize
-static std::vector<float> computeInverseFilter(
-        int f1, int f2, float duration, int fs
-) {
-    int N = int(duration * fs);
-    std::vector<double> sweep(N);
-    double alpha = std::log(double(f2)/f1) / duration;
-    double K     = 2*M_PI*f1 * (duration/ std::log(double(f2)/f1));
-    // generate sweep
-    for (int i = 0; i < N; i++) {
-        double t = i / double(fs);
-        sweep[i] = std::sin( K * (std::exp(alpha*t) - 1.0) );
-    }
-    // fade
-    int fade = int(0.005 * fs);
-    if (2*fade < N) {
-        for (int i = 0; i < fade; i++) {
-            double w = double(i)/fade;
-            sweep[i]   *= w;
-            sweep[N-1-i] *= w;
-        }
-    }
-// normalize sweep
-    double mx = 0.0;
-    for (double v : sweep) {
-        double av = std::abs(v);
-        if (av > mx) mx = av;
-    }
-    if (mx > 1e-12) {
-        for (auto &v : sweep)
-            v /= mx;
-    }
-    // reverse + exponential
-    std::vector<float> invf(N);
-    for (int i = 0; i < N; i++) {
-        double rev = sweep[N-1-i];
-        double factor = std::exp(alpha * ((N-1-i)/double(fs)));
-        invf[i] = float(rev * factor);
-    }
-    // fade inverse
-    if (2*fade < N) {
-        for (int i = 0; i < fade; i++) {
-            double w = double(i)/fade;
-            invf[i]   *= w;
-            invf[N-1-i] *= w;
-        }
-    }
-// normalize invf
-    mx = 0.0;
-    for (float v : invf) {
-        double av = std::abs(v);
-        if (av > mx) mx = av;
-    }
-    if (mx > 1e-12) {
-        for (auto &v : invf)
-            v /= mx;
-    }
-    return invf;
-}
+#include "biquad_cascade.h"
+#include "fft_backend.h"
+#include "measurement.h"
+#include "metrics.h"
+#include "streaming_deconv.h"
+#include "smoothing.h"
+#include <map>
+#include <memory>
+#include <mutex>
 
-// ── Segmentation: single segment ─────────────────────────────────
-static std::vector<std::vector<float>> segmentRecording(
-        const std::vector<float>& audio
-) {
-    // implement segmenting with full multi‐peak detection later, since not needed now lol
-    return { audio };
-}
-
-// ── Deconvolution via FFT convolution ────────────────────────────────────
-static std::vector<float> deconvolveSweep(
-        const std::vector<float>& segment,
-        const std::vector<float>& invf,
-        int fs, float impulseWindow
-) {
-    int n1   = int(segment.size());
-    int n2   = int(invf.size());
-    int outN = n1 + n2 - 1;
-    int Nfft = nextPow2(outN);
-
-    // zero‐pad inputs
-    std::vector<kiss_fft_scalar> xa(Nfft,0), ib(Nfft,0);
-    for (int i = 0; i < n1; ++i) xa[i] = segment[i];
-    for (int i = 0; i < n2; ++i) ib[i] = invf[i];
-
-    // Allocate forward & inverse FFT configs
-    kiss_fftr_cfg cfg_fwd = kiss_fftr_alloc(Nfft, 0, nullptr, nullptr);
-    kiss_fftr_cfg cfg_inv = kiss_fftr_alloc(Nfft, 1, nullptr, nullptr);
-
-    // Forward real FFT
-    std::vector<kiss_fft_cpx> Xa(Nfft/2+1), Ib(Nfft/2+1), Y(Nfft/2+1);
-    kiss_fftr(cfg_fwd, xa.data(), Xa.data());
-    kiss_fftr(cfg_fwd, ib.data(), Ib.data());
-
-    // Multiply spectra (convolution in time)
-    for (int i = 0; i < int(Y.size()); i++) {
-        auto &a = Xa[i], &b = Ib[i], &c = Y[i];
-        c.r = a.r*b.r - a.i*b.i;
-        c.i = a.r*b.i + a.i*b.r;
-    }
+// ── Globals ─────────────────────────────────────────────────────────────────
+static MeasureConfig g_cfg;
 
-    // Inverse real FFT to get full convolved signal
-    std::vector<kiss_fft_scalar> y(Nfft);
-    kiss_fftri(cfg_inv, Y.data(), y.data());
+// Looked up once in JNI_OnLoad: FindClass is slow, and from a natively attached thread it
+// would not see the app's classes at all
+static jclass    g_analysisResultClass;
+static jmethodID g_analysisResultCtor;
+static jclass    g_metricsClass;
+static jmethodID g_metricsNativeEvent;
 
-    // Free FFT configs
-    free(cfg_fwd);
-    free(cfg_inv);
+extern "C" JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM* vm, void*) {
+    JNIEnv* env = nullptr;
+    if (vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_6) != JNI_OK) return JNI_ERR;
 
-    // Extract impulse‐response window around the peak
-    int win    = int(impulseWindow * fs);
-    double peak = 0; int pidx = 0;
-    for (int i = 0; i < outN; i++) {
-        double v = std::abs(y[i]);
-        if (v > peak) { peak = v; pidx = i; }
-    }
-    int start = std::max(0, pidx - win/2);
-    int end   = std::min(outN, start + win);
-    int M     = end - start;
-
-    std::vector<float> ir(M);
-    // Hann window & copy
-    for (int i = 0; i < M; i++) {
-        double w = 0.5 * (1 - std::cos(2*M_PI*i/(M-1)));
-        ir[i]    = float(y[start + i] * w);
+    jclass cls = env->FindClass("com/ece420_parametric_eq/models/AnalysisResult");
+    if (!cls) return JNI_ERR;
+    g_analysisResultClass = static_cast<jclass>(env->NewGlobalRef(cls));
+    g_analysisResultCtor  = env->GetMethodID(cls, "<init>", "([F[F[FJ)V");
+    env->DeleteLocalRef(cls);
+    if (!g_analysisResultCtor) return JNI_ERR;
+
+    // optional: builds that leave PipelineMetrics out just cannot drain native metrics
+    cls = env->FindClass("com/ece420_parametric_eq/PipelineMetrics");
+    if (cls) {
+        g_metricsClass       = static_cast<jclass>(env->NewGlobalRef(cls));
+        g_metricsNativeEvent = env->GetStaticMethodID(cls, "nativeEvent", "(ILjava/lang/String;JJJJ)V");
+        env->DeleteLocalRef(cls);
     }
+    env->ExceptionClear();
+    return JNI_VERSION_1_6;
+}
 
-    // Normalize IR
-    double norm = 0.0;
-    for (float v : ir) {
-        double av = std::abs(v);
-        if (av > norm) norm = av;
-    }
-    if (norm > 1e-12) {
-        for (auto &v : ir) v /= norm;
-    }
+// ── Full-resolution spectra kept native-side ────────────────────────────────
+// processBufferLog can park the linear-bin spectrum here and hand Java an id to fetch it
+// on demand. Only the newest few are kept, so a handle that is never released costs
+// nothing for long; fetching an evicted or released id returns null.
+static const size_t kMaxFullSpectra = 4;
+
+struct FullSpectrum {
+    std::vector<float> linDb;
+    int fs;
+};
+
+static std::mutex g_fullMutex;
+static std::map<jlong, std::shared_ptr<const FullSpectrum>> g_fullSpectra;
+static jlong g_nextFullId = 1;
+
+static jlong keepFullSpectrum(std::vector<float> linDb, int fs) {
+    auto spec = std::make_shared<FullSpectrum>();
+    spec->linDb = std::move(linDb);
+    spec->fs    = fs;
+    std::lock_guard<std::mutex> lock(g_fullMutex);
+    while (g_fullSpectra.size() >= kMaxFullSpectra) g_fullSpectra.erase(g_fullSpectra.begin());
+    jlong id = g_nextFullId++;
+    g_fullSpectra.emplace(id, std::move(spec));
+    return id;
+}
 
-    return ir;
+// ── AnalysisResult construction ─────────────────────────────────────────────
+static jobject newAnalysisResult(JNIEnv* env, const std::vector<float>& freqs,
+                                 const std::vector<float>& rawDb, const std::vector<float>& smoothDb,
+                                 jlong fullResHandle) {
+    metrics::Scope span("jni.copy_out");
+    metrics::count("jni.bytes_out", int64_t((freqs.size() + rawDb.size() + smoothDb.size()) * sizeof(float)));
+// to jfloatArray
+    auto toArr = [&](const std::vector<float>& v){
+        jfloatArray a = env->NewFloatArray(v.size());
+        env->SetFloatArrayRegion(a, 0, v.size(), v.data());
+        return a;
+    };
+    jfloatArray jF = toArr(freqs),
+            jR = toArr(rawDb),
+            jS = toArr(smoothDb);
+
+// return AnalysisResult(freqs, rawDb, smoothDb, fullResHandle)
+    return env->NewObject(g_analysisResultClass, g_analysisResultCtor, jF, jR, jS, fullResHandle);
 }
 
-// ── Compute frequency response (RFFT to mag to dB) ────────────────────────────
-static std::vector<float> computeFrequencyResponse(
-        const std::vector<float>& ir
-) {
-    int N = ir.size();
-    int Nfft = nextPow2(N);
-    std::vector<kiss_fft_scalar> buf(Nfft,0);
-    for (int i=0; i<N; i++) buf[i] = ir[i];
-    kiss_fftr_cfg cfg = kiss_fftr_alloc(Nfft, 0, nullptr, nullptr);
-    std::vector<kiss_fft_cpx> out(Nfft/2+1);
-    kiss_fftr(cfg, buf.data(), out.data());
-    free(cfg);
-    std::vector<float> db(Nfft/2+1);
-    for (int i=0; i<db.size(); i++) {
-        double mag = std::hypot(out[i].r, out[i].i);
-        db[i] = 20.0f * log10f(float(mag + 1e-12));
+// Copies the result into caller-owned direct FloatBuffers instead; false if one is too small
+static bool writeResult(JNIEnv* env, jobject outFreqs, jobject outRaw, jobject outSmooth,
+                        const std::vector<float>& freqs, const std::vector<float>& rawDb,
+                        const std::vector<float>& smoothDb) {
+    metrics::Scope span("jni.copy_out");
+    jobject outs[3] = { outFreqs, outRaw, outSmooth };
+    const std::vector<float>* src[3] = { &freqs, &rawDb, &smoothDb };
+    float* dst[3];
+    for (int k = 0; k < 3; k++) {
+        dst[k] = outs[k] ? static_cast<float*>(env->GetDirectBufferAddress(outs[k])) : nullptr;
+        if (!dst[k] || env->GetDirectBufferCapacity(outs[k]) < jlong(src[k]->size())) return false;
     }
-    return db;
+    for (int k = 0; k < 3; k++) std::copy(src[k]->begin(), src[k]->end(), dst[k]);
+    return true;
 }
 
-// ── Smooth (didnt end up doing) ────────────────────────────────────────────────
-static std::vector<float> smoothResponse(const std::vector<float>& resp) {
-    return resp; // doo later if needed
-}
+// Log-axis pipeline shared by processBufferLog and processBufferDirect
+static void logAxisResult(SampleView audio, int numPoints, int smoothMode, float octaveFraction,
+                          std::vector<float>* keepLinDb, std::vector<float>& freqs,
+                          std::vector<float>& rawDb, std::vector<float>& smoothDb) {
+    auto ir    = measureImpulse(audio, g_cfg);
+    auto linDb = computeFrequencyResponse(ir);
 
-// ── Normalize at 1 kHz ────────────────────────────────────────────────────
-static std::vector<float> normalizeAt1kHz(
-        const std::vector<float>& freqs,
-        const std::vector<float>& resp
-) {
-    // find index closest to 1000 Hz
-    assert(freqs.size() == resp.size());
-    int idx=0; double best=1e12;
-    for (int i=0; i<freqs.size(); i++) {
-        double d = std::abs(freqs[i] - 1000.0f);
-        if (d<best) { best=d; idx=i; }
-    }
-    float offset = resp[idx];
-    std::vector<float> out(resp.size());
-    for (int i=0; i<resp.size(); i++) out[i] = resp[i] - offset; // subtract offset from all values
-    return out;
+    freqs = logFrequencyPoints(kLogMinHz, logAxisMaxHz(g_cfg.fs), std::max(2, numPoints));
+    smoothOnAxis(linDb, g_cfg, freqs, smoothMode, octaveFraction, rawDb, smoothDb);
+    if (keepLinDb) *keepLinDb = std::move(linDb);
 }
 
-// ── Globals ─────────────────────────────────────────────────────────────────
-static int   g_fs;
-static float g_impulseWindow;
-static int   g_sgWindow, g_sgPoly;
-static float g_markerSilence = 0.5f;   // seconds between marker & sweep
-static float g_sweepDuration = 4.0f;   // length of each sweep
+// IR to AnalysisResult on the default 1/48-octave axis, shared by the batch and streaming paths
+static jobject analysisFromImpulse(JNIEnv* env, const std::vector<float>& ir,
+                                   int smoothMode, float octaveFraction) {
+// freq response (linear bins 0…fs/2)
+    auto linDb = computeFrequencyResponse(ir);
+
+// smooth & decimate onto the log axis
+    auto freqs = logFrequencyAxis(kLogMinHz, logAxisMaxHz(g_cfg.fs), kLogPointsPerOctave);
+    std::vector<float> rawDb, smoothDb;
+    smoothOnAxis(linDb, g_cfg, freqs, smoothMode, octaveFraction, rawDb, smoothDb);
+    return newAnalysisResult(env, freqs, rawDb, smoothDb, 0);
+}
 
 // ── JNI exports ──────────────────────────────────────────────────────────────
 extern "C" JNIEXPORT void JNICALL
@@ -213,65 +141,113 @@ Java_com_ece420_1parametric_1eq_DSPProcessor_initConfig(
         jfloat mSilence,
         jfloat swDur,
         jint   sgW,
-        jint   sgP
+        jint   sgP,
+        jint   fftBackend
 ) {
-    g_fs              = fs;
-    g_impulseWindow   = iw;
-    g_markerSilence   = mSilence;
-    g_sweepDuration   = swDur;
-    g_sgWindow        = sgW;
-    g_sgPoly          = sgP;
+    g_cfg.fs            = fs;
+    g_cfg.impulseWindow = iw;
+    g_cfg.markerSilence = mSilence;
+    g_cfg.sweepDuration = swDur;
+    g_cfg.sgWindow      = sgW;
+    g_cfg.sgPoly        = sgP;
+    setFftBackend(fftBackend);
+
+    // build the inverse sweep now rather than on the first measurement
+    inverseFilter(kSweepF1, kSweepF2, g_cfg.sweepDuration, g_cfg.fs);
+}
+
+// A float[] may move under GC, so it is copied once; processBufferDirect reads in place
+static std::vector<float> copyAudio(JNIEnv* env, jfloatArray audioData) {
+    metrics::Scope span("jni.copy_in");
+    jsize len = env->GetArrayLength(audioData);
+    metrics::count("jni.bytes_in", int64_t(len) * int64_t(sizeof(float)));
+    std::vector<float> audio(len);
+    env->GetFloatArrayRegion(audioData, 0, len, audio.data());
+    return audio;
+}
+
+// segment, deconvolve and average; returns the windowed, normalized IR
+static std::vector<float> measureImpulse(JNIEnv* env, jfloatArray audioData) {
+    return measureImpulse(copyAudio(env, audioData), g_cfg);
 }
 
 extern "C" JNIEXPORT jobject JNICALL
 Java_com_ece420_1parametric_1eq_DSPProcessor_processBuffer(
         JNIEnv* env, jclass, jfloatArray audioData
 ) {
-// load audio
-    jsize len = env->GetArrayLength(audioData);
-    jfloat* buf = env->GetFloatArrayElements(audioData, nullptr);
-    std::vector<float> audio(buf, buf + len);
-    env->ReleaseFloatArrayElements(audioData, buf, 0);
-
-// compute inverse filter
-    auto invf = computeInverseFilter(10,21000,g_sweepDuration,g_fs);
-
-// segment
-    auto segs = segmentRecording(audio);
+    auto ir = measureImpulse(env, audioData);
+    return analysisFromImpulse(env, ir, defaultSmoothMode(g_cfg), 0.f);
+}
 
-// deconv & average (single segment for now)
-    auto ir = deconvolveSweep(segs[0], invf, g_fs, g_impulseWindow);
+extern "C" JNIEXPORT jobject JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processBufferSmoothed(
+        JNIEnv* env, jclass, jfloatArray audioData, jint smoothMode, jfloat octaveFraction
+) {
+    auto ir = measureImpulse(env, audioData);
+    return analysisFromImpulse(env, ir, smoothMode, octaveFraction);
+}
 
-// freq response
-    auto freqDb = computeFrequencyResponse(ir);
+extern "C" JNIEXPORT jobject JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processBufferLog(
+        JNIEnv* env, jclass, jfloatArray audioData, jint numPoints,
+        jint smoothMode, jfloat octaveFraction, jboolean keepFullResolution
+) {
+    auto audio = copyAudio(env, audioData);
+    std::vector<float> linDb, freqs, rawDb, smoothDb;
+    logAxisResult(audio, numPoints, smoothMode, octaveFraction,
+                  keepFullResolution ? &linDb : nullptr, freqs, rawDb, smoothDb);
 
-// smooth
-    auto smoothDb = smoothResponse(freqDb);
+    jlong handle = keepFullResolution ? keepFullSpectrum(std::move(linDb), g_cfg.fs) : 0;
+    return newAnalysisResult(env, freqs, rawDb, smoothDb, handle);
+}
 
-// normalize
-    auto normDb = normalizeAt1kHz(freqDb, smoothDb);
+extern "C" JNIEXPORT jint JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processBufferDirect(
+        JNIEnv* env, jclass, jobject audio, jint layout, jint frames, jint numPoints,
+        jint smoothMode, jfloat octaveFraction,
+        jobject outFreqs, jobject outRaw, jobject outSmooth
+) {
+    // layout: 0 FloatBuffer, 1 ShortBuffer of PCM16, 2 ByteBuffer of PCM16
+    void* addr = env->GetDirectBufferAddress(audio);
+    if (!addr || frames < 0 || layout < 0 || layout > 2) return 0;
+    // capacity counts elements of the buffer's own type
+    jlong capBytes = env->GetDirectBufferCapacity(audio) * (layout == 0 ? 4 : layout == 1 ? 2 : 1);
+    bool pcm16 = layout != 0;
+    if (capBytes < jlong(frames) * (pcm16 ? 2 : 4)) return 0;
+    SampleView view = pcm16 ? SampleView(static_cast<const int16_t*>(addr), size_t(frames))
+                            : SampleView(static_cast<const float*>(addr), size_t(frames));
+
+    std::vector<float> freqs, rawDb, smoothDb;
+    logAxisResult(view, numPoints, smoothMode, octaveFraction, nullptr, freqs, rawDb, smoothDb);
+    if (!writeResult(env, outFreqs, outRaw, outSmooth, freqs, rawDb, smoothDb)) return 0;
+    return jint(freqs.size());
+}
 
-// build freq axis (0…fs/2)
-    int M = freqDb.size();
+extern "C" JNIEXPORT jobject JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_fetchFullResolution(
+        JNIEnv* env, jclass, jlong handle
+) {
+    std::shared_ptr<const FullSpectrum> spec;
+    {
+        std::lock_guard<std::mutex> lock(g_fullMutex);
+        auto it = g_fullSpectra.find(handle);
+        if (it == g_fullSpectra.end()) return nullptr;
+        spec = it->second;
+    }
+    int M = int(spec->linDb.size());
     std::vector<float> freqs(M);
     for (int i=0; i<M; i++) {
-        freqs[i] = (g_fs/2.0f) * i / (M-1);
+        freqs[i] = (spec->fs/2.0f) * i / std::max(1, M-1);
     }
+    return newAnalysisResult(env, freqs, spec->linDb, spec->linDb, handle);
+}
 
-// to jfloatArray
-    auto toArr = [&](const std::vector<float>& v){
-        jfloatArray a = env->NewFloatArray(v.size());
-        env->SetFloatArrayRegion(a, 0, v.size(), v.data());
-        return a;
-    };
-    jfloatArray jF = toArr(freqs),
-            jR = toArr(freqDb),
-            jS = toArr(smoothDb);
-
-// return AnalysisResult(freqs, rawDb, smoothDb)
-    jclass cls = env->FindClass("com/ece420_parametric_eq/models/AnalysisResult");
-    jmethodID ctor = env->GetMethodID(cls, "<init>", "([F[F[F)V");
-    return env->NewObject(cls, ctor, jF, jR, jS);
+extern "C" JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_releaseFullResolution(
+        JNIEnv*, jclass, jlong handle
+) {
+    std::lock_guard<std::mutex> lock(g_fullMutex);
+    g_fullSpectra.erase(handle);
 }
 
 extern "C" JNIEXPORT jfloatArray JNICALL
@@ -291,9 +267,175 @@ Java_com_ece420_1parametric_1eq_DSPProcessor_normalizeAt1kHz(
 
 extern "C" JNIEXPORT jfloatArray JNICALL
 Java_com_ece420_1parametric_1eq_DSPProcessor_applyParametricEQ(
-        JNIEnv*, jclass, jfloatArray freqs, jfloatArray rawDb,
+        JNIEnv* env, jclass, jfloatArray freqsArr, jfloatArray rawDbArr,
         jfloatArray eqFreq,  jfloatArray eqGain,  jfloatArray eqQ
 ) {
+// unpack curve and bands (one peaking band per entry)
+    jsize N  = env->GetArrayLength(freqsArr);
+    jsize nb = std::min(env->GetArrayLength(eqFreq),
+               std::min(env->GetArrayLength(eqGain), env->GetArrayLength(eqQ)));
+    std::vector<float> freqs(N), db(N), fc(nb), gain(nb), q(nb);
+    env->GetFloatArrayRegion(freqsArr, 0, N, freqs.data());
+    env->GetFloatArrayRegion(rawDbArr, 0, N, db.data());
+    env->GetFloatArrayRegion(eqFreq, 0, nb, fc.data());
+    env->GetFloatArrayRegion(eqGain, 0, nb, gain.data());
+    env->GetFloatArrayRegion(eqQ,    0, nb, q.data());
+
+    double fs = g_cfg.fs > 0 ? g_cfg.fs : 48000;
+    for (int b = 0; b < nb; b++) {
+        Biquad c = designBiquad(BAND_PEAKING, fc[b], q[b], gain[b], fs);
+        for (int i = 0; i < N; i++) db[i] += float(biquadMagnitudeDb(c, freqs[i], fs));
+    }
+    jfloatArray a = env->NewFloatArray(N);
+    env->SetFloatArrayRegion(a, 0, N, db.data());
+    return a;
+}
+
+// ── Streaming EQ ─────────────────────────────────────────────────────────────
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_createEqStream(
+        JNIEnv*, jclass, jint fs, jint channels
+) {
+    return reinterpret_cast<jlong>(new BiquadCascade(fs, channels));
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_releaseEqStream(
+        JNIEnv*, jclass, jlong handle
+) {
+    delete reinterpret_cast<BiquadCascade*>(handle);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_setEqStreamBands(
+        JNIEnv* env, jclass, jlong handle,
+        jintArray typesArr, jfloatArray fcArr, jfloatArray qArr, jfloatArray gainArr,
+        jfloat preampDb
+) {
+    auto* eq = reinterpret_cast<BiquadCascade*>(handle);
+    if (!eq) return;
+    // small fixed-size copies, no heap on the control path
+    jint  types[BiquadCascade::kMaxBands];
+    float fc[BiquadCascade::kMaxBands], q[BiquadCascade::kMaxBands], gain[BiquadCascade::kMaxBands];
+    jsize nb = std::min(env->GetArrayLength(typesArr), jsize(BiquadCascade::kMaxBands));
+    nb = std::min(nb, std::min(env->GetArrayLength(fcArr),
+                      std::min(env->GetArrayLength(qArr), env->GetArrayLength(gainArr))));
+    env->GetIntArrayRegion(typesArr, 0, nb, types);
+    env->GetFloatArrayRegion(fcArr,   0, nb, fc);
+    env->GetFloatArrayRegion(qArr,    0, nb, q);
+    env->GetFloatArrayRegion(gainArr, 0, nb, gain);
+    int t[BiquadCascade::kMaxBands];
+    for (int i = 0; i < nb; i++) t[i] = types[i];
+    eq->setBands(t, fc, q, gain, nb, preampDb);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processEqStreamPcm16(
+        JNIEnv* env, jclass, jlong handle, jobject pcm16, jint frames
+) {
+    auto* eq  = reinterpret_cast<BiquadCascade*>(handle);
+    auto* buf = static_cast<int16_t*>(env->GetDirectBufferAddress(pcm16));
+    if (!eq || !buf) return JNI_FALSE;
+    if (env->GetDirectBufferCapacity(pcm16) < jlong(frames) * eq->channels() * 2) return JNI_FALSE;
+    eq->process(buf, frames);
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processEqStreamFloat(
+        JNIEnv* env, jclass, jlong handle, jobject samples, jint frames
+) {
+    auto* eq  = reinterpret_cast<BiquadCascade*>(handle);
+    auto* buf = static_cast<float*>(env->GetDirectBufferAddress(samples));
+    if (!eq || !buf) return JNI_FALSE;
+    if (env->GetDirectBufferCapacity(samples) < jlong(frames) * eq->channels()) return JNI_FALSE;
+    eq->process(buf, frames);
+    return JNI_TRUE;
+}
+
+// ── Streaming deconvolution ─────────────────────────────────────────────────
+// Snapshots the current initConfig; feed blocks as they are recorded, then finish.
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_createDeconvStream(
+        JNIEnv*, jclass, jint blockSize
+) {
+    auto invf = inverseFilter(kSweepF1, kSweepF2, g_cfg.sweepDuration, g_cfg.fs);
+    return reinterpret_cast<jlong>(
+            new StreamingDeconvolver(invf->taps, blockSize, int(g_cfg.impulseWindow * g_cfg.fs),
+                                     int(g_cfg.sweepDuration * g_cfg.fs / 2)));
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_releaseDeconvStream(
+        JNIEnv*, jclass, jlong handle
+) {
+    delete reinterpret_cast<StreamingDeconvolver*>(handle);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_pushDeconvStreamPcm16(
+        JNIEnv* env, jclass, jlong handle, jobject pcm16, jint frames
+) {
+    auto* dc  = reinterpret_cast<StreamingDeconvolver*>(handle);
+    auto* buf = static_cast<int16_t*>(env->GetDirectBufferAddress(pcm16));
+    if (!dc || !buf) return JNI_FALSE;
+    if (env->GetDirectBufferCapacity(pcm16) < jlong(frames) * 2) return JNI_FALSE;
+    dc->push(buf, frames);
+    return JNI_TRUE;
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_pushDeconvStreamFloat(
+        JNIEnv* env, jclass, jlong handle, jfloatArray samples, jint offset, jint frames
+) {
+    auto* dc = reinterpret_cast<StreamingDeconvolver*>(handle);
+    if (!dc || !samples) return;
+    if (offset < 0 || frames < 0 || jlong(offset) + frames > env->GetArrayLength(samples)) return;
+    // copied out in chunks rather than pinned: push() runs FFTs, too long to hold a critical section
+    jfloat chunk[1024];
+    while (frames > 0) {
+        jint n = std::min(frames, jint(sizeof(chunk) / sizeof(chunk[0])));
+        env->GetFloatArrayRegion(samples, offset, n, chunk);
+        dc->push(chunk, n);
+        offset += n;
+        frames -= n;
+    }
+}
+
+extern "C" JNIEXPORT jobject JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_finishDeconvStream(
+        JNIEnv* env, jclass, jlong handle
+) {
+    auto* dc = reinterpret_cast<StreamingDeconvolver*>(handle);
+    if (!dc || dc->samplesIn() == 0) return nullptr;
+    metrics::Scope span("deconv_stream.finish");
+    auto irs = dc->finish();
+    if (irs.empty()) return nullptr;
+    auto ir = alignAndAverage(irs, g_cfg.fs);
+    windowImpulse(ir);
+    return analysisFromImpulse(env, ir, defaultSmoothMode(g_cfg), 0.f);
+}
 
-    return rawDb;
-}
\ No newline at end of file
+// ── Metrics ─────────────────────────────────────────────────────────────────
+extern "C" JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_setMetricsEnabled(
+        JNIEnv*, jclass, jboolean enabled
+) {
+    metrics::setEnabled(enabled);
+}
+
+// hands each buffered event to PipelineMetrics.nativeEvent(kind, name, startNs, durNs, tid, value)
+extern "C" JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_drainMetrics(
+        JNIEnv* env, jclass
+) {
+    auto events = metrics::drain();
+    if (events.empty() || !g_metricsNativeEvent) return;
+    for (const auto& e : events) {
+        jstring name = env->NewStringUTF(e.name);
+        env->CallStaticVoidMethod(g_metricsClass, g_metricsNativeEvent, jint(e.kind), name,
+                                  jlong(e.startNs), jlong(e.durNs), jlong(e.tid), jlong(e.value));
+        env->DeleteLocalRef(name);
+        if (env->ExceptionCheck()) return;
+    }
+}
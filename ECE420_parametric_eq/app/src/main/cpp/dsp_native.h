@@ -8,7 +8,10 @@
 extern "C" {
 #endif
 
-// Initialize DSP parameters
+// Caches the class and method IDs the exports below call back into
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM* vm, void* reserved);
+
+// Initialize DSP parameters and pick the FFT backend (fft_backend.h, DSPProcessor.FFT_*)
 JNIEXPORT void JNICALL
 Java_com_ece420_1parametric_1eq_DSPProcessor_initConfig(
         JNIEnv*, jclass,
@@ -17,25 +20,107 @@ Java_com_ece420_1parametric_1eq_DSPProcessor_initConfig(
         jfloat markerSilence,
         jfloat sweepDuration,
         jint   sgWindow,
-        jint   sgPoly);
+        jint   sgPoly,
+        jint   fftBackend);
 
 // Core pipeline: segment, deconv, FFT->dB, smooth, normalize
 JNIEXPORT jobject JNICALL
 Java_com_ece420_1parametric_1eq_DSPProcessor_processBuffer(
         JNIEnv*, jclass, jfloatArray audioData);
 
+// Same pipeline with a per-call smoothing mode (DSPProcessor.SMOOTH_*)
+JNIEXPORT jobject JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processBufferSmoothed(
+        JNIEnv*, jclass, jfloatArray audioData, jint smoothMode, jfloat octaveFraction);
+
+// Compact log-axis result with numPoints points; optionally keeps the linear-bin
+// spectrum native-side under AnalysisResult.fullResHandle
+JNIEXPORT jobject JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processBufferLog(
+        JNIEnv*, jclass, jfloatArray audioData, jint numPoints,
+        jint smoothMode, jfloat octaveFraction, jboolean keepFullResolution);
+
+// Same log-axis pipeline read in place from a direct buffer (float or PCM16), written into
+// caller-owned direct FloatBuffers; returns the number of points, 0 for unusable buffers
+JNIEXPORT jint JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processBufferDirect(
+        JNIEnv*, jclass, jobject audio, jint layout, jint frames, jint numPoints,
+        jint smoothMode, jfloat octaveFraction,
+        jobject outFreqs, jobject outRaw, jobject outSmooth);
+
+JNIEXPORT jobject JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_fetchFullResolution(
+        JNIEnv*, jclass, jlong handle);
+
+JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_releaseFullResolution(
+        JNIEnv*, jclass, jlong handle);
+
 // Normalize the smoothed response at 1kHz (standalone)
 JNIEXPORT jfloatArray JNICALL
 Java_com_ece420_1parametric_1eq_DSPProcessor_normalizeAt1kHz(
         JNIEnv*, jclass, jfloatArray freqs, jfloatArray db);
 
-// (Future) apply parametric EQ
+// Apply peaking EQ bands to a dB curve
 JNIEXPORT jfloatArray JNICALL
 Java_com_ece420_1parametric_1eq_DSPProcessor_applyParametricEQ(
         JNIEnv*, jclass,
         jfloatArray freqs, jfloatArray rawDb,
         jfloatArray eqFreq, jfloatArray eqGain, jfloatArray eqQ);
 
+// Streaming deconvolution: partitioned overlap-save fed while recording
+JNIEXPORT jlong JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_createDeconvStream(
+        JNIEnv*, jclass, jint blockSize);
+
+JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_releaseDeconvStream(
+        JNIEnv*, jclass, jlong handle);
+
+JNIEXPORT jboolean JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_pushDeconvStreamPcm16(
+        JNIEnv*, jclass, jlong handle, jobject pcm16, jint frames);
+
+JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_pushDeconvStreamFloat(
+        JNIEnv*, jclass, jlong handle, jfloatArray samples, jint offset, jint frames);
+
+JNIEXPORT jobject JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_finishDeconvStream(
+        JNIEnv*, jclass, jlong handle);
+
+// Streaming EQ: stateful biquad cascade on direct buffers
+JNIEXPORT jlong JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_createEqStream(
+        JNIEnv*, jclass, jint fs, jint channels);
+
+JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_releaseEqStream(
+        JNIEnv*, jclass, jlong handle);
+
+JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_setEqStreamBands(
+        JNIEnv*, jclass, jlong handle,
+        jintArray types, jfloatArray fc, jfloatArray q, jfloatArray gainDb,
+        jfloat preampDb);
+
+JNIEXPORT jboolean JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processEqStreamPcm16(
+        JNIEnv*, jclass, jlong handle, jobject pcm16, jint frames);
+
+JNIEXPORT jboolean JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_processEqStreamFloat(
+        JNIEnv*, jclass, jlong handle, jobject samples, jint frames);
+
+// Pipeline metrics (see metrics.h): toggle recording, drain into PipelineMetrics
+JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_setMetricsEnabled(
+        JNIEnv*, jclass, jboolean enabled);
+
+JNIEXPORT void JNICALL
+Java_com_ece420_1parametric_1eq_DSPProcessor_drainMetrics(
+        JNIEnv*, jclass);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,421 @@
+#include "fft_backend.h"
+#include "thread_pool.h"
+#include <algorithm>
+#include <atomic>
+#include <cmath>
+#include <cstdlib>
+#include <cstring>
+#include <map>
+#include <thread>
+#include <utility>
+#include <vector>
+
+// ── Scalar: kiss_fftr ─────────────────────────────────────────────────────
+class KissRealFft : public RealFft {
+public:
+    explicit KissRealFft(int nfft)
+            : RealFft(nfft),
+              m_fwd(kiss_fftr_alloc(nfft, 0, nullptr, nullptr)),
+              m_inv(kiss_fftr_alloc(nfft, 1, nullptr, nullptr)) {}
+    ~KissRealFft() override { free(m_fwd); free(m_inv); }
+
+    void forward(const kiss_fft_scalar* in, kiss_fft_cpx* out) override { kiss_fftr(m_fwd, in, out); }
+    void inverse(const kiss_fft_cpx* in, kiss_fft_scalar* out) override { kiss_fftri(m_inv, in, out); }
+
+private:
+    kiss_fftr_cfg m_fwd;
+    kiss_fftr_cfg m_inv;
+};
+
+// ── 4-wide float vectors ──────────────────────────────────────────────────
+// GCC/Clang vector extensions lower to SSE on x86 and NEON on arm64 without intrinsics.
+// Loads and stores go through memcpy, so buffers need no special alignment.
+typedef float v4 __attribute__((vector_size(16)));
+
+#if defined(__clang__)
+#define SHUF(a, b, i0, i1, i2, i3) __builtin_shufflevector(a, b, i0, i1, i2, i3)
+#else
+typedef int v4i __attribute__((vector_size(16)));
+#define SHUF(a, b, i0, i1, i2, i3) __builtin_shuffle(a, b, v4i{i0, i1, i2, i3})
+#endif
+
+// the radix loops run R times and must unroll so their arrays stay in registers
+#define UNROLL _Pragma("GCC unroll 8")
+
+static inline v4 load(const float* p) { v4 v; std::memcpy(&v, p, sizeof v); return v; }
+static inline void store(float* p, v4 v) { std::memcpy(p, &v, sizeof v); }
+static inline v4 splat(float f) { return v4{f, f, f, f}; }
+static inline v4 reverse(v4 v) { return SHUF(v, v, 3, 2, 1, 0); }
+
+// p[0..3] of interleaved complex values as split re / im
+static inline void loadCpx(const float* p, v4& re, v4& im) {
+    v4 lo = load(p), hi = load(p + 4);
+    re = SHUF(lo, hi, 0, 2, 4, 6);
+    im = SHUF(lo, hi, 1, 3, 5, 7);
+}
+
+static inline void storeCpx(float* p, v4 re, v4 im) {
+    store(p,     SHUF(re, im, 0, 4, 1, 5));
+    store(p + 4, SHUF(re, im, 2, 6, 3, 7));
+}
+
+// ── SIMD / threaded: split-format Stockham ────────────────────────────────
+// A real FFT of N points is a complex FFT of M = N/2 points on the even/odd samples packed
+// as re/im, plus one O(N) pass to separate the two half spectra. The complex FFT is a
+// self-sorting mixed-radix Stockham: a radix-4 pass first, then radix 4, 2, 3 and 5 for what
+// is left of M. Each pass reads one buffer and writes the other, so no bit reversal. Re and
+// im live in separate arrays; after the first pass the stride is a multiple of 4, which lets
+// every later pass run four butterflies per instruction along q. The first pass (stride 1)
+// runs along p instead and transposes 4x4 on the way out.
+class StockhamRealFft : public RealFft {
+public:
+    StockhamRealFft(int nfft, bool threaded)
+            : RealFft(nfft), m_M(nfft / 2), m_threaded(threaded) {
+        const int M = m_M;
+        int rest = M / 4;
+        m_radices.push_back(4);
+        for (int r : { 4, 2, 3, 5 }) {
+            while (rest % r == 0) { m_radices.push_back(r); rest /= r; }
+        }
+        m_twRe.resize(M); m_twIm.resize(M);
+        for (int j = 0; j < M; j++) {
+            double a = 2 * M_PI * j / M;
+            m_twRe[j] = float(std::cos(a));
+            m_twIm[j] = float(-std::sin(a));
+        }
+        // first pass twiddles W_M^p, W_M^2p, W_M^3p laid out by p so they load as vectors
+        int m = M / 4;
+        m_w1Re.resize(m); m_w1Im.resize(m);
+        m_w2Re.resize(m); m_w2Im.resize(m);
+        m_w3Re.resize(m); m_w3Im.resize(m);
+        for (int p = 0; p < m; p++) {
+            m_w1Re[p] = m_twRe[p];     m_w1Im[p] = m_twIm[p];
+            m_w2Re[p] = m_twRe[2 * p]; m_w2Im[p] = m_twIm[2 * p];
+            m_w3Re[p] = m_twRe[3 * p]; m_w3Im[p] = m_twIm[3 * p];
+        }
+        // W_N^k for the real split / merge, k = 0 .. M
+        m_rtRe.resize(M + 1); m_rtIm.resize(M + 1);
+        for (int k = 0; k <= M; k++) {
+            double a = M_PI * k / M;
+            m_rtRe[k] = float(std::cos(a));
+            m_rtIm[k] = float(-std::sin(a));
+        }
+        m_aRe.resize(M); m_aIm.resize(M);
+        m_bRe.resize(M); m_bIm.resize(M);
+    }
+
+    void forward(const kiss_fft_scalar* in, kiss_fft_cpx* out) override {
+        const bool par = parallel();
+        forChunks(par, m_M, [&](int lo, int hi) { packEvenOdd(in, lo, hi); });
+        const float* zr; const float* zi;
+        complexFft(par, zr, zi);
+        float* o = reinterpret_cast<float*>(out);
+        const int M = m_M;
+        // k = 0 and k = M only see Z[0]
+        o[0]         = zr[0] + zi[0]; o[1]         = 0.f;
+        o[2 * M]     = zr[0] - zi[0]; o[2 * M + 1] = 0.f;
+        forChunks(par, M - 1, [&](int lo, int hi) { splitSpectra(zr, zi, o, lo + 1, hi + 1); });
+    }
+
+    void inverse(const kiss_fft_cpx* in, kiss_fft_scalar* out) override {
+        const bool par = parallel();
+        const float* x = reinterpret_cast<const float*>(in);
+        forChunks(par, m_M, [&](int lo, int hi) { mergeSpectra(x, lo, hi); });
+        const float* zr; const float* zi;
+        complexFft(par, zr, zi);
+        forChunks(par, m_M, [&](int lo, int hi) { unpackEvenOdd(zr, zi, out, lo, hi); });
+    }
+
+private:
+    bool parallel() const {
+        return m_threaded && m_n >= kThreadedMinSize && !ThreadPool::insideJob()
+               && ThreadPool::shared().size() > 1;
+    }
+
+    // fn(lo, hi) over [0, count) in pieces that are multiples of 4, one per pool thread
+    template <class Fn>
+    static void forChunks(bool par, int count, const Fn& fn) {
+        if (!par) { fn(0, count); return; }
+        ThreadPool& pool = ThreadPool::shared();
+        int step   = ((count + pool.size() - 1) / pool.size() + 3) & ~3;
+        int chunks = (count + step - 1) / step;
+        pool.parallelFor(chunks, [&](int c) { fn(c * step, std::min(count, (c + 1) * step)); });
+    }
+
+    // z[k] = in[2k] + i in[2k+1] into buffer a
+    void packEvenOdd(const float* in, int lo, int hi) {
+        int k = lo;
+        for (; k + 4 <= hi; k += 4) {
+            v4 re, im;
+            loadCpx(in + 2 * k, re, im);
+            store(&m_aRe[k], re);
+            store(&m_aIm[k], im);
+        }
+        for (; k < hi; k++) { m_aRe[k] = in[2 * k]; m_aIm[k] = in[2 * k + 1]; }
+    }
+
+    // out[2n] + i out[2n+1] = conj(z[n]): the conjugation finishes the inverse FFT
+    static void unpackEvenOdd(const float* zr, const float* zi, float* out, int lo, int hi) {
+        int k = lo;
+        for (; k + 4 <= hi; k += 4) storeCpx(out + 2 * k, load(zr + k), -load(zi + k));
+        for (; k < hi; k++) { out[2 * k] = zr[k]; out[2 * k + 1] = -zi[k]; }
+    }
+
+    // X[k] = E[k] + W_N^k O[k] for k in [lo, hi) within 1 .. M-1, where
+    // E = (Z[k] + conj Z[M-k]) / 2 and O = -i (Z[k] - conj Z[M-k]) / 2
+    void splitSpectra(const float* zr, const float* zi, float* o, int lo, int hi) const {
+        const int M = m_M;
+        const v4 half = splat(0.5f);
+        int k = lo;
+        for (; k + 4 <= hi; k += 4) {
+            v4 ar = load(zr + k), ai = load(zi + k);
+            v4 br = reverse(load(zr + M - k - 3)), bi = reverse(load(zi + M - k - 3));
+            v4 er = half * (ar + br), ei = half * (ai - bi);
+            v4 orr = half * (ai + bi), oi = half * (br - ar);
+            v4 wr = load(&m_rtRe[k]), wi = load(&m_rtIm[k]);
+            storeCpx(o + 2 * k, er + wr * orr - wi * oi, ei + wr * oi + wi * orr);
+        }
+        for (; k < hi; k++) {
+            float ar = zr[k], ai = zi[k], br = zr[M - k], bi = zi[M - k];
+            float er = 0.5f * (ar + br), ei = 0.5f * (ai - bi);
+            float orr = 0.5f * (ai + bi), oi = 0.5f * (br - ar);
+            float wr = m_rtRe[k], wi = m_rtIm[k];
+            o[2 * k]     = er + wr * orr - wi * oi;
+            o[2 * k + 1] = ei + wr * oi + wi * orr;
+        }
+    }
+
+    // Inverse of splitSpectra for k in [lo, hi): 2 Z[k] = F1 + i F2 with
+    // F1 = X[k] + conj X[M-k], F2 = (X[k] - conj X[M-k]) conj(W_N^k). Stored conjugated into
+    // buffer a, so the forward passes compute the inverse transform.
+    void mergeSpectra(const float* x, int lo, int hi) {
+        const int M = m_M;
+        int k = lo;
+        for (; k + 4 <= hi; k += 4) {
+            v4 ar, ai, br, bi;
+            loadCpx(x + 2 * k, ar, ai);
+            loadCpx(x + 2 * (M - k - 3), br, bi);
+            br = reverse(br); bi = reverse(bi);
+            v4 f1r = ar + br, f1i = ai - bi;
+            v4 dr  = ar - br, di  = ai + bi;
+            v4 wr = load(&m_rtRe[k]), wi = load(&m_rtIm[k]);
+            v4 f2r = dr * wr + di * wi, f2i = di * wr - dr * wi;
+            store(&m_aRe[k], f1r - f2i);
+            store(&m_aIm[k], -(f1i + f2r));
+        }
+        for (; k < hi; k++) {
+            float ar = x[2 * k], ai = x[2 * k + 1], br = x[2 * (M - k)], bi = x[2 * (M - k) + 1];
+            float f1r = ar + br, f1i = ai - bi;
+            float dr  = ar - br, di  = ai + bi;
+            float wr = m_rtRe[k], wi = m_rtIm[k];
+            float f2r = dr * wr + di * wi, f2i = di * wr - dr * wi;
+            m_aRe[k] = f1r - f2i;
+            m_aIm[k] = -(f1i + f2r);
+        }
+    }
+
+    // Forward complex FFT of buffer a; zr / zi point at whichever buffer holds the result
+    void complexFft(bool par, const float*& zr, const float*& zi) {
+        float* xr = m_aRe.data(); float* xi = m_aIm.data();
+        float* yr = m_bRe.data(); float* yi = m_bIm.data();
+        int n = m_M, s = 1;
+        for (int r : m_radices) {
+            const int m = n / r;
+            if (s == 1) {
+                forChunks(par, m, [&](int lo, int hi) { firstPass(m, xr, xi, yr, yi, lo, hi); });
+            } else if (m >= 4 || !par) {
+                forChunks(par, m, [&](int lo, int hi) { pass(r, m, s, xr, xi, yr, yi, lo, hi, 0, s); });
+            } else {
+                // the last passes have few p and long runs of q: split those instead
+                forChunks(par, s, [&](int lo, int hi) { pass(r, m, s, xr, xi, yr, yi, 0, m, lo, hi); });
+            }
+            std::swap(xr, yr); std::swap(xi, yi);
+            n = m;
+            s *= r;
+        }
+        zr = xr; zi = xi;
+    }
+
+    // Stride-1 radix-4 pass, four values of p at a time; y[4p + j] is written as a 4x4 transpose
+    void firstPass(int m, const float* xr, const float* xi, float* yr, float* yi, int lo, int hi) const {
+        int p = lo;
+        for (; p + 4 <= hi; p += 4) {
+            v4 re[4], im[4];
+            UNROLL
+            for (int k = 0; k < 4; k++) { re[k] = load(xr + p + k * m); im[k] = load(xi + p + k * m); }
+            dft<4>(re, im);
+            twiddle(re[1], im[1], load(&m_w1Re[p]), load(&m_w1Im[p]));
+            twiddle(re[2], im[2], load(&m_w2Re[p]), load(&m_w2Im[p]));
+            twiddle(re[3], im[3], load(&m_w3Re[p]), load(&m_w3Im[p]));
+            transposeStore(yr + 4 * p, re[0], re[1], re[2], re[3]);
+            transposeStore(yi + 4 * p, im[0], im[1], im[2], im[3]);
+        }
+        for (; p < hi; p++) {
+            float re[4], im[4];
+            for (int k = 0; k < 4; k++) { re[k] = xr[p + k * m]; im[k] = xi[p + k * m]; }
+            dft<4>(re, im);
+            twiddle(re[1], im[1], m_w1Re[p], m_w1Im[p]);
+            twiddle(re[2], im[2], m_w2Re[p], m_w2Im[p]);
+            twiddle(re[3], im[3], m_w3Re[p], m_w3Im[p]);
+            for (int j = 0; j < 4; j++) { yr[4 * p + j] = re[j]; yi[4 * p + j] = im[j]; }
+        }
+    }
+
+    void pass(int r, int m, int s, const float* xr, const float* xi, float* yr, float* yi,
+              int pLo, int pHi, int qLo, int qHi) const {
+        switch (r) {
+            case 2: passR<2>(m, s, xr, xi, yr, yi, pLo, pHi, qLo, qHi); break;
+            case 3: passR<3>(m, s, xr, xi, yr, yi, pLo, pHi, qLo, qHi); break;
+            case 4: passR<4>(m, s, xr, xi, yr, yi, pLo, pHi, qLo, qHi); break;
+            default: passR<5>(m, s, xr, xi, yr, yi, pLo, pHi, qLo, qHi); break;
+        }
+    }
+
+    // Radix-R pass at stride s (a multiple of 4): y[q + s(Rp + j)] = W_n^jp DFT_R(x[q + s(p + km)])_j
+    template <int R>
+    void passR(int m, int s, const float* xr, const float* xi, float* yr, float* yi,
+               int pLo, int pHi, int qLo, int qHi) const {
+        for (int p = pLo; p < pHi; p++) {
+            v4 wr[R], wi[R];
+            UNROLL
+            for (int j = 1; j < R; j++) { wr[j] = splat(m_twRe[j * p * s]); wi[j] = splat(m_twIm[j * p * s]); }
+            const float* xrp = xr + s * p;
+            const float* xip = xi + s * p;
+            float* yrp = yr + s * R * p;
+            float* yip = yi + s * R * p;
+            for (int q = qLo; q < qHi; q += 4) {
+                v4 re[R], im[R];
+                UNROLL
+                for (int k = 0; k < R; k++) { re[k] = load(xrp + s * k * m + q); im[k] = load(xip + s * k * m + q); }
+                dft<R>(re, im);
+                UNROLL
+                for (int j = 1; j < R; j++) twiddle(re[j], im[j], wr[j], wi[j]);
+                UNROLL
+                for (int j = 0; j < R; j++) { store(yrp + s * j + q, re[j]); store(yip + s * j + q, im[j]); }
+            }
+        }
+    }
+
+    template <class T>
+    static inline void twiddle(T& re, T& im, T wr, T wi) {
+        T t = re * wr - im * wi;
+        im  = re * wi + im * wr;
+        re  = t;
+    }
+
+    // In-place forward DFT of R points, on vectors or single floats
+    template <int R, class T>
+    static inline void dft(T* re, T* im) {
+        if constexpr (R == 2) {
+            T r1 = re[0] - re[1], i1 = im[0] - im[1];
+            re[0] += re[1]; im[0] += im[1];
+            re[1] = r1; im[1] = i1;
+        } else if constexpr (R == 3) {
+            const float h = 0.8660254037844386f;            // sin(2pi/3)
+            T br = re[1] + re[2], bi = im[1] + im[2];
+            T dr = re[1] - re[2], di = im[1] - im[2];
+            T tr = re[0] - br * 0.5f, ti = im[0] - bi * 0.5f;
+            re[0] += br;         im[0] += bi;
+            re[1] = tr + di * h; im[1] = ti - dr * h;
+            re[2] = tr - di * h; im[2] = ti + dr * h;
+        } else if constexpr (R == 4) {
+            T apcR = re[0] + re[2], apcI = im[0] + im[2], amcR = re[0] - re[2], amcI = im[0] - im[2];
+            T bpdR = re[1] + re[3], bpdI = im[1] + im[3], bmdR = re[1] - re[3], bmdI = im[1] - im[3];
+            re[0] = apcR + bpdR; im[0] = apcI + bpdI;
+            re[1] = amcR + bmdI; im[1] = amcI - bmdR;      // (a - c) - i (b - d)
+            re[2] = apcR - bpdR; im[2] = apcI - bpdI;
+            re[3] = amcR - bmdI; im[3] = amcI + bmdR;      // (a - c) + i (b - d)
+        } else {
+            const float c1 = 0.30901699437494745f, c2 = -0.8090169943749473f;   // cos(2pi/5), cos(4pi/5)
+            const float s1 = 0.9510565162951535f,  s2 = 0.5877852522924732f;    // sin(2pi/5), sin(4pi/5)
+            T b1r = re[1] + re[4], b1i = im[1] + im[4], d1r = re[1] - re[4], d1i = im[1] - im[4];
+            T b2r = re[2] + re[3], b2i = im[2] + im[3], d2r = re[2] - re[3], d2i = im[2] - im[3];
+            T ar = re[0], ai = im[0];
+            T e1r = ar + b1r * c1 + b2r * c2, e1i = ai + b1i * c1 + b2i * c2;
+            T e2r = ar + b1r * c2 + b2r * c1, e2i = ai + b1i * c2 + b2i * c1;
+            T u1r = d1r * s1 + d2r * s2, u1i = d1i * s1 + d2i * s2;             // -i u1 goes to y1
+            T u2r = d1r * s2 - d2r * s1, u2i = d1i * s2 - d2i * s1;             // -i u2 goes to y2
+            re[0] = ar + b1r + b2r; im[0] = ai + b1i + b2i;
+            re[1] = e1r + u1i; im[1] = e1i - u1r;
+            re[4] = e1r - u1i; im[4] = e1i + u1r;
+            re[2] = e2r + u2i; im[2] = e2i - u2r;
+            re[3] = e2r - u2i; im[3] = e2i + u2r;
+        }
+    }
+
+    static inline void transposeStore(float* y, v4 r0, v4 r1, v4 r2, v4 r3) {
+        v4 t0 = SHUF(r0, r1, 0, 4, 1, 5), t1 = SHUF(r2, r3, 0, 4, 1, 5);
+        v4 t2 = SHUF(r0, r1, 2, 6, 3, 7), t3 = SHUF(r2, r3, 2, 6, 3, 7);
+        store(y,      SHUF(t0, t1, 0, 1, 4, 5));
+        store(y + 4,  SHUF(t0, t1, 2, 3, 6, 7));
+        store(y + 8,  SHUF(t2, t3, 0, 1, 4, 5));
+        store(y + 12, SHUF(t2, t3, 2, 3, 6, 7));
+    }
+
+    const int  m_M;
+    const bool m_threaded;
+    std::vector<int>   m_radices;                       // pass order, always 4 first
+    std::vector<float> m_twRe, m_twIm;                  // W_M^j
+    std::vector<float> m_w1Re, m_w1Im, m_w2Re, m_w2Im, m_w3Re, m_w3Im;
+    std::vector<float> m_rtRe, m_rtIm;                  // W_N^k
+    std::vector<float> m_aRe, m_aIm, m_bRe, m_bIm;      // ping-pong buffers
+};
+
+// ── Selection ─────────────────────────────────────────────────────────────
+static std::atomic<int> g_backend{FFT_AUTO};
+
+static int resolve(int backend) {
+    if (backend != FFT_AUTO) return backend;
+    return std::thread::hardware_concurrency() > 1 ? FFT_THREADED : FFT_SIMD;
+}
+
+// 2^a 3^b 5^c, the sizes kiss_fft and the Stockham passes have butterflies for
+static bool smooth235(int n) {
+    for (int r : { 2, 3, 5 }) {
+        while (n % r == 0) n /= r;
+    }
+    return n == 1;
+}
+
+std::unique_ptr<RealFft> makeRealFft(int backend, int nfft) {
+    backend = resolve(backend);
+    // below 64 points kiss is as fast; sizes the vector passes cannot split go to kiss too
+    bool vectorSize = nfft >= 64 && nfft % 8 == 0 && smooth235(nfft / 8);
+    if (backend == FFT_SCALAR || !vectorSize) return std::unique_ptr<RealFft>(new KissRealFft(nfft));
+    return std::unique_ptr<RealFft>(new StockhamRealFft(nfft, backend == FFT_THREADED));
+}
+
+int fastFftSize(int backend, int n) {
+    n = std::max(n, 1);
+    if (resolve(backend) == FFT_SCALAR) return kiss_fftr_next_fast_size_real(n);
+    return 8 * kiss_fft_next_fast_size((n + 7) / 8);
+}
+
+void setFftBackend(int backend) {
+    g_backend.store(backend >= FFT_AUTO && backend <= FFT_THREADED ? backend : FFT_AUTO);
+}
+
+int fftBackend() {
+    return resolve(g_backend.load());
+}
+
+const char* fftBackendName(int backend) {
+    switch (backend) {
+        case FFT_SCALAR:   return "scalar";
+        case FFT_SIMD:     return "simd";
+        case FFT_THREADED: return "threaded";
+        default:           return "auto";
+    }
+}
+
+RealFft& fftPlan(int nfft) {
+    static thread_local std::map<std::pair<int, int>, std::unique_ptr<RealFft>> cache;
+    int backend = fftBackend();
+    auto key = std::make_pair(backend, nfft);
+    auto it = cache.find(key);
+    if (it == cache.end()) {
+        if (cache.size() >= 8) cache.clear();
+        it = cache.emplace(key, makeRealFft(backend, nfft)).first;
+    }
+    return *it->second;
+}
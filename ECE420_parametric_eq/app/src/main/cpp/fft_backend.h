@@ -0,0 +1,58 @@
+#ifndef FFT_BACKEND_H
+#define FFT_BACKEND_H
+
+#include <memory>
+#include "kiss_fft/kiss_fftr.h"
+
+// ── Real FFT backends ─────────────────────────────────────────────────────
+// All backends follow kiss_fftr's conventions so they are interchangeable: forward takes
+// nfft reals to nfft/2 + 1 bins, inverse goes back, and neither normalizes, so
+// inverse(forward(x)) == nfft * x. nfft must be even; fastFftSize() picks lengths that
+// every backend runs at full speed.
+//
+//   FFT_SCALAR    kiss_fftr, the reference
+//   FFT_SIMD      split-format mixed-radix Stockham on 4-wide float vectors (SSE / NEON),
+//                 for nfft = 8 * 2^a 3^b 5^c; other sizes fall back to kiss
+//   FFT_THREADED  FFT_SIMD with every pass split across ThreadPool::shared(); runs
+//                 single-threaded below kThreadedMinSize or when called from a pool job
+//   FFT_AUTO      FFT_THREADED on multi-core devices, FFT_SIMD otherwise
+enum FftBackend { FFT_AUTO = 0, FFT_SCALAR = 1, FFT_SIMD = 2, FFT_THREADED = 3 };
+
+const int kThreadedMinSize = 1 << 15;   // points; smaller transforms are not worth a pool wake-up
+
+class RealFft {
+public:
+    explicit RealFft(int nfft) : m_n(nfft) {}
+    virtual ~RealFft() = default;
+
+    RealFft(const RealFft&) = delete;
+    RealFft& operator=(const RealFft&) = delete;
+
+    int size() const { return m_n; }
+
+    virtual void forward(const kiss_fft_scalar* in, kiss_fft_cpx* out) = 0;
+    virtual void inverse(const kiss_fft_cpx* in, kiss_fft_scalar* out) = 0;
+
+protected:
+    int m_n;
+};
+
+std::unique_ptr<RealFft> makeRealFft(int backend, int nfft);
+
+// Process-wide choice used by fftPlan(); set from initConfig
+void setFftBackend(int backend);
+
+// The selected backend with FFT_AUTO resolved
+int fftBackend();
+
+const char* fftBackendName(int backend);
+
+// Smallest length >= n the backend has butterflies for: 2 * 2^a 3^b 5^c for kiss, 8 * 2^a 3^b 5^c
+// for the vector backends. Never more than ~1.2x n, where a power of two can be 2x.
+int fastFftSize(int backend, int n);
+
+// Plan for nfft on the selected backend, cached per thread (plans keep scratch buffers).
+// Only the last few sizes are kept: use the plan before asking for another size.
+RealFft& fftPlan(int nfft);
+
+#endif // FFT_BACKEND_H
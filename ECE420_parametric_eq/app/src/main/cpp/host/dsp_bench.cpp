@@ -0,0 +1,414 @@
+// Host benchmark / check for the measurement pipeline (see CMakeLists.txt, built off-Android).
+//
+// Synthesises a recording of N exponential sweeps played through a known "room" (a few
+// biquads, a delay and a little noise), runs it through the same stages measureImpulse and
+// processBufferLog use, and prints per-stage timings plus peak RSS for each sweep length.
+// With --check it also compares the measured response against the room's analytic one and
+// exits non-zero if they disagree, so the pipeline can be tested without a device.
+// --fft runs everything once per listed FFT backend; --fft-bench instead times one real
+// forward + inverse transform per size (powers of two and mixed-radix lengths) and backend,
+// with the largest deviation from the scalar (kiss) result.
+// --cascade times the playback EQ instead: BiquadCascade on stereo float and PCM16 blocks with
+// 10 and 16 bands, with new coefficients (and their ramp) halfway through, reported as samples
+// per second and as the share of one core that real-time stereo at --fs needs.
+//
+//   dsp_bench [--sweep-seconds 1,4,10] [--sweeps 3] [--repeat 5] [--fs 48000] [--check]
+//             [--fft scalar,simd,threaded,auto] [--fft-bench] [--cascade]
+
+#include "biquad_cascade.h"
+#include "fft_backend.h"
+#include "measurement.h"
+#include "smoothing.h"
+
+#include <algorithm>
+#include <chrono>
+#include <cmath>
+#include <cstdint>
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <fstream>
+#include <functional>
+#include <sstream>
+#include <string>
+#include <vector>
+
+#include <sys/resource.h>
+
+namespace {
+
+struct Options {
+    std::vector<float> sweepSeconds { 1.f, 4.f, 10.f };
+    int  sweeps = 3;
+    int  repeat = 5;
+    int  fs     = 48000;
+    bool check  = false;
+    bool fftBench = false;
+    bool cascade  = false;
+    std::vector<int> fftBackends { FFT_AUTO };
+};
+
+// The simulated room: what the pipeline should find
+const int   kRoomBands = 3;
+const int   kRoomTypes[kRoomBands] = { BAND_LOW_SHELF, BAND_PEAKING, BAND_HIGH_SHELF };
+const float kRoomFc[kRoomBands]    = { 120.f, 2500.f, 8000.f };
+const float kRoomQ[kRoomBands]     = { 0.7f, 1.5f, 0.7f };
+const float kRoomGain[kRoomBands]  = { 6.f, -5.f, -4.f };
+
+enum Stage { INVERSE, SEGMENT, DECONV, AVERAGE, RESPONSE, SMOOTH, NORMALIZE, STAGES };
+const char* kStageNames[STAGES] = {
+    "inverse", "segment", "deconv", "average", "response", "smooth", "normalize"
+};
+
+double nowMs() {
+    using namespace std::chrono;
+    return duration<double, std::milli>(steady_clock::now().time_since_epoch()).count();
+}
+
+// Reset the kernel's peak-RSS mark (Linux >= 4.0); harmless where unsupported
+void resetPeakRss() {
+    std::ofstream("/proc/self/clear_refs") << "5";
+}
+
+double peakRssMb() {
+    std::ifstream status("/proc/self/status");
+    std::string line;
+    while (std::getline(status, line)) {
+        if (line.compare(0, 6, "VmHWM:") == 0) return std::atof(line.c_str() + 6) / 1024.0;
+    }
+    struct rusage ru;
+    getrusage(RUSAGE_SELF, &ru);
+    return ru.ru_maxrss / 1024.0;
+}
+
+// Same sweep the app plays (computeInverseFilter's forward half), with a 5 ms fade
+std::vector<float> makeSweep(float duration, int fs) {
+    int N = int(duration * fs);
+    double alpha = std::log(double(kSweepF2) / kSweepF1) / duration;
+    double K     = 2 * M_PI * kSweepF1 / alpha;
+    std::vector<float> s(N);
+    for (int i = 0; i < N; i++) s[i] = float(0.5 * std::sin(K * (std::exp(alpha * i / fs) - 1.0)));
+    int fade = int(0.005 * fs);
+    for (int i = 0; i < fade && 2 * fade < N; i++) {
+        float w = float(i) / fade;
+        s[i] *= w;
+        s[N - 1 - i] *= w;
+    }
+    return s;
+}
+
+// silence | sweep | silence | sweep ... played through the room
+std::vector<float> makeRecording(const MeasureConfig& cfg, int sweeps) {
+    int fs  = cfg.fs;
+    auto sweep = makeSweep(cfg.sweepDuration, fs);
+    int gap = int(cfg.markerSilence * fs);
+    std::vector<float> rec;
+    rec.reserve(size_t(sweeps) * (sweep.size() + gap) + gap + fs);
+    for (int k = 0; k < sweeps; k++) {
+        rec.insert(rec.end(), gap, 0.f);
+        rec.insert(rec.end(), sweep.begin(), sweep.end());
+    }
+    rec.insert(rec.end(), gap + fs, 0.f);
+
+    BiquadCascade room(fs, 1);
+    room.setBands(kRoomTypes, kRoomFc, kRoomQ, kRoomGain, kRoomBands, 0.f);
+    std::vector<float> settle(256, 0.f);
+    room.process(settle.data(), int(settle.size()));      // finish the coefficient ramp
+    room.reset();
+    room.process(rec.data(), int(rec.size()));
+
+    // 7 ms propagation delay and -70 dBFS noise (deterministic LCG)
+    int delay = fs * 7 / 1000;
+    rec.insert(rec.begin(), delay, 0.f);
+    uint32_t seed = 12345;
+    for (auto& v : rec) {
+        seed = seed * 1664525u + 1013904223u;
+        v += 3.2e-4f * (float(seed >> 8) / float(1 << 24) - 0.5f);
+    }
+    return rec;
+}
+
+struct RunResult {
+    double ms[STAGES] = {};
+    std::vector<float> freqs, smoothDb;
+};
+
+RunResult runPipeline(const std::vector<float>& audio, const MeasureConfig& cfg) {
+    RunResult r;
+    // building the filter from scratch; the pipeline itself uses the cached copy
+    double t = nowMs();
+    auto taps = computeInverseFilter(kSweepF1, kSweepF2, cfg.sweepDuration, cfg.fs);
+    r.ms[INVERSE] = nowMs() - t;
+    auto invf = inverseFilter(kSweepF1, kSweepF2, cfg.sweepDuration, cfg.fs);
+    if (taps.size() != invf->taps.size()) std::abort();
+
+    t = nowMs();
+    auto segs = segmentRecording(audio, cfg.fs, cfg.sweepDuration, cfg.markerSilence, cfg.impulseWindow);
+    r.ms[SEGMENT] = nowMs() - t;
+
+    t = nowMs();
+    auto irs = deconvolveAll(segs, *invf, cfg.fs, cfg.impulseWindow);
+    r.ms[DECONV] = nowMs() - t;
+
+    t = nowMs();
+    auto ir = alignAndAverage(irs, cfg.fs);
+    windowImpulse(ir);
+    r.ms[AVERAGE] = nowMs() - t;
+
+    t = nowMs();
+    auto linDb = computeFrequencyResponse(ir);
+    r.ms[RESPONSE] = nowMs() - t;
+
+    t = nowMs();
+    r.freqs = logFrequencyAxis(kLogMinHz, logAxisMaxHz(cfg.fs), kLogPointsPerOctave);
+    std::vector<float> rawDb;
+    smoothOnAxis(linDb, cfg, r.freqs, SMOOTH_OCTAVE, 12.f, rawDb, r.smoothDb);
+    r.ms[SMOOTH] = nowMs() - t;
+
+    t = nowMs();
+    r.smoothDb = normalizeAt1kHz(r.freqs, r.smoothDb);
+    r.ms[NORMALIZE] = nowMs() - t;
+    return r;
+}
+
+// Largest deviation from the room over 100 Hz .. 10 kHz, both normalized at 1 kHz
+double checkAgainstRoom(const RunResult& r, int fs) {
+    Biquad bq[kRoomBands];
+    for (int b = 0; b < kRoomBands; b++) {
+        bq[b] = designBiquad(kRoomTypes[b], kRoomFc[b], kRoomQ[b], kRoomGain[b], fs);
+    }
+    auto room = [&](double f) {
+        double db = 0;
+        for (int b = 0; b < kRoomBands; b++) db += biquadMagnitudeDb(bq[b], f, fs);
+        return db;
+    };
+    double ref = room(1000.0);
+    double worst = 0;
+    for (size_t i = 0; i < r.freqs.size(); i++) {
+        double f = r.freqs[i];
+        if (f < 100 || f > 10000) continue;
+        worst = std::max(worst, std::abs(r.smoothDb[i] - (room(f) - ref)));
+    }
+    return worst;
+}
+
+std::vector<int> parseBackends(const char* s) {
+    std::vector<int> out;
+    std::stringstream ss(s);
+    std::string item;
+    while (std::getline(ss, item, ',')) {
+        for (int b = FFT_AUTO; b <= FFT_THREADED; b++) {
+            if (item == fftBackendName(b)) out.push_back(b);
+        }
+    }
+    return out;
+}
+
+double medianOf(std::vector<double> v) {
+    std::nth_element(v.begin(), v.begin() + v.size() / 2, v.end());
+    return v[v.size() / 2];
+}
+
+// forward + inverse per size; max |X - X_scalar| / max |X_scalar| over both directions
+void fftBench(const Options& opt) {
+    std::printf("%-8s %-9s %10s %10s %9s\n", "nfft", "backend", "us", "speedup", "max_rel");
+    // each power of two next to the fast size just past the one below it, where padding to
+    // the power of two nearly doubles the transform
+    std::vector<int> sizes;
+    for (int lg = 10; lg <= 21; lg++) {
+        sizes.push_back(fastFftSize(FFT_SIMD, (1 << (lg - 1)) + 1));
+        sizes.push_back(1 << lg);
+    }
+    for (int n : sizes) {
+        std::vector<float> x(n), y(n), yRef(n);
+        uint32_t seed = 777;
+        for (auto& v : x) {
+            seed = seed * 1664525u + 1013904223u;
+            v = float(seed >> 8) / float(1 << 24) - 0.5f;
+        }
+        std::vector<kiss_fft_cpx> X(n / 2 + 1), XRef(n / 2 + 1);
+        auto ref = makeRealFft(FFT_SCALAR, n);
+        ref->forward(x.data(), XRef.data());
+        ref->inverse(XRef.data(), yRef.data());
+        double scalarUs = 0;
+        for (int backend : opt.fftBackends) {
+            auto fft = makeRealFft(backend, n);
+            fft->forward(x.data(), X.data());                 // warm up
+            int reps = std::max(opt.repeat, (1 << 22) / n);
+            std::vector<double> samples;
+            for (int k = 0; k < reps; k++) {
+                double t = nowMs();
+                fft->forward(x.data(), X.data());
+                fft->inverse(X.data(), y.data());
+                samples.push_back((nowMs() - t) * 1000.0);
+            }
+            double us = medianOf(samples);
+            if (backend == FFT_SCALAR) scalarUs = us;
+
+            double err = 0, mag = 0;
+            for (int k = 0; k <= n / 2; k++) {
+                err = std::max(err, double(std::hypot(X[k].r - XRef[k].r, X[k].i - XRef[k].i)));
+                mag = std::max(mag, double(std::hypot(XRef[k].r, XRef[k].i)));
+            }
+            double errT = 0, magT = 0;
+            for (int i = 0; i < n; i++) {
+                errT = std::max(errT, double(std::abs(y[i] - yRef[i])));
+                magT = std::max(magT, double(std::abs(yRef[i])));
+            }
+            std::printf("%-8d %-9s %10.1f", n, fftBackendName(backend), us);
+            if (scalarUs > 0) std::printf(" %9.2fx", scalarUs / us);
+            else              std::printf(" %10s", "-");
+            std::printf(" %9.1e\n", std::max(err / mag, errT / magT));
+        }
+    }
+}
+
+// 60 s of stereo at fs per run, in 192-frame (4 ms at 48 kHz) blocks like an AAudio callback
+void cascadeBench(const Options& opt) {
+    const int channels = 2, block = 192;
+    const int blocks = opt.fs * 60 / block;
+    std::printf("%-6s %5s %8s %10s %12s %10s\n", "format", "bands", "block", "ms", "Msamples/s", "core_%");
+
+    // music-like input: two detuned tones plus a little noise, well inside full scale
+    std::vector<float> input(size_t(block) * channels * 64);
+    uint32_t seed = 4242;
+    for (size_t i = 0; i < input.size(); i++) {
+        seed = seed * 1664525u + 1013904223u;
+        double t = double(i / channels) / opt.fs;
+        input[i] = float(0.3 * std::sin(2 * M_PI * 220 * t) + 0.2 * std::sin(2 * M_PI * (331 + i % 2) * t)
+                         + 0.05 * (float(seed >> 8) / float(1 << 24) - 0.5f));
+    }
+    std::vector<int16_t> input16(input.size());
+    for (size_t i = 0; i < input.size(); i++) input16[i] = int16_t(input[i] * 32767.f);
+
+    for (int bands : { 10, BiquadCascade::kMaxBands })
+    for (int pcm16 = 0; pcm16 < 2; pcm16++) {
+        // 8 peaking + shelves like an AutoEQ fit, more peaking bands up to 16
+        std::vector<int>   types(bands, BAND_PEAKING);
+        std::vector<float> fc(bands), q(bands), gain(bands), gain2(bands);
+        types[0] = BAND_LOW_SHELF;
+        types[1] = BAND_HIGH_SHELF;
+        for (int b = 0; b < bands; b++) {
+            fc[b]    = b == 0 ? 105.f : b == 1 ? 10000.f : float(40 * std::pow(2.0, (b - 2) * 9.0 / (bands - 2)));
+            q[b]     = b < 2 ? 0.7f : 1.4f;
+            gain[b]  = float((b % 3) - 1) * 3.f;
+            gain2[b] = -gain[b];
+        }
+
+        std::vector<double> samples;
+        for (int k = 0; k < opt.repeat; k++) {
+            BiquadCascade eq(opt.fs, channels);
+            eq.setBands(types.data(), fc.data(), q.data(), gain.data(), bands, -6.f);
+            std::vector<float>   buf(size_t(block) * channels);
+            std::vector<int16_t> buf16(buf.size());
+            size_t period = input.size() / buf.size();
+            double t = nowMs();
+            for (int i = 0; i < blocks; i++) {
+                // coefficient update halfway: the next block ramps to the new set
+                if (i == blocks / 2) {
+                    eq.setBands(types.data(), fc.data(), q.data(), gain2.data(), bands, -6.f);
+                }
+                size_t off = (i % period) * buf.size();
+                if (pcm16) {
+                    std::memcpy(buf16.data(), &input16[off], buf16.size() * sizeof(int16_t));
+                    eq.process(buf16.data(), block);
+                } else {
+                    std::memcpy(buf.data(), &input[off], buf.size() * sizeof(float));
+                    eq.process(buf.data(), block);
+                }
+            }
+            samples.push_back(nowMs() - t);
+            if (!pcm16 && !std::isfinite(buf[0])) std::abort();
+        }
+        double ms = medianOf(samples);
+        double perSec = double(blocks) * block * channels / (ms / 1000.0);
+        double realTime = double(opt.fs) * channels;
+        std::printf("%-6s %5d %8d %10.2f %12.1f %10.3f\n", pcm16 ? "pcm16" : "float", bands, block,
+                    ms, perSec / 1e6, 100.0 * realTime / perSec);
+    }
+}
+
+std::vector<float> parseList(const char* s) {
+    std::vector<float> out;
+    std::stringstream ss(s);
+    std::string item;
+    while (std::getline(ss, item, ',')) out.push_back(std::stof(item));
+    return out;
+}
+
+int usage() {
+    std::fprintf(stderr,
+            "usage: dsp_bench [--sweep-seconds 1,4,10] [--sweeps N] [--repeat N] [--fs HZ] [--check]\n"
+            "                 [--fft scalar,simd,threaded,auto] [--fft-bench] [--cascade]\n");
+    return 2;
+}
+
+} // namespace
+
+int main(int argc, char** argv) {
+    Options opt;
+    for (int i = 1; i < argc; i++) {
+        std::string a = argv[i];
+        bool hasValue = i + 1 < argc;
+        if (a == "--sweep-seconds" && hasValue)  opt.sweepSeconds = parseList(argv[++i]);
+        else if (a == "--sweeps" && hasValue)    opt.sweeps = std::max(1, std::atoi(argv[++i]));
+        else if (a == "--repeat" && hasValue)    opt.repeat = std::max(1, std::atoi(argv[++i]));
+        else if (a == "--fs" && hasValue)        opt.fs = std::atoi(argv[++i]);
+        else if (a == "--check")                 opt.check = true;
+        else if (a == "--fft" && hasValue)       opt.fftBackends = parseBackends(argv[++i]);
+        else if (a == "--fft-bench")             opt.fftBench = true;
+        else if (a == "--cascade")               opt.cascade = true;
+        else return usage();
+    }
+    if (opt.fftBackends.empty()) return usage();
+    if (opt.fftBench) {
+        fftBench(opt);
+        return 0;
+    }
+    if (opt.cascade) {
+        cascadeBench(opt);
+        return 0;
+    }
+
+    std::printf("%-9s %-7s %6s", "fft", "sweep_s", "sweeps");
+    for (const char* n : kStageNames) std::printf(" %9s", n);
+    std::printf(" %9s %9s%s\n", "total_ms", "peak_MB", opt.check ? "  max_err_dB" : "");
+
+    bool ok = true;
+    for (int backend : opt.fftBackends)
+    for (float seconds : opt.sweepSeconds) {
+        setFftBackend(backend);
+        MeasureConfig cfg;
+        cfg.fs            = opt.fs;
+        cfg.sweepDuration = seconds;
+
+        resetPeakRss();
+        auto audio = makeRecording(cfg, opt.sweeps);
+
+        // first run builds plans and filter spectra; report the median of the rest
+        RunResult last = runPipeline(audio, cfg);
+        std::vector<double> samples[STAGES];
+        for (int k = 0; k < opt.repeat; k++) {
+            last = runPipeline(audio, cfg);
+            for (int s = 0; s < STAGES; s++) samples[s].push_back(last.ms[s]);
+        }
+
+        std::printf("%-9s %-7.1f %6d", fftBackendName(backend), seconds, opt.sweeps);
+        double total = 0;
+        for (int s = 0; s < STAGES; s++) {
+            auto& v = samples[s];
+            std::nth_element(v.begin(), v.begin() + v.size() / 2, v.end());
+            double med = v[v.size() / 2];
+            total += med;
+            std::printf(" %9.2f", med);
+        }
+        std::printf(" %9.2f %9.1f", total, peakRssMb());
+        if (opt.check) {
+            double err = checkAgainstRoom(last, cfg.fs);
+            std::printf("  %10.2f", err);
+            ok = ok && err < 1.0;
+        }
+        std::printf("\n");
+    }
+    return ok ? 0 : 1;
+}
@@ -0,0 +1,409 @@
+#include "measurement.h"
+#include "fft_backend.h"
+#include "metrics.h"
+#include "smoothing.h"
+#include "thread_pool.h"
+#include <algorithm>
+#include <cassert>
+#include <cmath>
+#include <cstdlib>
+#include <mutex>
+#include <tuple>
+
+// ── Helper: FFT length ──────────────────────────────────────────────────────
+// Smallest 2/3/5-smooth length that holds v samples (within ~20% of v), where the next
+// power of two can be nearly twice as long when the convolution lands just past one.
+static int fftSize(int v) {
+    return fastFftSize(fftBackend(), v);
+}
+
+void SampleView::copyTo(float* dst) const {
+    if (f32) {
+        std::copy(f32, f32 + n, dst);
+    } else {
+        const float k = 1.f / 32768.f;
+        for (size_t i = 0; i < n; i++) dst[i] = s16[i] * k;
+    }
+}
+
+// ── Farina inverse filter ─────────────────────────────────────────────────
+// Generate exponential sweep, invert, fade, normalize
+std::vector<float> computeInverseFilter(
+        int f1, int f2, float duration, int fs
+) {
+    metrics::Scope span("inverse_filter");
+    int N = int(duration * fs);
+    std::vector<double> sweep(N);
+    double alpha = std::log(double(f2)/f1) / duration;
+    double K     = 2*M_PI*f1 * (duration/ std::log(double(f2)/f1));
+    // generate sweep
+    for (int i = 0; i < N; i++) {
+        double t = i / double(fs);
+        sweep[i] = std::sin( K * (std::exp(alpha*t) - 1.0) );
+    }
+    // fade
+    int fade = int(0.005 * fs);
+    if (2*fade < N) {
+        for (int i = 0; i < fade; i++) {
+            double w = double(i)/fade;
+            sweep[i]   *= w;
+            sweep[N-1-i] *= w;
+        }
+    }
+// normalize sweep
+    double mx = 0.0;
+    for (double v : sweep) {
+        double av = std::abs(v);
+        if (av > mx) mx = av;
+    }
+    if (mx > 1e-12) {
+        for (auto &v : sweep)
+            v /= mx;
+    }
+    // reverse + exponential
+    std::vector<float> invf(N);
+    for (int i = 0; i < N; i++) {
+        double rev = sweep[N-1-i];
+        double factor = std::exp(alpha * ((N-1-i)/double(fs)));
+        invf[i] = float(rev * factor);
+    }
+    // fade inverse
+    if (2*fade < N) {
+        for (int i = 0; i < fade; i++) {
+            double w = double(i)/fade;
+            invf[i]   *= w;
+            invf[N-1-i] *= w;
+        }
+    }
+// normalize invf
+    mx = 0.0;
+    for (float v : invf) {
+        double av = std::abs(v);
+        if (av > mx) mx = av;
+    }
+    if (mx > 1e-12) {
+        for (auto &v : invf)
+            v /= mx;
+    }
+    return invf;
+}
+
+// ── Inverse-filter cache ────────────────────────────────────────────────────
+// The inverse sweep and its spectrum per FFT size are built once and reused across
+// processBuffer calls (FFT plans are cached per thread by fftPlan, fft_backend.h).
+// Filters and spectra are immutable once built and shared.
+
+using SweepKey = std::tuple<int, int, int, float>;   // fs, f1, f2, duration
+
+static std::mutex g_cacheMutex;
+static std::map<SweepKey, std::shared_ptr<InverseFilter>> g_filters;
+
+std::shared_ptr<InverseFilter> inverseFilter(int f1, int f2, float duration, int fs) {
+    SweepKey key(fs, f1, f2, duration);
+    std::lock_guard<std::mutex> lock(g_cacheMutex);
+    auto it = g_filters.find(key);
+    if (it != g_filters.end()) return it->second;
+    // settings rarely change; drop stale sweeps rather than grow (holders keep theirs alive)
+    if (g_filters.size() >= 4) g_filters.clear();
+    auto filt = std::make_shared<InverseFilter>();
+    filt->taps = computeInverseFilter(f1, f2, duration, fs);
+    metrics::gaugeBytes("inverse_filter.taps_bytes", int64_t(filt->taps.size() * sizeof(float)));
+    g_filters.emplace(key, filt);
+    return filt;
+}
+
+// Real FFT of the zero-padded inverse filter, computed once per Nfft
+static std::shared_ptr<const std::vector<kiss_fft_cpx>> inverseSpectrum(InverseFilter& filt, int nfft) {
+    {
+        std::lock_guard<std::mutex> lock(g_cacheMutex);
+        auto it = filt.spectra.find(nfft);
+        if (it != filt.spectra.end()) return it->second;
+    }
+    metrics::Scope span("inverse_spectrum");
+    std::vector<kiss_fft_scalar> ib(nfft, 0);
+    std::copy(filt.taps.begin(), filt.taps.begin() + std::min<size_t>(filt.taps.size(), nfft), ib.begin());
+    auto spec = std::make_shared<std::vector<kiss_fft_cpx>>(nfft/2 + 1);
+    fftPlan(nfft).forward(ib.data(), spec->data());
+    std::lock_guard<std::mutex> lock(g_cacheMutex);
+    // lengths now follow the recording; keep a few rather than one per capture length
+    if (filt.spectra.size() >= 4 && !filt.spectra.count(nfft)) filt.spectra.clear();
+    return filt.spectra.emplace(nfft, spec).first->second;
+}
+
+// ── Segmentation: one segment per sweep ─────────────────────────────────
+// Envelope onset detection: 10 ms RMS blocks are thresholded halfway (in dB) between the
+// noise floor and the loud level. Active regions closer than half the marker silence are
+// merged (a sweep can dip where the speaker or mic rolls off), regions shorter than half a
+// sweep are markers and skipped. Because a region can start late / end early at the band
+// edges, each segment spans a full sweep back from the region end and forward from its
+// start, plus the IR window, clipped halfway to the neighbouring sweeps.
+// Falls back to the whole recording when no sweep stands out from the noise.
+std::vector<SampleView> segmentRecording(
+        SampleView audio,
+        int fs, float sweepDuration, float markerSilence, float impulseWindow
+) {
+    metrics::Scope span("segment");
+    int N   = int(audio.size());
+    int hop = std::max(1, fs / 100);
+    int nb  = N / hop;
+    if (nb < 4) return { audio };
+
+    std::vector<float> env(nb);
+    for (int b = 0; b < nb; b++) {
+        double e = 0;
+        for (int i = b * hop; i < (b + 1) * hop; i++) {
+            double v = audio[i];
+            e += v * v;
+        }
+        env[b] = float(std::sqrt(e / hop));
+    }
+    std::vector<float> sorted(env);
+    std::sort(sorted.begin(), sorted.end());
+    float floorLvl = std::max(sorted[nb / 10], 1e-9f);
+    float loudLvl  = sorted[std::min(nb - 1, nb * 99 / 100)];
+    if (loudLvl < 4 * floorLvl) return { audio };        // under 12 dB of contrast
+    float thresh = std::sqrt(floorLvl * loudLvl);
+
+    // active regions in blocks, small gaps merged
+    int maxGap = std::max(1, int(markerSilence * 0.5f * fs) / hop);
+    std::vector<std::pair<int,int>> regions;
+    for (int b = 0; b < nb; b++) {
+        if (env[b] <= thresh) continue;
+        if (!regions.empty() && b - regions.back().second <= maxGap) regions.back().second = b + 1;
+        else regions.push_back({ b, b + 1 });
+    }
+    int sweepBlocks = int(sweepDuration * fs) / hop;
+    std::vector<std::pair<int,int>> sweeps;
+    for (auto &r : regions) {
+        if (r.second - r.first >= sweepBlocks / 2) sweeps.push_back({ r.first * hop, r.second * hop });
+    }
+    if (sweeps.empty()) return { audio };
+
+    int D   = int(sweepDuration * fs);
+    int pad = int(impulseWindow * fs) + hop;
+    std::vector<SampleView> segs;
+    for (size_t k = 0; k < sweeps.size(); k++) {
+        int lo = std::max(0, sweeps[k].second - D - pad);
+        int hi = std::min(N, sweeps[k].first + D + pad);
+        if (k > 0)                 lo = std::max(lo, (sweeps[k-1].second + sweeps[k].first) / 2);
+        if (k + 1 < sweeps.size()) hi = std::min(hi, (sweeps[k].second + sweeps[k+1].first) / 2);
+        segs.push_back(audio.sub(lo, hi));
+    }
+    return segs;
+}
+
+// ── Hann window + peak normalize an extracted IR (batch and streaming) ─────
+void windowImpulse(std::vector<float>& ir) {
+    int M = int(ir.size());
+    for (int i = 0; i < M; i++) {
+        double w = M > 1 ? 0.5 * (1 - std::cos(2*M_PI*i/(M-1))) : 1.0;
+        ir[i]    = float(ir[i] * w);
+    }
+    double norm = 0.0;
+    for (float v : ir) {
+        double av = std::abs(v);
+        if (av > norm) norm = av;
+    }
+    if (norm > 1e-12) {
+        for (auto &v : ir) v /= norm;
+    }
+}
+
+// ── Deconvolution via FFT convolution ────────────────────────────────────
+std::vector<float> deconvolveSweep(
+        SampleView segment,
+        InverseFilter& invf,
+        int fs, float impulseWindow, int nfft
+) {
+    int n1   = int(segment.size());
+    int n2   = int(invf.taps.size());
+    int outN = n1 + n2 - 1;
+    int Nfft = nfft >= outN ? nfft : fftSize(outN);
+    metrics::Scope span("deconv_sweep");
+    metrics::count("fft.calls", 2);
+    metrics::gaugeBytes("deconv.fft_bytes",
+            int64_t(Nfft * sizeof(kiss_fft_scalar) + (Nfft/2 + 1) * sizeof(kiss_fft_cpx)));
+
+    // cached plans and inverse-filter spectrum: one forward FFT, one multiply, one inverse
+    auto Ib = inverseSpectrum(invf, Nfft);
+    RealFft& plan = fftPlan(Nfft);
+
+    // zero‐pad input: the one copy of the recording the deconvolution makes
+    std::vector<kiss_fft_scalar> xa(Nfft,0);
+    segment.copyTo(xa.data());
+
+    // Forward real FFT
+    std::vector<kiss_fft_cpx> Xa(Nfft/2+1);
+    plan.forward(xa.data(), Xa.data());
+
+    // Multiply spectra (convolution in time), in place
+    for (int i = 0; i < int(Xa.size()); i++) {
+        auto &a = Xa[i];
+        const auto &b = (*Ib)[i];
+        kiss_fft_cpx c = { a.r*b.r - a.i*b.i, a.r*b.i + a.i*b.r };
+        a = c;
+    }
+
+    // Inverse real FFT to get full convolved signal (reuses the input buffer)
+    std::vector<kiss_fft_scalar>& y = xa;
+    plan.inverse(Xa.data(), y.data());
+
+    // Extract impulse‐response window around the peak
+    int win    = int(impulseWindow * fs);
+    double peak = 0; int pidx = 0;
+    for (int i = 0; i < outN; i++) {
+        double v = std::abs(y[i]);
+        if (v > peak) { peak = v; pidx = i; }
+    }
+    int start = std::max(0, pidx - win/2);
+    int end   = std::min(outN, start + win);
+
+    // raw samples; callers align/average and then windowImpulse()
+    return std::vector<float>(y.begin() + start, y.begin() + end);
+}
+
+std::vector<std::vector<float>> deconvolveAll(const std::vector<SampleView>& segs, InverseFilter& invf,
+                                              int fs, float impulseWindow) {
+    std::vector<std::vector<float>> irs(segs.size());
+    // segments differ by a few samples; one length means one plan and one filter spectrum
+    size_t longest = 0;
+    for (const auto& seg : segs) longest = std::max(longest, seg.size());
+    int nfft = fftSize(int(longest + invf.taps.size() - 1));
+
+    ThreadPool& pool = ThreadPool::shared();
+    if (fftBackend() == FFT_THREADED && int(segs.size()) < pool.size()) {
+        for (size_t k = 0; k < segs.size(); k++) irs[k] = deconvolveSweep(segs[k], invf, fs, impulseWindow, nfft);
+    } else {
+        pool.parallelFor(int(segs.size()), [&](int k) {
+            irs[k] = deconvolveSweep(segs[k], invf, fs, impulseWindow, nfft);
+        });
+    }
+    return irs;
+}
+
+// ── Synchronous averaging of per-sweep IRs ──────────────────────────────────
+// Every IR is already cut around its own peak; cross-correlation against the strongest one
+// over a few ms of lag removes the remaining jitter before the samples are averaged.
+std::vector<float> alignAndAverage(const std::vector<std::vector<float>>& irs, int fs) {
+    metrics::Scope span("align_average");
+    if (irs.size() == 1) return irs[0];
+    size_t ref = 0;
+    float best = 0;
+    for (size_t k = 0; k < irs.size(); k++) {
+        for (float v : irs[k]) if (std::abs(v) > best) { best = std::abs(v); ref = k; }
+    }
+    const std::vector<float>& r = irs[ref];
+    int M      = int(r.size());
+    int maxLag = std::max(1, fs / 500);                  // ±2 ms
+
+    std::vector<double> sum(M, 0.0);
+    std::vector<int>    cnt(M, 0);
+    for (const auto &x : irs) {
+        int L = int(x.size());
+        int lag = 0;
+        double bestC = -1e300;
+        for (int l = -maxLag; l <= maxLag; l++) {
+            double c = 0;
+            for (int i = std::max(0, -l); i < M && i + l < L; i++) c += double(r[i]) * x[i + l];
+            if (c > bestC) { bestC = c; lag = l; }
+        }
+        for (int i = 0; i < M; i++) {
+            int j = i + lag;
+            if (j >= 0 && j < L) { sum[i] += x[j]; cnt[i]++; }
+        }
+    }
+    std::vector<float> avg(M);
+    for (int i = 0; i < M; i++) avg[i] = cnt[i] ? float(sum[i] / cnt[i]) : 0.f;
+    return avg;
+}
+
+// ── Compute frequency response (RFFT to mag to dB) ────────────────────────────
+std::vector<float> computeFrequencyResponse(
+        const std::vector<float>& ir
+) {
+    metrics::Scope span("fft_response");
+    metrics::count("fft.calls", 1);
+    int N = ir.size();
+    int Nfft = fftSize(N);
+    std::vector<kiss_fft_scalar> buf(Nfft,0);
+    for (int i=0; i<N; i++) buf[i] = ir[i];
+    std::vector<kiss_fft_cpx> out(Nfft/2+1);
+    fftPlan(Nfft).forward(buf.data(), out.data());
+    std::vector<float> db(Nfft/2+1);
+    for (int i=0; i<db.size(); i++) {
+        double mag = std::hypot(out[i].r, out[i].i);
+        db[i] = 20.0f * log10f(float(mag + 1e-12));
+    }
+    return db;
+}
+
+// ── Normalize at 1 kHz ────────────────────────────────────────────────────
+std::vector<float> normalizeAt1kHz(
+        const std::vector<float>& freqs,
+        const std::vector<float>& resp
+) {
+    // find index closest to 1000 Hz
+    assert(freqs.size() == resp.size());
+    int idx=0; double best=1e12;
+    for (int i=0; i<freqs.size(); i++) {
+        double d = std::abs(freqs[i] - 1000.0f);
+        if (d<best) { best=d; idx=i; }
+    }
+    float offset = resp[idx];
+    std::vector<float> out(resp.size());
+    for (int i=0; i<resp.size(); i++) out[i] = resp[i] - offset; // subtract offset from all values
+    return out;
+}
+
+// ── Smoothing + log decimation ──────────────────────────────────────────────
+// Results go out on a log axis from 20 Hz instead of every FFT bin: 1/48 octave (~480
+// points up to 20 kHz) by default, or a caller-chosen point count. "raw" is the band
+// average over one axis step, so nothing aliases.
+int defaultSmoothMode(const MeasureConfig& cfg) {
+    return cfg.sgWindow > cfg.sgPoly + 1 ? SMOOTH_SAVGOL : SMOOTH_NONE;
+}
+
+double logAxisMaxHz(int fs) {
+    return std::min(kLogMaxHz, 0.999 * fs / 2);
+}
+
+void smoothOnAxis(const std::vector<float>& linDb, const MeasureConfig& cfg,
+                  const std::vector<float>& axis, int mode, float octaveFraction,
+                  std::vector<float>& rawDb, std::vector<float>& smoothDb) {
+    metrics::Scope span("smooth");
+    int fs = cfg.fs;
+    double binHz = (fs / 2.0) / std::max<size_t>(1, linDb.size() - 1);
+    double pointsPerOctave = (axis.size() - 1) / std::log2(double(axis.back()) / axis.front());
+    OctaveSmoother smoother(linDb, binHz);
+    rawDb = smoother.smooth(axis, pointsPerOctave);
+    switch (mode) {
+        case SMOOTH_OCTAVE:
+            smoothDb = smoother.smooth(axis, octaveFraction > 0 ? octaveFraction : 6.0);
+            break;
+        case SMOOTH_SAVGOL: {
+            // sgWindow is in 1/48-octave points; keep the same span in octaves on other axes
+            int window = int(std::lround(cfg.sgWindow * pointsPerOctave / kLogPointsPerOctave)) | 1;
+            smoothDb = savitzkyGolay(rawDb, window, cfg.sgPoly);
+            break;
+        }
+        default:
+            smoothDb = rawDb;
+    }
+}
+
+// ── Whole pipeline up to the IR ─────────────────────────────────────────────
+std::vector<float> measureImpulse(SampleView audio, const MeasureConfig& cfg) {
+    metrics::Scope span("measure_impulse");
+    metrics::gaugeBytes("recording.bytes", int64_t(audio.size() * (audio.f32 ? sizeof(float) : sizeof(int16_t))));
+// inverse filter (cached per sweep settings)
+    auto invf = inverseFilter(kSweepF1, kSweepF2, cfg.sweepDuration, cfg.fs);
+
+// segment
+    auto segs = segmentRecording(audio, cfg.fs, cfg.sweepDuration, cfg.markerSilence, cfg.impulseWindow);
+
+// deconv each sweep, then align & average
+    auto irs = deconvolveAll(segs, *invf, cfg.fs, cfg.impulseWindow);
+    auto ir = alignAndAverage(irs, cfg.fs);
+    windowImpulse(ir);
+    return ir;
+}
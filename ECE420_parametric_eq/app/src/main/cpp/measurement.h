@@ -0,0 +1,108 @@
+#ifndef MEASUREMENT_H
+#define MEASUREMENT_H
+
+#include <cstddef>
+#include <cstdint>
+#include <map>
+#include <memory>
+#include <vector>
+#include "kiss_fft/kiss_fftr.h"
+
+// ── Sweep measurement core ────────────────────────────────────────────────
+// Inverse filter, segmentation, deconvolution, averaging, FFT response, smoothing and
+// normalization, with no JNI in sight. The app library wraps these in dsp_native.cpp;
+// the host benchmark and host JNI build link the same code (see CMakeLists.txt).
+
+// Settings that initConfig passes down from DSPProcessor
+struct MeasureConfig {
+    int   fs            = 48000;
+    float impulseWindow = 0.30f;   // seconds of IR kept around the peak
+    float markerSilence = 0.5f;    // seconds between marker & sweep
+    float sweepDuration = 4.0f;    // length of each sweep
+    int   sgWindow      = 31;
+    int   sgPoly        = 3;
+};
+
+// Band of the exponential sweep the app plays
+const int kSweepF1 = 10;
+const int kSweepF2 = 21000;
+
+// Results go out on a log axis from 20 Hz, 1/48 octave by default
+const int    kLogPointsPerOctave = 48;
+const double kLogMinHz = 20.0;
+const double kLogMaxHz = 20000.0;
+
+// Mono samples read where they lie (a vector, a direct buffer, a mapped WAV): float, or
+// PCM16 scaled by 1/32768 like WavReader. Views never own their samples.
+struct SampleView {
+    const float*   f32 = nullptr;
+    const int16_t* s16 = nullptr;
+    size_t         n   = 0;
+
+    SampleView() = default;
+    SampleView(const std::vector<float>& v) : f32(v.data()), n(v.size()) {}
+    SampleView(const float* p, size_t len) : f32(p), n(len) {}
+    SampleView(const int16_t* p, size_t len) : s16(p), n(len) {}
+
+    size_t size() const { return n; }
+    float operator[](size_t i) const { return f32 ? f32[i] : s16[i] * (1.f / 32768.f); }
+    SampleView sub(size_t lo, size_t hi) const {
+        return f32 ? SampleView(f32 + lo, hi - lo) : SampleView(s16 + lo, hi - lo);
+    }
+    // converted into dst[0 .. n)
+    void copyTo(float* dst) const;
+};
+
+struct InverseFilter {
+    std::vector<float> taps;
+    std::map<int, std::shared_ptr<const std::vector<kiss_fft_cpx>>> spectra;   // by Nfft
+};
+
+// Farina inverse of the exponential sweep, uncached
+std::vector<float> computeInverseFilter(int f1, int f2, float duration, int fs);
+
+// Same, cached per (fs, f1, f2, duration) together with its spectra
+std::shared_ptr<InverseFilter> inverseFilter(int f1, int f2, float duration, int fs);
+
+// One segment per sweep found in the recording, or the whole recording; views into audio
+std::vector<SampleView> segmentRecording(SampleView audio,
+        int fs, float sweepDuration, float markerSilence, float impulseWindow);
+
+// Raw (unwindowed) impulseWindow * fs samples around the peak of segment * invf.
+// nfft is the transform length, at least segment + filter - 1; 0 picks the shortest fast one.
+std::vector<float> deconvolveSweep(SampleView segment, InverseFilter& invf,
+                                   int fs, float impulseWindow, int nfft = 0);
+
+// deconvolveSweep over every segment at one shared FFT length: sweeps in parallel on the
+// shared pool, or one at a time when there are fewer sweeps than threads and the FFT
+// backend splits each transform
+std::vector<std::vector<float>> deconvolveAll(const std::vector<SampleView>& segs, InverseFilter& invf,
+                                              int fs, float impulseWindow);
+
+// Cross-correlation aligned average of per-sweep IRs
+std::vector<float> alignAndAverage(const std::vector<std::vector<float>>& irs, int fs);
+
+// Hann window and peak normalize, in place
+void windowImpulse(std::vector<float>& ir);
+
+// Segment, deconvolve, average and window: the IR of a recording
+// The recording is only read, once into the envelope and once into each sweep's FFT buffer.
+std::vector<float> measureImpulse(SampleView audio, const MeasureConfig& cfg);
+
+// dB magnitude on linear bins 0 .. fs/2. The FFT length is a fast mixed-radix size, not a
+// power of two, so bin spacing is (fs/2) / (size - 1).
+std::vector<float> computeFrequencyResponse(const std::vector<float>& ir);
+
+std::vector<float> normalizeAt1kHz(const std::vector<float>& freqs, const std::vector<float>& resp);
+
+// Savitzky-Golay when the configured window is usable, otherwise unsmoothed
+int defaultSmoothMode(const MeasureConfig& cfg);
+
+double logAxisMaxHz(int fs);
+
+// Band-averaged "raw" and smoothed curves of a linear-bin spectrum on axis
+void smoothOnAxis(const std::vector<float>& linDb, const MeasureConfig& cfg,
+                  const std::vector<float>& axis, int mode, float octaveFraction,
+                  std::vector<float>& rawDb, std::vector<float>& smoothDb);
+
+#endif // MEASUREMENT_H
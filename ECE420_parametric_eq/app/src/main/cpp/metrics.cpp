@@ -0,0 +1,62 @@
+#include "metrics.h"
+#include <mutex>
+#include <time.h>
+#include <unistd.h>
+#include <sys/syscall.h>
+
+namespace metrics {
+
+std::atomic<bool> g_enabled{false};
+
+// a long session drops its newest events rather than grow without bound
+static const size_t kMaxEvents = 16384;
+
+static std::mutex         g_mutex;
+static std::vector<Event> g_events;
+
+static int64_t threadId() {
+    static thread_local int64_t tid = int64_t(syscall(SYS_gettid));
+    return tid;
+}
+
+static void record(Kind kind, const char* name, int64_t start, int64_t dur, int64_t value) {
+    Event e { kind, name, start, dur, threadId(), value };
+    std::lock_guard<std::mutex> lock(g_mutex);
+    if (g_events.size() < kMaxEvents) g_events.push_back(e);
+}
+
+void setEnabled(bool on) {
+    g_enabled.store(on, std::memory_order_relaxed);
+    if (!on) {
+        std::lock_guard<std::mutex> lock(g_mutex);
+        g_events.clear();
+        g_events.shrink_to_fit();
+    }
+}
+
+int64_t nowNs() {
+    timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return int64_t(ts.tv_sec) * 1000000000 + ts.tv_nsec;
+}
+
+void count(const char* name, int64_t delta) {
+    if (enabled()) record(COUNTER, name, nowNs(), 0, delta);
+}
+
+void gaugeBytes(const char* name, int64_t bytes) {
+    if (enabled()) record(GAUGE, name, nowNs(), 0, bytes);
+}
+
+std::vector<Event> drain() {
+    std::lock_guard<std::mutex> lock(g_mutex);
+    std::vector<Event> out;
+    out.swap(g_events);
+    return out;
+}
+
+Scope::~Scope() {
+    if (m_start >= 0) record(SPAN, m_name, m_start, nowNs() - m_start, 0);
+}
+
+} // namespace metrics
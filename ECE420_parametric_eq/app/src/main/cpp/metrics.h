@@ -0,0 +1,58 @@
+#ifndef METRICS_H
+#define METRICS_H
+
+#include <atomic>
+#include <cstdint>
+#include <vector>
+
+// ── Pipeline metrics ──────────────────────────────────────────────────────
+// Monotonic stage timers, counters and byte gauges, recorded into a bounded process-wide
+// buffer that Java drains into PipelineMetrics (DSPProcessor.drainMetrics). Timestamps are
+// CLOCK_MONOTONIC nanoseconds, the clock behind System.nanoTime on Android and Linux, so
+// native and Java events line up in one trace. Disabled by default: every entry point is
+// then a single relaxed atomic load.
+namespace metrics {
+
+enum Kind { SPAN = 0, COUNTER = 1, GAUGE = 2 };
+
+struct Event {
+    Kind        kind;
+    const char* name;      // string literal, never freed
+    int64_t     startNs;
+    int64_t     durNs;     // spans only
+    int64_t     tid;
+    int64_t     value;     // counter delta or gauge bytes
+};
+
+extern std::atomic<bool> g_enabled;
+
+inline bool enabled() { return g_enabled.load(std::memory_order_relaxed); }
+
+void setEnabled(bool on);
+
+int64_t nowNs();
+
+void count(const char* name, int64_t delta);
+
+void gaugeBytes(const char* name, int64_t bytes);
+
+// Everything recorded since the last drain, oldest first
+std::vector<Event> drain();
+
+// Times the enclosing scope as one span when metrics are on
+class Scope {
+public:
+    explicit Scope(const char* name) : m_name(name), m_start(enabled() ? nowNs() : -1) {}
+    ~Scope();
+
+    Scope(const Scope&) = delete;
+    Scope& operator=(const Scope&) = delete;
+
+private:
+    const char* m_name;
+    int64_t     m_start;
+};
+
+} // namespace metrics
+
+#endif // METRICS_H
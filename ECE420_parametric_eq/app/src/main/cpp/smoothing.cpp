@@ -0,0 +1,133 @@
+#include "smoothing.h"
+#include <algorithm>
+#include <cmath>
+#include <map>
+#include <memory>
+#include <mutex>
+
+std::vector<float> logFrequencyAxis(double fMin, double fMax, int pointsPerOctave) {
+    int n = std::max(2, int(std::floor(std::log2(fMax / fMin) * pointsPerOctave)) + 1);
+    std::vector<float> axis(n);
+    for (int i = 0; i < n; i++) axis[i] = float(fMin * std::pow(2.0, double(i) / pointsPerOctave));
+    return axis;
+}
+
+std::vector<float> logFrequencyPoints(double fMin, double fMax, int n) {
+    n = std::max(2, n);
+    std::vector<float> axis(n);
+    double step = std::log(fMax / fMin) / (n - 1);
+    for (int i = 0; i < n; i++) axis[i] = float(fMin * std::exp(step * i));
+    return axis;
+}
+
+// ── Fractional-octave smoothing ─────────────────────────────────────────────
+OctaveSmoother::OctaveSmoother(const std::vector<float>& db, double binHz)
+        : m_binHz(binHz), m_p(db.size()), m_S(db.size()) {
+    const double k10 = std::log(10.0) / 10.0;
+    int K = int(db.size());
+    for (int k = 0; k < K; k++) m_p[k] = std::exp(db[k] * k10);
+    if (K > 0) m_S[0] = 0;
+    for (int k = 1; k < K; k++) m_S[k] = m_S[k-1] + 0.5 * (m_p[k-1] + m_p[k]);
+}
+
+std::vector<float> OctaveSmoother::smooth(const std::vector<float>& axis, double N) const {
+    int K = int(m_p.size());
+    std::vector<float> out(axis.size());
+    if (K == 0) return out;
+    const std::vector<double> &p = m_p, &S = m_S;
+
+    auto at = [&](double x) {
+        int k = std::min(int(x), K - 2);
+        double t = x - k;
+        return p[k] + t * (p[k+1] - p[k]);
+    };
+    auto integral = [&](double x) {
+        int k = std::min(int(x), K - 2);
+        double t = x - k;
+        return S[k] + t * p[k] + 0.5 * t * t * (p[k+1] - p[k]);
+    };
+
+    double half = std::pow(2.0, 0.5 / N);
+    double xMax = K - 1;
+    for (size_t i = 0; i < axis.size(); i++) {
+        double f = axis[i];
+        double a = std::min(std::max(f / half / m_binHz, 0.0), xMax);
+        double b = std::min(std::max(f * half / m_binHz, 0.0), xMax);
+        double pw = K < 2        ? p[0]
+                  : b - a < 1e-6 ? at(a)
+                  : (integral(b) - integral(a)) / (b - a);
+        out[i] = float(10.0 * std::log10(pw + 1e-24));
+    }
+    return out;
+}
+
+// ── Savitzky-Golay ──────────────────────────────────────────────────────────
+// Least-squares fit of a degree-poly polynomial over the window, evaluated at the centre:
+// c = e0^T (A^T A)^-1 A^T with A[i][j] = (i - h)^j.
+static std::vector<double> savgolCoefficients(int window, int poly) {
+    int h = window / 2, m = poly + 1;
+    // normal matrix G = A^T A, solve G z = e0, then c_i = sum_j z_j (i - h)^j
+    std::vector<double> G(m * m, 0.0), z(m, 0.0);
+    for (int i = -h; i <= h; i++) {
+        for (int r = 0; r < m; r++)
+            for (int c = 0; c < m; c++) G[r*m + c] += std::pow(double(i), r + c);
+    }
+    z[0] = 1.0;
+    // Gaussian elimination with partial pivoting
+    for (int col = 0; col < m; col++) {
+        int piv = col;
+        for (int r = col + 1; r < m; r++) if (std::abs(G[r*m + col]) > std::abs(G[piv*m + col])) piv = r;
+        if (piv != col) {
+            for (int c = 0; c < m; c++) std::swap(G[col*m + c], G[piv*m + c]);
+            std::swap(z[col], z[piv]);
+        }
+        for (int r = col + 1; r < m; r++) {
+            double f = G[r*m + col] / G[col*m + col];
+            for (int c = col; c < m; c++) G[r*m + c] -= f * G[col*m + c];
+            z[r] -= f * z[col];
+        }
+    }
+    for (int r = m - 1; r >= 0; r--) {
+        for (int c = r + 1; c < m; c++) z[r] -= G[r*m + c] * z[c];
+        z[r] /= G[r*m + r];
+    }
+    std::vector<double> coeffs(window);
+    for (int i = -h; i <= h; i++) {
+        double v = 0, x = 1;
+        for (int j = 0; j < m; j++) { v += z[j] * x; x *= i; }
+        coeffs[i + h] = v;
+    }
+    return coeffs;
+}
+
+static std::shared_ptr<const std::vector<double>> cachedSavgol(int window, int poly) {
+    static std::mutex mutex;
+    static std::map<std::pair<int,int>, std::shared_ptr<const std::vector<double>>> cache;
+    std::lock_guard<std::mutex> lock(mutex);
+    auto &slot = cache[{ window, poly }];
+    if (!slot) slot = std::make_shared<const std::vector<double>>(savgolCoefficients(window, poly));
+    return slot;
+}
+
+std::vector<float> savitzkyGolay(const std::vector<float>& y, int window, int poly) {
+    int n = int(y.size());
+    poly   = std::max(0, poly);
+    window = std::max(window, poly + 2);
+    if (window % 2 == 0) window++;
+    if (n < 2 || window > 2 * n - 1) return y;
+
+    auto c = cachedSavgol(window, poly);
+    int h = window / 2;
+    std::vector<float> out(n);
+    for (int i = 0; i < n; i++) {
+        double acc = 0;
+        for (int k = -h; k <= h; k++) {
+            int j = i + k;
+            if (j < 0)  j = -j;                 // mirror about the first sample
+            if (j >= n) j = 2 * (n - 1) - j;    // and the last
+            acc += (*c)[k + h] * y[j];
+        }
+        out[i] = float(acc);
+    }
+    return out;
+}
@@ -0,0 +1,36 @@
+#ifndef SMOOTHING_H
+#define SMOOTHING_H
+
+#include <vector>
+
+// Smoothing modes, same values as DSPProcessor.SMOOTH_*
+enum SmoothMode { SMOOTH_NONE = 0, SMOOTH_OCTAVE = 1, SMOOTH_SAVGOL = 2 };
+
+// Log-spaced frequency axis from fMin up to fMax, pointsPerOctave points per octave
+std::vector<float> logFrequencyAxis(double fMin, double fMax, int pointsPerOctave);
+
+// Exactly n log-spaced points from fMin to fMax inclusive
+std::vector<float> logFrequencyPoints(double fMin, double fMax, int n);
+
+// 1/N-octave smoothing of a linear-bin dB spectrum (bin k at k * binHz).
+// Power is averaged over [f / 2^(1/2N), f * 2^(1/2N)] using a prefix integral with
+// fractional bin edges, so each evaluation is O(points) whatever N is once the O(bins)
+// prefix is built, and windows narrower than a bin reduce to linear interpolation.
+// Build once per spectrum and evaluate several fractions from it.
+class OctaveSmoother {
+public:
+    OctaveSmoother(const std::vector<float>& db, double binHz);
+
+    std::vector<float> smooth(const std::vector<float>& axis, double N) const;
+
+private:
+    double m_binHz;
+    std::vector<double> m_p;    // power per bin
+    std::vector<double> m_S;    // integral of the interpolated power up to bin k
+};
+
+// Savitzky-Golay filter, mirrored edges. window is forced odd and > poly; the
+// convolution coefficients are cached per (window, poly).
+std::vector<float> savitzkyGolay(const std::vector<float>& y, int window, int poly);
+
+#endif // SMOOTHING_H
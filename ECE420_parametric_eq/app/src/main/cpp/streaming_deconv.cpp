@@ -0,0 +1,153 @@
+#include "streaming_deconv.h"
+#include <algorithm>
+#include <climits>
+#include <cmath>
+#include <cstring>
+
+// Windows whose peak is more than 12 dB under the loudest are noise, not sweeps; the same
+// contrast segmentRecording asks of a sweep
+static const float kKeepRatio = 0.25f;
+
+StreamingDeconvolver::StreamingDeconvolver(const std::vector<float>& invf, int blockSize, int irWindow,
+                                           int sweepSpacing)
+        : m_B(std::max(16, blockSize)),
+          m_K(m_B + 1),
+          m_P(std::max(1, int((invf.size() + m_B - 1) / m_B))),
+          m_L(int(invf.size())),
+          m_outLimit(LLONG_MAX),
+          m_win(std::max(2, irWindow)),     // m_half >= 1: it is a modulus in emit()
+          m_half(m_win / 2),
+          m_spacing(std::max(sweepSpacing, m_win)) {   // a window is complete when it closes
+    m_fft = makeRealFft(fftBackend(), 2 * m_B);
+
+    m_H.assign(size_t(m_P) * m_K, kiss_fft_cpx{0, 0});
+    m_fdl.assign(size_t(m_P) * m_K, kiss_fft_cpx{0, 0});
+    m_fdlZero.assign(m_P, 1);
+    m_acc.resize(m_K);
+    m_time.assign(2 * m_B, 0.f);
+    m_out.resize(2 * m_B);
+    m_in.assign(m_B, 0.f);
+    m_hist.assign(m_half, 0.f);
+    m_cand.assign(m_win, 0.f);
+
+    // pre-transform each B-sample partition of the filter, zero padded to 2B
+    std::vector<kiss_fft_scalar> part(2 * m_B);
+    for (int p = 0; p < m_P; p++) {
+        std::fill(part.begin(), part.end(), 0.f);
+        int n = std::min(m_B, m_L - p * m_B);
+        for (int i = 0; i < n; i++) part[i] = invf[p * m_B + i];
+        m_fft->forward(part.data(), &m_H[size_t(p) * m_K]);
+    }
+}
+
+void StreamingDeconvolver::push(const float* x, int n) {
+    while (n > 0) {
+        int take = std::min(n, m_B - m_inFill);
+        std::memcpy(&m_in[m_inFill], x, take * sizeof(float));
+        m_inFill += take; x += take; n -= take;
+        m_nIn += take;
+        if (m_inFill == m_B) processBlock(false);
+    }
+}
+
+void StreamingDeconvolver::push(const int16_t* x, int n) {
+    const float k = 1.f / 32768.f;
+    while (n > 0) {
+        int take = std::min(n, m_B - m_inFill);
+        for (int i = 0; i < take; i++) m_in[m_inFill + i] = x[i] * k;
+        m_inFill += take; x += take; n -= take;
+        m_nIn += take;
+        if (m_inFill == m_B) processBlock(false);
+    }
+}
+
+std::vector<std::vector<float>> StreamingDeconvolver::finish() {
+    // full linear convolution is nIn + L - 1 samples, same extent the batch path searches
+    m_outLimit = m_nIn + m_L - 1;
+    if (m_inFill > 0) {
+        std::fill(m_in.begin() + m_inFill, m_in.end(), 0.f);
+        processBlock(false);
+    }
+    while (m_nOut < m_outLimit) {
+        m_inFill = m_B;
+        processBlock(true);
+    }
+    if (m_candFilled > 0) closeWindow();
+    std::vector<std::vector<float>> irs;
+    for (auto& sw : m_sweeps) irs.push_back(std::move(sw.ir));
+    m_sweeps.clear();
+    return irs;
+}
+
+void StreamingDeconvolver::processBlock(bool silent) {
+    if (silent) std::fill(m_in.begin(), m_in.end(), 0.f);
+    m_inFill = 0;
+
+    // spectrum of [previous block | current block]; two silent blocks in a row are all zero
+    kiss_fft_cpx* X = &m_fdl[size_t(m_fdlHead) * m_K];
+    bool zero = silent && m_prevSilent;
+    std::memmove(m_time.data(), m_time.data() + m_B, m_B * sizeof(float));
+    std::memcpy(m_time.data() + m_B, m_in.data(), m_B * sizeof(float));
+    if (!zero) m_fft->forward(m_time.data(), X);
+    m_fdlZero[m_fdlHead] = zero;
+    m_prevSilent = silent;
+
+    // Y = sum_p H_p * X_{k-p}
+    std::fill(m_acc.begin(), m_acc.end(), kiss_fft_cpx{0, 0});
+    for (int p = 0; p < m_P; p++) {
+        int slot = m_fdlHead - p;
+        if (slot < 0) slot += m_P;
+        if (m_fdlZero[slot]) continue;
+        const kiss_fft_cpx* xs = &m_fdl[size_t(slot) * m_K];
+        const kiss_fft_cpx* hs = &m_H[size_t(p) * m_K];
+        for (int i = 0; i < m_K; i++) {
+            m_acc[i].r += xs[i].r * hs[i].r - xs[i].i * hs[i].i;
+            m_acc[i].i += xs[i].r * hs[i].i + xs[i].i * hs[i].r;
+        }
+    }
+    if (++m_fdlHead == m_P) m_fdlHead = 0;
+
+    // the last B samples of the circular result are valid linear convolution output
+    m_fft->inverse(m_acc.data(), m_out.data());
+    const float scale = 1.f / (2 * m_B);
+    for (int i = m_B; i < 2 * m_B; i++) m_out[i] *= scale;
+    emit(m_out.data() + m_B, m_B);
+}
+
+// Keeps [peak - win/2, peak - win/2 + win) of the output without storing the whole stream:
+// history of the last win/2 samples seeds the window whenever a new peak appears. Harmonic
+// peaks come before a sweep's linear peak, so it takes over the window; the next sweep's
+// peak is at least m_spacing later and starts a window of its own.
+void StreamingDeconvolver::emit(const float* y, int n) {
+    for (int i = 0; i < n && m_nOut < m_outLimit; i++, m_nOut++) {
+        if (m_candFilled > 0 && m_nOut - m_peakAt > m_spacing) closeWindow();
+        float v = y[i];
+        float a = std::fabs(v);
+        if (a > m_peak) {
+            m_peak = a;
+            m_peakAt = m_nOut;
+            long long start = std::max(0LL, m_nOut - m_half);
+            int cnt = int(m_nOut - start);
+            for (int k = 0; k < cnt; k++) m_cand[k] = m_hist[(start + k) % m_half];
+            m_cand[cnt] = v;
+            m_candFilled = cnt + 1;
+        } else if (m_candFilled > 0 && m_candFilled < m_win) {
+            m_cand[m_candFilled++] = v;
+        }
+        m_hist[m_nOut % m_half] = v;
+    }
+}
+
+void StreamingDeconvolver::closeWindow() {
+    m_maxPeak = std::max(m_maxPeak, m_peak);
+    if (m_peak >= kKeepRatio * m_maxPeak) {
+        m_sweeps.push_back({ std::vector<float>(m_cand.begin(), m_cand.begin() + m_candFilled), m_peak });
+    }
+    // a louder sweep may have turned earlier windows into noise
+    float keep = kKeepRatio * m_maxPeak;
+    m_sweeps.erase(std::remove_if(m_sweeps.begin(), m_sweeps.end(),
+                                  [keep](const Sweep& sw) { return sw.peak < keep; }),
+                   m_sweeps.end());
+    m_peak = 0.f;
+    m_candFilled = 0;
+}
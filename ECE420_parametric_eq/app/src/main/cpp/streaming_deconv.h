@@ -0,0 +1,75 @@
+#ifndef STREAMING_DECONV_H
+#define STREAMING_DECONV_H
+
+#include <cstdint>
+#include <memory>
+#include <vector>
+#include "fft_backend.h"
+
+// ── Streaming deconvolution ───────────────────────────────────────────────
+// Convolves incoming audio with the Farina inverse filter using uniformly partitioned
+// overlap-save: the filter is cut into blocks of B samples, each pre-transformed once,
+// and every input block costs one 2B-point forward FFT, P spectral multiply-adds and one
+// inverse FFT. Output is never stored in full; only the window around each sweep's peak
+// is kept, so memory stays at O(filter + sweeps * IR window) however long the recording runs.
+class StreamingDeconvolver {
+public:
+    // irWindow: samples kept around the peak, same meaning as impulseWindow * fs in batch mode;
+    // at least 2. sweepSpacing: fewest samples between the peaks of two sweeps in one recording.
+    StreamingDeconvolver(const std::vector<float>& invf, int blockSize, int irWindow, int sweepSpacing);
+
+    StreamingDeconvolver(const StreamingDeconvolver&) = delete;
+    StreamingDeconvolver& operator=(const StreamingDeconvolver&) = delete;
+
+    void push(const float* x, int n);
+    void push(const int16_t* x, int n);
+
+    // Flush the convolution tail and return the raw (unwindowed) samples around each sweep's
+    // peak, ready for alignAndAverage. Matches the segments deconvolveAll would cut per sweep.
+    std::vector<std::vector<float>> finish();
+
+    long long samplesIn() const { return m_nIn; }
+
+private:
+    void processBlock(bool silent);
+    void emit(const float* y, int n);
+    void closeWindow();
+
+    int m_B;                // block size
+    int m_K;                // bins per spectrum, B + 1
+    int m_P;                // partitions
+    int m_L;                // filter length
+
+    std::unique_ptr<RealFft> m_fft;     // 2B points, on the backend chosen at initConfig
+
+    std::vector<kiss_fft_cpx> m_H;      // [P][K] filter partitions
+    std::vector<kiss_fft_cpx> m_fdl;    // [P][K] ring of past input spectra
+    std::vector<char>         m_fdlZero;
+    int                       m_fdlHead = 0;
+    std::vector<kiss_fft_cpx> m_acc;
+
+    std::vector<float> m_time;          // [previous block | current block]
+    std::vector<float> m_out;
+    std::vector<float> m_in;            // partially filled input block
+    int  m_inFill    = 0;
+    bool m_prevSilent = true;
+
+    long long m_nIn  = 0;
+    long long m_nOut = 0;
+    long long m_outLimit;
+
+    // peak window tracking; a window closes once m_spacing samples pass without a higher peak
+    int   m_win, m_half;
+    long long m_spacing;
+    std::vector<float> m_hist;          // last m_half outputs
+    std::vector<float> m_cand;          // window around the current sweep's peak
+    int   m_candFilled = 0;
+    float m_peak = 0.f;
+    long long m_peakAt = 0;
+
+    struct Sweep { std::vector<float> ir; float peak; };
+    std::vector<Sweep> m_sweeps;        // closed windows within kKeepRatio of the loudest
+    float m_maxPeak = 0.f;
+};
+
+#endif // STREAMING_DECONV_H
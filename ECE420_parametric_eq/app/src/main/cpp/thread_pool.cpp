@@ -0,0 +1,80 @@
+#include "thread_pool.h"
+#include <algorithm>
+
+static thread_local bool t_insideJob = false;
+
+bool ThreadPool::insideJob() {
+    return t_insideJob;
+}
+
+ThreadPool::ThreadPool(int workers) {
+    for (int i = 0; i < workers; i++) {
+        m_workers.emplace_back(&ThreadPool::workerLoop, this);
+    }
+}
+
+ThreadPool::~ThreadPool() {
+    {
+        std::lock_guard<std::mutex> lock(m_mutex);
+        m_stop = true;
+    }
+    m_wake.notify_all();
+    for (auto &t : m_workers) t.join();
+}
+
+ThreadPool& ThreadPool::shared() {
+    static ThreadPool pool(std::max(1, std::min(3, int(std::thread::hardware_concurrency()) - 1)));
+    return pool;
+}
+
+void ThreadPool::parallelFor(int n, const std::function<void(int)>& fn) {
+    if (n <= 0) return;
+    if (n == 1 || m_workers.empty()) {
+        // nothing runs on the workers, so nesting from here is safe
+        for (int i = 0; i < n; i++) fn(i);
+        return;
+    }
+    std::unique_lock<std::mutex> call(m_callMutex, std::try_to_lock);
+    if (!call.owns_lock()) {
+        // another thread has the workers (e.g. several files measured at once); running
+        // inline keeps this caller busy instead of queueing it behind that job
+        for (int i = 0; i < n; i++) fn(i);
+        return;
+    }
+    {
+        std::lock_guard<std::mutex> lock(m_mutex);
+        m_job     = &fn;
+        m_n       = n;
+        m_next.store(0);
+        m_pending = int(m_workers.size());
+        m_generation++;
+    }
+    m_wake.notify_all();
+    runJobs();
+
+    std::unique_lock<std::mutex> lock(m_mutex);
+    m_done.wait(lock, [this] { return m_pending == 0; });
+    m_job = nullptr;
+}
+
+void ThreadPool::runJobs() {
+    bool outer = t_insideJob;
+    t_insideJob = true;
+    for (int i; (i = m_next.fetch_add(1)) < m_n; ) (*m_job)(i);
+    t_insideJob = outer;
+}
+
+void ThreadPool::workerLoop() {
+    long seen = 0;
+    for (;;) {
+        {
+            std::unique_lock<std::mutex> lock(m_mutex);
+            m_wake.wait(lock, [&] { return m_stop || m_generation != seen; });
+            if (m_stop) return;
+            seen = m_generation;
+        }
+        runJobs();
+        std::lock_guard<std::mutex> lock(m_mutex);
+        if (--m_pending == 0) m_done.notify_one();
+    }
+}
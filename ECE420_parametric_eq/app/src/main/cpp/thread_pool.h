@@ -0,0 +1,53 @@
+#ifndef THREAD_POOL_H
+#define THREAD_POOL_H
+
+#include <atomic>
+#include <condition_variable>
+#include <functional>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+// ── Small fixed-size worker pool ──────────────────────────────────────────
+// parallelFor hands out indices from a shared counter; the calling thread works too and
+// the call returns once every index has run. One parallelFor at a time, not reentrant
+// (a job must not call parallelFor on the same pool); a call made while another thread's
+// parallelFor is running does its whole loop on the calling thread.
+class ThreadPool {
+public:
+    explicit ThreadPool(int workers);
+    ~ThreadPool();
+
+    ThreadPool(const ThreadPool&) = delete;
+    ThreadPool& operator=(const ThreadPool&) = delete;
+
+    void parallelFor(int n, const std::function<void(int)>& fn);
+
+    int size() const { return int(m_workers.size()) + 1; }
+
+    // True while the calling thread runs a parallelFor job of any pool; code that may be
+    // called from a job checks this instead of nesting a parallelFor
+    static bool insideJob();
+
+    // Process-wide pool with up to 3 workers besides the caller, created on first use
+    static ThreadPool& shared();
+
+private:
+    void workerLoop();
+    void runJobs();
+
+    std::vector<std::thread> m_workers;
+    std::mutex              m_callMutex;
+    std::mutex              m_mutex;
+    std::condition_variable m_wake;
+    std::condition_variable m_done;
+
+    const std::function<void(int)>* m_job = nullptr;
+    int              m_n          = 0;
+    std::atomic<int> m_next{0};
+    int              m_pending    = 0;
+    long             m_generation = 0;
+    bool             m_stop       = false;
+};
+
+#endif // THREAD_POOL_H
@@ -0,0 +1,152 @@
+package com.ece420_parametric_eq;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import com.chaquo.python.PyObject;
+import com.chaquo.python.Python;
+import com.chaquo.python.android.AndroidPlatform;
+import com.ece420_parametric_eq.ParametricEQUtils.AutoEQResult;
+import com.ece420_parametric_eq.models.PEQBand;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Optional AutoEQ backend that runs the Python reference (autoeq_helper.fit_arrays) instead
+ * of PEQOptimizer. One long-lived thread owns the interpreter and works through a request
+ * queue. The first request, queued by start(), launches Python and imports the helper's
+ * module graph (numpy, scipy, pandas, matplotlib), ideally while the user is still
+ * recording. Later fits only pay for the optimization. Arrays are handed over as Java
+ * double[], which numpy reads through the buffer protocol, so there is no file round-trip.
+ */
+public final class AutoEqWorker {
+    public static final String TAG = "AutoEqWorker";
+
+    // cancellation checks when the caller wants no progress reports
+    private static final int REPORT_EVERY = 10;
+
+    private static AutoEqWorker shared;
+
+    private final LinkedBlockingQueue<FutureTask<?>> queue = new LinkedBlockingQueue<>();
+    private final FutureTask<PyObject> helper;
+
+    private AutoEqWorker(Context app) {
+        helper = new FutureTask<>(() -> {
+            // warm-up overlaps recording, so stay out of the audio thread's way
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            long t0 = System.nanoTime();
+            try (PipelineMetrics.Span s = PipelineMetrics.begin("python.warm_up")) {
+                if (!Python.isStarted()) Python.start(new AndroidPlatform(app));
+                PyObject module = Python.getInstance().getModule("autoeq_helper");
+                module.callAttr("warm_up");
+                Log.d(TAG, "Python ready in " + (System.nanoTime() - t0) / 1000000 + " ms");
+                return module;
+            } finally {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+            }
+        });
+        queue.add(helper);
+        Thread t = new Thread(this::loop, TAG);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Start the worker and begin warming Python up; later calls return the same worker. */
+    public static synchronized AutoEqWorker start(Context context) {
+        if (shared == null) shared = new AutoEqWorker(context.getApplicationContext());
+        return shared;
+    }
+
+    /** The started worker, or null when fits run on PEQOptimizer only. */
+    public static synchronized AutoEqWorker shared() {
+        return shared;
+    }
+
+    /** True once Python is up and the helper imported, i.e. a fit would not pay cold start. */
+    public boolean isWarm() {
+        return helper.isDone();
+    }
+
+    /** What fit_arrays calls back with; Chaquopy lets Python call it like a function. */
+    private interface PyProgress {
+        boolean report(int iterations, double loss, double[] encoded);
+    }
+
+    /**
+     * Queue a fit; same arguments as PEQOptimizer.fit, and the same anytime options. The time
+     * budget runs from this call, so it covers waiting in the queue. Cancelling the future
+     * drops a queued request and stops a running one at its next progress report.
+     */
+    public Future<AutoEQResult> submit(double[] measFreqs, double[] measDb,
+                                       double[] tgtFreqs, double[] tgtDb, double fs,
+                                       PEQOptimizer.Options opt) {
+        long startNs = System.nanoTime();
+        AtomicReference<Future<?>> self = new AtomicReference<>();
+        PyProgress progress = (iterations, loss, encoded) -> !self.get().isCancelled()
+                && (opt.progress == null || opt.progress.onProgress(iterations, loss, toResult(encoded)));
+        FutureTask<AutoEQResult> task = new FutureTask<>(() -> {
+            PyObject module = helper.get();   // ran first on this thread; rethrows its failure
+            Object maxTime = null;
+            if (opt.timeBudgetMs > 0) {
+                long leftMs = opt.timeBudgetMs - (System.nanoTime() - startNs) / 1000000;
+                maxTime = Math.max(leftMs, 1) / 1000.0;
+            }
+            double[] out;
+            try (PipelineMetrics.Span s = PipelineMetrics.begin("autoeq.python")) {
+                out = module.callAttr("fit_arrays", measFreqs, measDb, tgtFreqs, tgtDb, fs,
+                        maxTime, opt.targetLoss > 0 ? opt.targetLoss : null, progress,
+                        opt.progress != null ? opt.reportEvery : REPORT_EVERY)
+                        .toJava(double[].class);
+            }
+            return toResult(out);
+        });
+        self.set(task);
+        queue.add(task);
+        return task;
+    }
+
+    /** Blocking submit; an interrupted caller withdraws its request. */
+    public AutoEQResult fit(double[] measFreqs, double[] measDb,
+                            double[] tgtFreqs, double[] tgtDb, double fs,
+                            PEQOptimizer.Options opt) throws Exception {
+        Future<AutoEQResult> f = submit(measFreqs, measDb, tgtFreqs, tgtDb, fs, opt);
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            f.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private void loop() {
+        for (;;) {
+            FutureTask<?> task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            task.run();   // no-op for requests cancelled while queued
+        }
+    }
+
+    /** [preamp, type, fc, q, gain, type, ...] from fit_arrays; type is the PEQBand.Type ordinal */
+    private static AutoEQResult toResult(double[] out) {
+        PEQBand.Type[] types = PEQBand.Type.values();
+        List<PEQBand> bands = new ArrayList<>((out.length - 1) / 4);
+        for (int i = 1; i + 3 < out.length; i += 4) {
+            bands.add(new PEQBand(types[(int) out[i]], out[i + 1], out[i + 2], out[i + 3]));
+        }
+        return new AutoEQResult(out[0], bands);
+    }
+}
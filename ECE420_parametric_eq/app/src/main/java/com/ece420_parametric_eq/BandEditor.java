@@ -0,0 +1,116 @@
+package com.ece420_parametric_eq;
+
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import com.ece420_parametric_eq.models.PEQBand;
+import com.jjoe64.graphview.GraphView;
+import com.jjoe64.graphview.Viewport;
+
+/**
+ * Touch editing of an EqModel on a graph with a log10(Hz) x axis and a dB y axis.
+ * Touching near a band's centre frequency grabs it. Dragging moves fc with the finger and
+ * sets the gain to the finger's level, and pinching changes Q. Each move is one
+ * EqModel.setBand, so a drag costs O(N) whatever the band count.
+ */
+public final class BandEditor implements View.OnTouchListener {
+    /** Called on the UI thread after every change; done is true when the finger lifts. */
+    public interface Listener {
+        void onBandEdited(int band, boolean done);
+    }
+
+    private static final double GRAB_DECADES = 0.15;   // about half an octave either side
+    private static final double F_MIN = 20, F_MAX = 20000;
+    private static final double GAIN_LIMIT = 20;
+    private static final double Q_MIN = 0.18, Q_MAX = 10;
+
+    private final GraphView graph;
+    private final Listener listener;
+    private final ScaleGestureDetector pinch;
+    private EqModel model;
+    private int active = -1;
+
+    public BandEditor(GraphView graph, Listener listener) {
+        this.graph    = graph;
+        this.listener = listener;
+        pinch = new ScaleGestureDetector(graph.getContext(),
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override public boolean onScale(ScaleGestureDetector d) {
+                        if (active < 0) return false;
+                        PEQBand b = model.band(active);
+                        double q = clamp(b.Q * d.getScaleFactor(), Q_MIN, Q_MAX);
+                        model.setBand(active, b.fc, q, b.gainDb);
+                        listener.onBandEdited(active, false);
+                        return true;
+                    }
+                });
+    }
+
+    /** Model to edit, or null to ignore touches. */
+    public void setModel(EqModel model) {
+        this.model = model;
+        active = -1;
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent e) {
+        if (model == null || model.size() == 0) return false;
+        pinch.onTouchEvent(e);
+        switch (e.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                active = nearestBand(toLogHz(e.getX()));
+                if (active < 0) return false;
+                v.getParent().requestDisallowInterceptTouchEvent(true);
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (active < 0) return false;
+                if (e.getPointerCount() == 1 && !pinch.isInProgress()) {
+                    PEQBand b = model.band(active);
+                    double fc   = clamp(Math.pow(10, toLogHz(e.getX())), F_MIN, F_MAX);
+                    double gain = clamp(toDb(e.getY()), -GAIN_LIMIT, GAIN_LIMIT);
+                    model.setBand(active, fc, b.Q, gain);
+                    listener.onBandEdited(active, false);
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (active < 0) return false;
+                listener.onBandEdited(active, true);
+                active = -1;
+                v.getParent().requestDisallowInterceptTouchEvent(false);
+                return true;
+            default:
+                return active >= 0;
+        }
+    }
+
+    private int nearestBand(double logHz) {
+        int best = -1;
+        double bestDist = GRAB_DECADES;
+        for (int k = 0; k < model.size(); k++) {
+            double d = Math.abs(Math.log10(model.band(k).fc) - logHz);
+            if (d <= bestDist) {
+                best = k;
+                bestDist = d;
+            }
+        }
+        return best;
+    }
+
+    private double toLogHz(float x) {
+        Viewport vp = graph.getViewport();
+        double t = (x - graph.getGraphContentLeft()) / (double) graph.getGraphContentWidth();
+        return vp.getMinX(false) + t * (vp.getMaxX(false) - vp.getMinX(false));
+    }
+
+    private double toDb(float y) {
+        Viewport vp = graph.getViewport();
+        double t = (y - graph.getGraphContentTop()) / (double) graph.getGraphContentHeight();
+        return vp.getMaxY(false) - t * (vp.getMaxY(false) - vp.getMinY(false));
+    }
+
+    private static double clamp(double v, double lo, double hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+}
@@ -0,0 +1,131 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.models.PEQBand;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Magnitude response of a cascade of biquads on a fixed frequency axis.
+ * Each band is reduced to its {b0, b1, b2, a1, a2} coefficients once, and |H(e^jw)|^2 is
+ * evaluated with precomputed cos(w) / cos(2w) tables. Numerator and denominator powers are
+ * multiplied across bands and converted to dB with a single log10 per point.
+ * Nothing is allocated per point or per call; an instance is not thread-safe.
+ */
+public final class BiquadResponseEngine {
+    private final double[] freqs;
+    private final double   fs;
+    private final double[] cosW;
+    private final double[] cos2W;
+    private final double[] numAcc;
+    private final double[] denAcc;
+    private final double[] coeffs = new double[5];
+    private ResponseCache axisCache;     // freqs interned in this cache as axis
+    private ResponseCache.Axis axis;
+
+    public BiquadResponseEngine(double[] freqs, double fs) {
+        int N = freqs.length;
+        this.freqs = freqs;
+        this.fs    = fs;
+        cosW   = new double[N];
+        cos2W  = new double[N];
+        numAcc = new double[N];
+        denAcc = new double[N];
+        for (int i = 0; i < N; i++) {
+            double w = 2 * Math.PI * freqs[i] / fs;
+            cosW[i]  = Math.cos(w);
+            cos2W[i] = Math.cos(2 * w);
+        }
+    }
+
+    public double[] freqs()  { return freqs; }
+    public double   fs()     { return fs; }
+    public int      size()   { return freqs.length; }
+
+    /** Cascaded EQ curve (dB, no preamp) of all bands into out. */
+    public void eqCurveDb(List<PEQBand> bands, double[] out) {
+        accumulateBands(bands);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = 10 * Math.log10(numAcc[i] / denAcc[i]);
+        }
+    }
+
+    /** rawDb + cascaded EQ curve + preampDb into out (out may alias rawDb). */
+    public void applyEq(double[] rawDb, List<PEQBand> bands, double preampDb, double[] out) {
+        accumulateBands(bands);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = rawDb[i] + preampDb + 10 * Math.log10(numAcc[i] / denAcc[i]);
+        }
+    }
+
+    /**
+     * Cascaded EQ curve (dB, no preamp) as the sum of each band's cached response. On hits
+     * this needs no log10 at all, so redrawing the same bands is N adds per band.
+     */
+    public void eqCurveDbCached(List<PEQBand> bands, ResponseCache cache, double[] out) {
+        Arrays.fill(out, 0.0);
+        for (int b = 0, nb = bands.size(); b < nb; b++) {
+            double[] db = bandDbCached(bands.get(b), cache);
+            for (int i = 0; i < out.length; i++) out[i] += db[i];
+        }
+    }
+
+    /** Response (dB) of a single band from cache, computed on a miss; shared, must not be modified. */
+    public double[] bandDbCached(PEQBand band, ResponseCache cache) {
+        if (axisCache != cache) {
+            axis      = cache.intern(freqs);
+            axisCache = cache;
+        }
+        return cache.band(band.type, band.fc, band.Q, band.gainDb, fs, axis, () -> {
+            double[] db = new double[freqs.length];
+            bandDb(band, db);
+            return db;
+        });
+    }
+
+    /** Response (dB) of a single band into out. */
+    public void bandDb(PEQBand band, double[] out) {
+        bandDb(band.type, band.fc, band.Q, band.gainDb, out);
+    }
+
+    /** Response (dB) of a single band into out. */
+    public void bandDb(PEQBand.Type type, double fc, double Q, double gainDb, double[] out) {
+        ParametricEQUtils.biquadCoefficients(type, fc, Q, gainDb, fs, coeffs);
+        Arrays.fill(numAcc, 1.0);
+        Arrays.fill(denAcc, 1.0);
+        accumulate(coeffs);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = 10 * Math.log10(numAcc[i] / denAcc[i]);
+        }
+    }
+
+    private void accumulateBands(List<PEQBand> bands) {
+        Arrays.fill(numAcc, 1.0);
+        Arrays.fill(denAcc, 1.0);
+        for (int b = 0, nb = bands.size(); b < nb; b++) {
+            PEQBand band = bands.get(b);
+            ParametricEQUtils.biquadCoefficients(band.type, band.fc, band.Q, band.gainDb, fs, coeffs);
+            accumulate(coeffs);
+        }
+    }
+
+    /**
+     * |B(e^jw)|^2 = (b0^2 + b1^2 + b2^2) + 2(b0 b1 + b1 b2) cos w + 2 b0 b2 cos 2w,
+     * likewise for A with a0 = 1. Multiplied into the running accumulators.
+     */
+    private void accumulate(double[] c) {
+        int N = numAcc.length;
+        double b0 = c[0], b1 = c[1], b2 = c[2], a1 = c[3], a2 = c[4];
+        double nb0 = b0 * b0 + b1 * b1 + b2 * b2;
+        double nb1 = 2 * (b0 * b1 + b1 * b2);
+        double nb2 = 2 * b0 * b2;
+        double da0 = 1 + a1 * a1 + a2 * a2;
+        double da1 = 2 * (a1 + a1 * a2);
+        double da2 = 2 * a2;
+        double[] cw = cosW, c2w = cos2W, num = numAcc, den = denAcc;
+        for (int i = 0; i < N; i++) {
+            num[i] *= nb0 + nb1 * cw[i] + nb2 * c2w[i];
+            den[i] *= da0 + da1 * cw[i] + da2 * c2w[i];
+        }
+    }
+}
@@ -2,30 +2,192 @@ package com.ece420_parametric_eq;
 
 import com.ece420_parametric_eq.models.AnalysisResult;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
 public class DSPProcessor {
     static { System.loadLibrary("ece420_parametric_eq"); }
 
+    // smoothing modes for processBuffer
+    public static final int SMOOTH_NONE   = 0;
+    public static final int SMOOTH_OCTAVE = 1;   // 1/N-octave power average
+    public static final int SMOOTH_SAVGOL = 2;   // Savitzky-Golay with the initConfig window/poly
+
+    // FFT backends for initConfig; AUTO is the threaded split on multi-core devices, SIMD otherwise
+    public static final int FFT_AUTO     = 0;
+    public static final int FFT_SCALAR   = 1;   // kiss_fft, the reference
+    public static final int FFT_SIMD     = 2;   // radix-4 on NEON / SSE vectors
+    public static final int FFT_THREADED = 3;   // FFT_SIMD with large transforms split across cores
+
     public static native void initConfig(
             int   fs,
             float impulseWindow,
             float markerSilence,
             float sweepDuration,
             int   sgWindow,
-            int   sgPoly
+            int   sgPoly,
+            int   fftBackend
     );
 
-    /** runs the whole pipeline: segment to deconv to FFT to dB to smooth to normalize */
+    public static void initConfig(
+            int   fs,
+            float impulseWindow,
+            float markerSilence,
+            float sweepDuration,
+            int   sgWindow,
+            int   sgPoly
+    ) {
+        initConfig(fs, impulseWindow, markerSilence, sweepDuration, sgWindow, sgPoly, FFT_AUTO);
+    }
+
+    /** the measurement settings the app records with */
+    public static void initDefaultConfig() {
+        initConfig(
+                48000,   // fs
+                0.30f,   // impulse-window
+                0.5f,    // marker silence
+                4.0f,    // sweep duration
+                31,      // SavGol window
+                3        // SavGol poly order
+        );
+    }
+
+    /**
+     * runs the whole pipeline: segment to deconv to FFT to dB to smooth to normalize.
+     * Result is on a 1/48-octave log axis from 20 Hz; smoothDb uses Savitzky-Golay per initConfig.
+     */
     public static native AnalysisResult processBuffer(float[] audioData);
 
+    /**
+     * Same pipeline with the smoothing chosen per call.
+     * @param smoothMode     SMOOTH_NONE, SMOOTH_OCTAVE or SMOOTH_SAVGOL
+     * @param octaveFraction N for 1/N-octave smoothing (e.g. 3, 6, 12); ignored by the other modes
+     */
+    public static AnalysisResult processBuffer(float[] audioData, int smoothMode, float octaveFraction) {
+        return processBufferSmoothed(audioData, smoothMode, octaveFraction);
+    }
+
+    // separate name: an overloaded native would need JNI long names on both
+    private static native AnalysisResult processBufferSmoothed(float[] audioData, int smoothMode,
+                                                               float octaveFraction);
+
+    /**
+     * Compact result: numPoints log-spaced points from 20 Hz to min(20 kHz, fs/2).
+     * With keepFullResolution the linear-bin spectrum stays native-side under
+     * result.fullResHandle; only the newest few are kept.
+     */
+    public static native AnalysisResult processBufferLog(float[] audioData, int numPoints,
+                                                         int smoothMode, float octaveFraction,
+                                                         boolean keepFullResolution);
+
+    // processBufferLog without copies: the audio is read where it lies and the result goes
+    // into caller-owned buffers. Audio frames are read from index 0 up to the limit, like the
+    // stream calls; outputs must be direct, native-order and hold numPoints floats each, are
+    // written from index 0 and get their limit set to numPoints.
+
+    /** float samples, e.g. a mapped float WAV or a buffer the caller reuses */
+    public static void processBuffer(FloatBuffer audio, int numPoints, int smoothMode, float octaveFraction,
+                                     FloatBuffer freqs, FloatBuffer rawDb, FloatBuffer smoothDb) {
+        processDirect(audio, LAYOUT_FLOAT, audio.limit(), numPoints, smoothMode, octaveFraction,
+                freqs, rawDb, smoothDb);
+    }
+
+    /** PCM16 samples in native byte order */
+    public static void processBuffer(ShortBuffer pcm16, int numPoints, int smoothMode, float octaveFraction,
+                                     FloatBuffer freqs, FloatBuffer rawDb, FloatBuffer smoothDb) {
+        processDirect(pcm16, LAYOUT_PCM16, pcm16.limit(), numPoints, smoothMode, octaveFraction,
+                freqs, rawDb, smoothDb);
+    }
+
+    /** raw PCM16 bytes as AudioRecord fills them or WavReader.pcm16Data() maps them */
+    public static void processBufferPcm16(ByteBuffer pcm16, int numPoints, int smoothMode, float octaveFraction,
+                                          FloatBuffer freqs, FloatBuffer rawDb, FloatBuffer smoothDb) {
+        processDirect(pcm16, LAYOUT_PCM16_BYTES, pcm16.limit() / 2, numPoints, smoothMode, octaveFraction,
+                freqs, rawDb, smoothDb);
+    }
+
+    /** a direct, native-order FloatBuffer for numPoints results */
+    public static FloatBuffer allocateResult(int numPoints) {
+        return ByteBuffer.allocateDirect(4 * numPoints).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    private static final int LAYOUT_FLOAT = 0, LAYOUT_PCM16 = 1, LAYOUT_PCM16_BYTES = 2;
+
+    private static void processDirect(Buffer audio, int layout, int frames, int numPoints,
+                                      int smoothMode, float octaveFraction,
+                                      FloatBuffer freqs, FloatBuffer rawDb, FloatBuffer smoothDb) {
+        int n = processBufferDirect(audio, layout, frames, numPoints, smoothMode, octaveFraction,
+                freqs, rawDb, smoothDb);
+        if (n == 0) {
+            throw new IllegalArgumentException(
+                    "audio and outputs must be direct buffers; outputs need " + numPoints + " floats");
+        }
+        freqs.clear().limit(n);
+        rawDb.clear().limit(n);
+        smoothDb.clear().limit(n);
+    }
+
+    private static native int processBufferDirect(Buffer audio, int layout, int frames, int numPoints,
+                                                  int smoothMode, float octaveFraction,
+                                                  FloatBuffer freqs, FloatBuffer rawDb, FloatBuffer smoothDb);
+
+    /** linear-bin spectrum (0…fs/2) behind a fullResHandle, null once released or evicted */
+    public static native AnalysisResult fetchFullResolution(long handle);
+
+    public static native void releaseFullResolution(long handle);
+
     /** normalize call */
     public static native float[] normalizeAt1kHz(float[] freqs, float[] db);
 
     /**
-     * Applies peaking & shelf filters to raw_dB, returns final EQ curve.
-     * eqFreq/eqGain/eqQ are parallel arrays the same length as freqs.
+     * Applies peaking filters to raw_dB at the configured fs, returns final EQ curve.
+     * eqFreq/eqGain/eqQ are parallel arrays with one entry per band.
      */
     public static native float[] applyParametricEQ(
             float[] freqs, float[] rawDb,
             float[] eqFreq,  float[] eqGain,  float[] eqQ
     );
-}
\ No newline at end of file
+
+    // Streaming EQ, see EqStream for the Java-side wrapper
+
+    /** creates a biquad cascade for interleaved audio, returns a native handle */
+    static native long createEqStream(int fs, int channels);
+
+    static native void releaseEqStream(long handle);
+
+    /** types are PEQBand.Type ordinals; at most 16 bands are used. Safe while audio is running. */
+    static native void setEqStreamBands(long handle, int[] types, float[] fc, float[] q,
+                                        float[] gainDb, float preampDb);
+
+    /** in place on a direct, native-order buffer of interleaved PCM16 starting at index 0 */
+    static native boolean processEqStreamPcm16(long handle, ByteBuffer pcm16, int frames);
+
+    /** in place on a direct buffer of interleaved float samples starting at index 0 */
+    static native boolean processEqStreamFloat(long handle, FloatBuffer samples, int frames);
+
+    // Streaming deconvolution, see DeconvStream for the Java-side wrapper
+
+    /** partitioned overlap-save against the current initConfig sweep, returns a native handle */
+    static native long createDeconvStream(int blockSize);
+
+    static native void releaseDeconvStream(long handle);
+
+    /** mono PCM16 from a direct, native-order buffer starting at index 0 */
+    static native boolean pushDeconvStreamPcm16(long handle, ByteBuffer pcm16, int frames);
+
+    static native void pushDeconvStreamFloat(long handle, float[] samples, int offset, int frames);
+
+    /** flushes the tail and runs IR to FR like processBuffer; null if nothing was pushed */
+    static native AnalysisResult finishDeconvStream(long handle);
+
+    // Native side of PipelineMetrics (see metrics.h)
+
+    /** native stage timers, counters and gauges; off until enabled, disabling drops the buffer */
+    public static native void setMetricsEnabled(boolean enabled);
+
+    /** moves native events recorded since the last drain into PipelineMetrics */
+    public static native void drainMetrics();
+}
@@ -0,0 +1,61 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.models.AnalysisResult;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Farina deconvolution that runs while the sweep is being recorded.
+ * Blocks are convolved with the inverse filter as they arrive (uniformly partitioned
+ * overlap-save in native code), so finish() only has to flush the filter tail instead of
+ * reading the WAV back and running one full-length FFT convolution. The window around each
+ * sweep's peak is kept separately and the windows are aligned and averaged as in batch mode.
+ * Uses the DSPProcessor config active when the stream is created. Not thread-safe:
+ * push() and finish() should come from one thread, e.g. the recorder's writer thread.
+ */
+public final class DeconvStream implements AutoCloseable {
+    /** ~21 ms at 48 kHz; latency vs. per-block cost of the partitioned convolution */
+    public static final int DEFAULT_BLOCK = 1024;
+
+    private long handle;
+
+    public DeconvStream() {
+        this(DEFAULT_BLOCK);
+    }
+
+    public DeconvStream(int blockSize) {
+        handle = DSPProcessor.createDeconvStream(blockSize);
+    }
+
+    /** Mono PCM16 from a direct, native-order buffer (as filled by AudioRecord). */
+    public void push(ByteBuffer pcm16, int frames) {
+        if (!DSPProcessor.pushDeconvStreamPcm16(checkOpen(), pcm16, frames)) {
+            throw new IllegalArgumentException("pcm16 must be a direct buffer holding " + frames + " frames");
+        }
+    }
+
+    public void push(float[] samples, int offset, int frames) {
+        if (offset < 0 || frames < 0 || offset + frames > samples.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        DSPProcessor.pushDeconvStreamFloat(checkOpen(), samples, offset, frames);
+    }
+
+    /** Flush and return the same result processBuffer gives for the whole recording. */
+    public AnalysisResult finish() {
+        return DSPProcessor.finishDeconvStream(checkOpen());
+    }
+
+    @Override
+    public void close() {
+        if (handle != 0) {
+            DSPProcessor.releaseDeconvStream(handle);
+            handle = 0;
+        }
+    }
+
+    private long checkOpen() {
+        if (handle == 0) throw new IllegalStateException("DeconvStream is closed");
+        return handle;
+    }
+}
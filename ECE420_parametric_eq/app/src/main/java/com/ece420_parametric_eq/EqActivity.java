@@ -12,10 +12,6 @@ import android.widget.Toast;
 import android.view.ViewGroup;
 import android.util.Log;
 
-import com.chaquo.python.Python;
-import com.chaquo.python.android.AndroidPlatform;
-import com.chaquo.python.PyObject;
-
 import com.jjoe64.graphview.DefaultLabelFormatter;
 import com.jjoe64.graphview.GraphView;
 import com.jjoe64.graphview.series.DataPoint;
@@ -23,13 +19,13 @@ import com.jjoe64.graphview.series.LineGraphSeries;
 
 import com.ece420_parametric_eq.ParametricEQUtils;
 import com.ece420_parametric_eq.ParametricEQUtils.AutoEQResult;
+import com.ece420_parametric_eq.models.AnalysisResult;
 import com.ece420_parametric_eq.models.PEQBand;
 import com.ece420_parametric_eq.DataStore;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -42,6 +38,25 @@ public class EqActivity extends Activity {
     private LinearLayout bandContainer;
     private Button btnApplyEq;
     private float mseRaw;
+    // reused across redraws on the 512-point display axis; a superseded job may still hold it
+    private BiquadResponseEngine responseEngine;
+    private final Object engineLock = new Object();
+    // the last fit's bands, edited by dragging them on graphFilters
+    private EqModel eqModel;
+    private BandEditor bandEditor;
+    private EqFit editBase;
+    private File sessionFile;
+    // what a drag step updates in place; set by drawFit
+    private TextView mseEqText;
+    private final List<TextView> bandTexts = new ArrayList<>();
+    private LineGraphSeries<DataPoint> seriesEqed, seriesEqCurve;
+    private double[] dragEqedDb;
+
+    private static final String JOB_EQ = "eq.fit";
+    private static final String JOB_SAVE = "eq.save";
+    // a usable EQ within this long on slow phones; the best fit so far is redrawn every few iterations
+    private static final long FIT_BUDGET_MS    = 4000;
+    private static final int  FIT_REPORT_EVERY = 5;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -51,35 +66,9 @@ public class EqActivity extends Activity {
 
         mseRaw = getIntent().getFloatExtra("raw_mse", 0f);
 
-        // Ensure Python running
-        if (!Python.isStarted()) {
-            Python.start(new AndroidPlatform(this));
-        }
-
-        // Retrieve paths from Intent
-        String frPath      = getIntent().getStringExtra("fr_path");
-        String targetAsset = getIntent().getStringExtra("target_csv_path");
-        if (frPath == null || targetAsset == null) {
-            Toast.makeText(this, "Missing FR or target CSV path", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
-        }
-
-        File dir       = getExternalFilesDir(null);
-        File targetCsv = new File(dir, "target.csv");
-        // Copy target CSV asset (overwrite any existing)
-        if (targetCsv.exists()) targetCsv.delete();
-        try (InputStream is = getAssets().open(targetAsset);
-             FileOutputStream fos = new FileOutputStream(targetCsv)) {
-            byte[] buf = new byte[4096];
-            int r;
-            while ((r = is.read(buf)) > 0) {
-                fos.write(buf, 0, r);
-            }
-        } catch (IOException e) {
-            Toast.makeText(this, "Failed to copy target CSV", Toast.LENGTH_SHORT).show();
-            return;
-        }
+        // measurement and target come from SessionStore; the file backs it across restarts
+        File dir     = getExternalFilesDir(null);
+        File session = dir != null ? new File(dir, SessionStore.FILE_NAME) : null;
 
         // Bind UI elements
         graphCombined  = findViewById(R.id.graph_combined);
@@ -114,166 +103,326 @@ public class EqActivity extends Activity {
             });
         }
 
-        btnApplyEq.setOnClickListener(v -> {
-            try {
-                // call AutoEQ via Python
-                File eqOut = new File(dir, "speaker_eq.txt");
-                PyObject helper = Python.getInstance().getModule("autoeq_helper");
-                helper.callAttr("run_autoeq", frPath, targetCsv.getAbsolutePath(), eqOut.getAbsolutePath());
-
-                // Load raw & target responses
-                double[][] rawData = ParametricEQUtils.loadFrequencyResponse(new File(frPath));
-                double[][] tgtData = ParametricEQUtils.loadFrequencyResponse(targetCsv);
-
-                // Build log-spaced axis
-                int N = 512;
-                double[] freqs = ParametricEQUtils.logSpace(20, 20000, N);
-
-                // Interpolate raw & target
-                double[] rawDb = ParametricEQUtils.interpLogFreq(rawData[0], rawData[1], freqs);
-                double[] tgtDb = ParametricEQUtils.interpLogFreq(tgtData[0], tgtData[1], freqs);
-
-                // Parse AutoEQResult
-                AutoEQResult result = ParametricEQUtils.loadAutoEQResult(eqOut);
-                List<PEQBand> bands = result.bands;
-                double preampDb = result.preampDb;
-
-                // Compute EQ'ed response without preamp
-                double[] eqedNoPre = ParametricEQUtils.computeCombinedEQ(freqs, rawDb, bands, 48000);
-                // Apply global preamp
-                double[] eqedDb = Arrays.copyOf(eqedNoPre, eqedNoPre.length);
-                for (int i = 0; i < eqedDb.length; i++) {
-                    eqedDb[i] += preampDb;
-                }
-
-                // Compute pure EQ curve (filter only)
-                double[] eqCurve = new double[N];
-                for (int i = 0; i < N; i++) {
-                    eqCurve[i] = eqedNoPre[i] - rawDb[i];
-                }
+        sessionFile = session;
+        bandEditor = new BandEditor(graphFilters, this::onBandEdited);
+        graphFilters.setOnTouchListener(bandEditor);
 
+        btnApplyEq.setOnClickListener(v -> runAutoEq(session));
+    }
 
-//                double mseRaw = computeMSE(freqs, rawDb,   tgtData[0], tgtData[1]);
-                double mseEq  = computeMSE(freqs, eqedDb, tgtData[0], tgtData[1]);
-
-
-                bandContainer.removeAllViews();
-
-                TextView mse1 = new TextView(this);
-                mse1.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
-                mse1.setTextAlignment(TextView.TEXT_ALIGNMENT_CENTER);
-                mse1.setText(String.format(Locale.US,
-                        "MSE Raw vs Target: %.2f dB²", mseRaw));
-                LinearLayout.LayoutParams lp1 = new LinearLayout.LayoutParams(
-                        ViewGroup.LayoutParams.WRAP_CONTENT,
-                        ViewGroup.LayoutParams.WRAP_CONTENT);
-                lp1.gravity = Gravity.CENTER_HORIZONTAL;
-                lp1.setMargins(0,0,0,8);
-                mse1.setLayoutParams(lp1);
-                bandContainer.addView(mse1);
-
-                TextView mse2 = new TextView(this);
-                mse2.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
-                mse2.setTextAlignment(TextView.TEXT_ALIGNMENT_CENTER);
-                mse2.setText(String.format(Locale.US,
-                        "MSE EQ’d vs Target: %.2f dB²", mseEq));
-                LinearLayout.LayoutParams lp2 = new LinearLayout.LayoutParams(
-                        ViewGroup.LayoutParams.WRAP_CONTENT,
-                        ViewGroup.LayoutParams.WRAP_CONTENT);
-                lp2.gravity = Gravity.CENTER_HORIZONTAL;
-                lp2.setMargins(0,0,0,16);
-                mse2.setLayoutParams(lp2);
-                bandContainer.addView(mse2);
-
-                int count = Math.min(bands.size(), 10);
-                for (int i = 0; i < count; i++) {
-                    PEQBand b = bands.get(i);
-                    TextView tv = new TextView(this);
-                    tv.setTextSize(TypedValue.COMPLEX_UNIT_SP, 14);
-                    tv.setTextAlignment(TextView.TEXT_ALIGNMENT_CENTER);
-                    tv.setText(String.format(Locale.US,
-                            "Band %d: %s @ %.0f Hz   Gain: %.1f dB   Q: %.2f",
-                            i+1,
-                            b.type.name().replace('_',' '),
-                            b.fc,
-                            b.gainDb,
-                            b.Q));
-                    LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
-                            ViewGroup.LayoutParams.WRAP_CONTENT,
-                            ViewGroup.LayoutParams.WRAP_CONTENT);
-                    lp.gravity = Gravity.CENTER_HORIZONTAL;
-                    lp.setMargins(0,0,0,8);
-                    tv.setLayoutParams(lp);
-                    bandContainer.addView(tv);
-                }
+    @Override
+    protected void onDestroy() {
+        JobExecutor.shared().cancel(JOB_EQ);
+        JobExecutor.shared().cancel(JOB_SAVE);
+        super.onDestroy();
+    }
 
+    /** Fit and response curves computed on the worker; only views are touched on main. */
+    private static final class EqFit {
+        List<PEQBand> bands;
+        double mseEq;
+        float[] xLog, rawF, tgtF, eqedF, eqcF;
+        // inputs, kept so the bands can be edited afterwards
+        double[] freqs, rawDb, tgtDb;
+        double[][] tgtData;
+    }
 
-                float[] xLog  = new float[N];
-                float[] rawF  = new float[N];
-                float[] tgtF  = new float[N];
-                float[] eqedF = new float[N];
-                float[] eqcF  = new float[N];
-                for (int i = 0; i < N; i++) {
-                    xLog[i]  = (float)Math.log10(freqs[i]);
-                    rawF[i]  = (float)rawDb[i];
-                    tgtF[i]  = (float)tgtDb[i];
-                    eqedF[i] = (float)eqedDb[i];
-                    eqcF[i]  = (float)eqCurve[i];
+    private void runAutoEq(File session) {
+        CharSequence label = btnApplyEq.getText();
+        btnApplyEq.setEnabled(false);
+        bandEditor.setModel(null);
+        JobExecutor.shared().submit(JOB_EQ, ctx -> {
+            int mark = PipelineMetrics.mark();
+            // Raw & target responses, reloaded from disk only if the process was restarted
+            ctx.progress("Loading", 0f);
+            if ((SessionStore.measured() == null || SessionStore.target() == null) && session != null) {
+                try (PipelineMetrics.Span s = PipelineMetrics.begin("session.load")) {
+                    SessionStore.load(session);
+                }
+            }
+            AnalysisResult measured = SessionStore.measured();
+            SessionStore.Target target = SessionStore.target();
+            if (measured == null || target == null) {
+                throw new IOException("No measurement or target in session");
+            }
+            double[][] rawData = { toDouble(measured.freqs), toDouble(measured.rawDb) };
+            double[][] tgtData = { toDouble(target.freqs), toDouble(target.db) };
+
+            // Standard log-spaced axis; registry targets are already sampled on it
+            double[] freqs = TargetCurveRegistry.axis();
+
+            // Interpolate raw & target; a re-fit or the same target again is a cache hit
+            ResponseCache cache = ResponseCache.shared();
+            ResponseCache.Axis axis = cache.intern(freqs);
+            double[] rawDb = cache.resample(ResponseCache.contentId(rawData[0], rawData[1]),
+                    rawData[0], rawData[1], axis);
+            double[] tgtDb = cache.resample(ResponseCache.contentId(tgtData[0], tgtData[1]),
+                    tgtData[0], tgtData[1], axis);
+
+            // Fit 8 peaking + shelves in Java (same steps as autoeq_helper.run_autoeq), or in
+            // the warm Python worker when start_page started it. Anytime: the best fit so far is
+            // drawn as it improves, and whatever is best when the budget runs out is kept.
+            AutoEqWorker python = AutoEqWorker.shared();
+            ctx.progress(python != null && !python.isWarm() ? "Starting Python" : "Optimizing", 0.1f);
+            long fitStartNs = System.nanoTime();
+            PEQOptimizer.Options opt = new PEQOptimizer.Options(FIT_BUDGET_MS, 0, FIT_REPORT_EVERY,
+                    (iterations, loss, best) -> {
+                        if (ctx.isCancelled()) return false;
+                        ctx.publish(render(best, false, freqs, rawDb, tgtDb, tgtData));
+                        float used = (System.nanoTime() - fitStartNs) / 1e6f / FIT_BUDGET_MS;
+                        ctx.progress("Optimizing", 0.1f + 0.8f * Math.min(used, 1f));
+                        return true;
+                    });
+            AutoEQResult result = python != null
+                    ? python.fit(rawData[0], rawData[1], tgtData[0], tgtData[1], 48000, opt)
+                    : PEQOptimizer.fit(rawData[0], rawData[1], tgtData[0], tgtData[1], 48000, opt);
+            if (PipelineMetrics.isEnabled()) {
+                result = result.withMetrics(PipelineMetrics.since(mark));
+                Log.d(PipelineMetrics.TAG, "AutoEQ stages:\n" + result.metrics);
+            }
+            SessionStore.putEq(result);
+            if (session != null) {
+                try (PipelineMetrics.Span s = PipelineMetrics.begin("session.save")) {
+                    SessionStore.save(session);
                 }
+            }
 
-                LineGraphSeries<DataPoint> sRaw     = DataStore.toSeries(xLog, rawF);
-                LineGraphSeries<DataPoint> sTgt     = DataStore.toSeries(xLog, tgtF);
-                LineGraphSeries<DataPoint> sEqed    = DataStore.toSeries(xLog, eqedF);
-                LineGraphSeries<DataPoint> sEQCurve = DataStore.toSeries(xLog, eqcF);
-                sTgt.setColor(0xFFFF0000);     // red
-                sEqed.setColor(0xFF00AA00);    // green
-                sEQCurve.setColor(0xFFAA00FF); // magenta
-
-                // Plot to graphs
-                graphCombined.removeAllSeries();
-                graphCombined.addSeries(sRaw);
-                graphCombined.addSeries(sTgt);
-                graphCombined.addSeries(sEqed);
-
-                graphFilters.removeAllSeries();
-                graphFilters.addSeries(sEQCurve);
-
-            } catch (IOException e) {
-                Log.e(TAG, "Error applying EQ", e);
-                Toast.makeText(this, "Apply EQ error", Toast.LENGTH_SHORT).show();
-            } catch (Exception ex) {
-                Log.e(TAG, "AutoEQ or plotting failed", ex);
-                Toast.makeText(this, "Error during EQ generation", Toast.LENGTH_SHORT).show();
+            ctx.progress("Rendering", 0.9f);
+            EqFit fit = render(result, true, freqs, rawDb, tgtDb, tgtData);
+            if (PipelineMetrics.isEnabled()) {
+                Log.d(PipelineMetrics.TAG, "Response cache: " + cache.stats());
+                if (session != null) {
+                    PipelineMetrics.writeChromeTrace(new File(session.getParentFile(), PipelineMetrics.TRACE_FILE));
+                }
+            }
+            return fit;
+        }, new JobExecutor.Callback<EqFit>() {
+            @Override public void onUpdate(EqFit best) {
+                showFit(best);
+            }
+            @Override public void onResult(EqFit fit) {
+                btnApplyEq.setEnabled(true);
+                btnApplyEq.setText(label);
+                showFit(fit);
+                eqModel = new EqModel(fit.freqs, 48000);
+                eqModel.setBands(fit.bands);
+                editBase = fit;
+                bandEditor.setModel(eqModel);
+            }
+            @Override public void onError(Exception e) {
+                btnApplyEq.setEnabled(true);
+                btnApplyEq.setText(label);
+                if (e instanceof IOException) {
+                    Log.e(TAG, "Error applying EQ", e);
+                    Toast.makeText(EqActivity.this, "Apply EQ error", Toast.LENGTH_SHORT).show();
+                } else {
+                    Log.e(TAG, "AutoEQ or plotting failed", e);
+                    Toast.makeText(EqActivity.this, "Error during EQ generation", Toast.LENGTH_SHORT).show();
+                }
+            }
+            @Override public void onProgress(String stage, float fraction) {
+                btnApplyEq.setText(String.format(Locale.US, "%s… %d%%", stage, Math.round(fraction * 100)));
             }
         });
     }
 
-    // Helper from ProcessActivity for interpolation
-    private double interpolateTargetDb(double freq, double[] tgtFreqs, double[] tgtDb) {
-        if (freq <= tgtFreqs[0]) return tgtDb[0];
-        if (freq >= tgtFreqs[tgtFreqs.length - 1]) return tgtDb[tgtDb.length - 1];
-        for (int i = 0; i < tgtFreqs.length - 1; i++) {
-            if (freq >= tgtFreqs[i] && freq <= tgtFreqs[i + 1]) {
-                double t = (freq - tgtFreqs[i]) / (tgtFreqs[i + 1] - tgtFreqs[i]);
-                return tgtDb[i] + t * (tgtDb[i + 1] - tgtDb[i]);
+    /**
+     * Pure EQ curve (filter only) and EQ'ed response with global preamp, on the fit's axis.
+     * With cached the curve is summed from ResponseCache. Best-so-far fits skip the cache:
+     * their bands are mostly never seen again and would only push useful entries out.
+     */
+    private EqFit render(AutoEQResult result, boolean cached, double[] freqs, double[] rawDb,
+                         double[] tgtDb, double[][] tgtData) {
+        int N = freqs.length;
+        double[] eqCurve = new double[N];
+        try (PipelineMetrics.Span s = PipelineMetrics.begin("render.eq_curves")) {
+            synchronized (engineLock) {
+                if (responseEngine == null || responseEngine.size() != N) {
+                    responseEngine = new BiquadResponseEngine(freqs, 48000);
+                }
+                if (cached) {
+                    responseEngine.eqCurveDbCached(result.bands, ResponseCache.shared(), eqCurve);
+                } else {
+                    responseEngine.eqCurveDb(result.bands, eqCurve);
+                }
             }
         }
-        return 0;
+        return render(result.bands, result.preampDb, eqCurve, freqs, rawDb, tgtDb, tgtData, null);
+    }
+
+    /** xLog: log10 of freqs if already known, else null. */
+    private static EqFit render(List<PEQBand> bands, double preampDb, double[] eqCurve,
+                                double[] freqs, double[] rawDb, double[] tgtDb, double[][] tgtData,
+                                float[] xLog) {
+        int N = freqs.length;
+        double[] eqedDb = new double[N];
+        for (int i = 0; i < N; i++) {
+            eqedDb[i] = rawDb[i] + eqCurve[i] + preampDb;
+        }
+
+        EqFit fit = new EqFit();
+        fit.bands = bands;
+        fit.freqs = freqs;
+        fit.rawDb = rawDb;
+        fit.tgtDb = tgtDb;
+        fit.tgtData = tgtData;
+        // against the target's own points, like the raw MSE on the previous screen
+        fit.mseEq = ResponseScore.mse(freqs, eqedDb, tgtData[0], tgtData[1]);
+        fit.xLog  = xLog != null ? xLog : new float[N];
+        fit.rawF  = new float[N];
+        fit.tgtF  = new float[N];
+        fit.eqedF = new float[N];
+        fit.eqcF  = new float[N];
+        for (int i = 0; i < N; i++) {
+            if (xLog == null) fit.xLog[i] = (float)Math.log10(freqs[i]);
+            fit.rawF[i]  = (float)rawDb[i];
+            fit.tgtF[i]  = (float)tgtDb[i];
+            fit.eqedF[i] = (float)eqedDb[i];
+            fit.eqcF[i]  = (float)eqCurve[i];
+        }
+        return fit;
     }
 
-    // Helper from ProcessActivity for MSE computation
-    private double computeMSE(double[] freqs, double[] values, double[] tgtFreqs, double[] tgtDb) {
-        double sumSquaredError = 0.0;
-        int count = 0;
-        for (int i = 0; i < freqs.length; i++) {
-            double f = freqs[i];
-            if (f >= 100 && f <= 9000) {
-                double target = interpolateTargetDb(f, tgtFreqs, tgtDb);
-                double diff   = values[i] - target;
-                sumSquaredError += diff * diff;
-                count++;
+    /**
+     * A band was dragged or pinched: eqModel has already swapped in that band's new response.
+     * While the finger is down only the EQ'd and EQ curves, the MSE and that band's label are
+     * updated; when it lifts the whole fit is redrawn and saved.
+     */
+    private void onBandEdited(int band, boolean done) {
+        EqFit base = editBase;
+        List<PEQBand> bands = eqModel.bands();
+        double preampDb = -eqModel.maxGainDb();
+        if (!done) {
+            try (PipelineMetrics.Span s = PipelineMetrics.begin("render.eq_drag")) {
+                drawDragStep(band, bands.get(band), preampDb);
             }
+            return;
         }
-        return count > 0 ? sumSquaredError / count : 0.0;
+        showFit(render(bands, preampDb, eqModel.curveDb(), base.freqs, base.rawDb, base.tgtDb,
+                base.tgtData, base.xLog));
+
+        SessionStore.putEq(new AutoEQResult(preampDb, bands));
+        File session = sessionFile;
+        if (session != null) {
+            JobExecutor.shared().submit(JOB_SAVE, ctx -> {
+                SessionStore.save(session);
+                return session;
+            }, f -> {});
+        }
+    }
+
+    private void showFit(EqFit fit) {
+        try (PipelineMetrics.Span s = PipelineMetrics.begin("render.eq_graph")) {
+            drawFit(fit);
+        }
+    }
+
+    /** One drag step on top of what drawFit built: two series and two labels, O(N). */
+    private void drawDragStep(int band, PEQBand edited, double preampDb) {
+        EqFit base = editBase;
+        double[] eqCurve = eqModel.curveDb();
+        int N = base.freqs.length;
+        if (dragEqedDb == null || dragEqedDb.length != N) dragEqedDb = new double[N];
+        DataPoint[] eqed  = new DataPoint[N];
+        DataPoint[] curve = new DataPoint[N];
+        for (int i = 0; i < N; i++) {
+            dragEqedDb[i] = base.rawDb[i] + eqCurve[i] + preampDb;
+            eqed[i]  = new DataPoint(base.xLog[i], dragEqedDb[i]);
+            curve[i] = new DataPoint(base.xLog[i], eqCurve[i]);
+        }
+        seriesEqed.resetData(eqed);
+        seriesEqCurve.resetData(curve);
+
+        double mse = ResponseScore.mse(base.freqs, dragEqedDb, base.tgtData[0], base.tgtData[1]);
+        mseEqText.setText(mseEqLabel(mse));
+        if (band < bandTexts.size()) bandTexts.get(band).setText(bandLabel(band, edited));
+    }
+
+    private static String mseEqLabel(double mse) {
+        return String.format(Locale.US, "MSE EQ’d vs Target: %.2f dB²", mse);
+    }
+
+    private static String bandLabel(int i, PEQBand b) {
+        return String.format(Locale.US,
+                "Band %d: %s @ %.0f Hz   Gain: %.1f dB   Q: %.2f",
+                i+1,
+                b.type.name().replace('_',' '),
+                b.fc,
+                b.gainDb,
+                b.Q);
+    }
+
+    private void drawFit(EqFit fit) {
+        List<PEQBand> bands = fit.bands;
+        bandContainer.removeAllViews();
+        bandTexts.clear();
+
+        TextView mse1 = new TextView(this);
+        mse1.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        mse1.setTextAlignment(TextView.TEXT_ALIGNMENT_CENTER);
+        mse1.setText(String.format(Locale.US,
+                "MSE Raw vs Target: %.2f dB²", mseRaw));
+        LinearLayout.LayoutParams lp1 = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT);
+        lp1.gravity = Gravity.CENTER_HORIZONTAL;
+        lp1.setMargins(0,0,0,8);
+        mse1.setLayoutParams(lp1);
+        bandContainer.addView(mse1);
+
+        TextView mse2 = new TextView(this);
+        mse2.setTextSize(TypedValue.COMPLEX_UNIT_SP, 16);
+        mse2.setTextAlignment(TextView.TEXT_ALIGNMENT_CENTER);
+        mse2.setText(mseEqLabel(fit.mseEq));
+        LinearLayout.LayoutParams lp2 = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT);
+        lp2.gravity = Gravity.CENTER_HORIZONTAL;
+        lp2.setMargins(0,0,0,16);
+        mse2.setLayoutParams(lp2);
+        bandContainer.addView(mse2);
+        mseEqText = mse2;
+
+        int count = Math.min(bands.size(), 10);
+        for (int i = 0; i < count; i++) {
+            PEQBand b = bands.get(i);
+            TextView tv = new TextView(this);
+            tv.setTextSize(TypedValue.COMPLEX_UNIT_SP, 14);
+            tv.setTextAlignment(TextView.TEXT_ALIGNMENT_CENTER);
+            tv.setText(bandLabel(i, b));
+            LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
+                    ViewGroup.LayoutParams.WRAP_CONTENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT);
+            lp.gravity = Gravity.CENTER_HORIZONTAL;
+            lp.setMargins(0,0,0,8);
+            tv.setLayoutParams(lp);
+            bandContainer.addView(tv);
+            bandTexts.add(tv);
+        }
+
+        LineGraphSeries<DataPoint> sRaw     = DataStore.toSeries(fit.xLog, fit.rawF);
+        LineGraphSeries<DataPoint> sTgt     = DataStore.toSeries(fit.xLog, fit.tgtF);
+        LineGraphSeries<DataPoint> sEqed    = DataStore.toSeries(fit.xLog, fit.eqedF);
+        LineGraphSeries<DataPoint> sEQCurve = DataStore.toSeries(fit.xLog, fit.eqcF);
+        sTgt.setColor(0xFFFF0000);     // red
+        sEqed.setColor(0xFF00AA00);    // green
+        sEQCurve.setColor(0xFFAA00FF); // magenta
+
+        // Plot to graphs
+        graphCombined.removeAllSeries();
+        graphCombined.addSeries(sRaw);
+        graphCombined.addSeries(sTgt);
+        graphCombined.addSeries(sEqed);
+
+        graphFilters.removeAllSeries();
+        graphFilters.addSeries(sEQCurve);
+        seriesEqed    = sEqed;
+        seriesEqCurve = sEQCurve;
+    }
+
+    private static double[] toDouble(float[] xs) {
+        double[] out = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) out[i] = xs[i];
+        return out;
     }
 }
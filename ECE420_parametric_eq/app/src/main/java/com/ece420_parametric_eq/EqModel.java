@@ -0,0 +1,112 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.models.PEQBand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Editable band set with its response kept up to date on a fixed frequency axis.
+ * Every band's dB contribution is stored next to the running sum over all bands, so
+ * replacing one band recomputes only that band and swaps the difference into the sum:
+ * O(N) per edit instead of O(N * bands). The sum is rebuilt from the per-band curves every
+ * RESUM_EVERY edits so rounding cannot drift during a long drag.
+ * Whole band sets come from ResponseCache, since a re-fit or redraw usually brings back bands
+ * seen before. Drag steps are computed directly; they would only churn the cache.
+ * Not thread-safe; the EQ screen edits it on the UI thread.
+ */
+public final class EqModel {
+    private static final int RESUM_EVERY = 256;
+
+    private final BiquadResponseEngine engine;
+    private final List<PEQBand> bands = new ArrayList<>();
+    private final List<double[]> bandDb = new ArrayList<>();
+    private final double[] totalDb;
+    private double[] scratch;
+    private int editsSinceResum;
+
+    public EqModel(double[] freqs, double fs) {
+        engine  = new BiquadResponseEngine(freqs, fs);
+        totalDb = new double[freqs.length];
+        scratch = new double[freqs.length];
+    }
+
+    public double[] freqs() { return engine.freqs(); }
+    public double   fs()    { return engine.fs(); }
+    public int      size()  { return bands.size(); }
+
+    public PEQBand band(int index) {
+        return bands.get(index);
+    }
+
+    /** Snapshot of the current bands, e.g. for an AutoEQResult. */
+    public List<PEQBand> bands() {
+        return Collections.unmodifiableList(new ArrayList<>(bands));
+    }
+
+    /** Replace every band; O(N * bands), without any log10 for bands already in the cache. */
+    public void setBands(List<PEQBand> newBands) {
+        bands.clear();
+        bandDb.clear();
+        ResponseCache cache = ResponseCache.shared();
+        for (PEQBand b : newBands) {
+            // copied: setBand reuses the replaced band's array as scratch
+            double[] db = engine.bandDbCached(b, cache).clone();
+            bands.add(b);
+            bandDb.add(db);
+        }
+        resum();
+    }
+
+    /** Replace one band; only that band's response is recomputed. */
+    public void setBand(int index, PEQBand band) {
+        double[] old = bandDb.get(index);
+        engine.bandDb(band, scratch);
+        double[] now = scratch, total = totalDb;
+        for (int i = 0; i < total.length; i++) {
+            total[i] += now[i] - old[i];
+        }
+        bands.set(index, band);
+        bandDb.set(index, now);
+        scratch = old;
+        if (++editsSinceResum >= RESUM_EVERY) resum();
+    }
+
+    public void setBand(int index, double fc, double Q, double gainDb) {
+        setBand(index, new PEQBand(bands.get(index).type, fc, Q, gainDb));
+    }
+
+    /** Cascaded EQ curve (dB, no preamp); live view, must not be modified. */
+    public double[] curveDb() {
+        return totalDb;
+    }
+
+    /** One band's contribution (dB); live view, must not be modified. */
+    public double[] bandCurveDb(int index) {
+        return bandDb.get(index);
+    }
+
+    /** Highest point of the EQ curve; AutoEQ's preamp is minus this. */
+    public double maxGainDb() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double v : totalDb) max = Math.max(max, v);
+        return max;
+    }
+
+    /** rawDb + EQ curve + preampDb into out (out may alias rawDb). */
+    public void applyTo(double[] rawDb, double preampDb, double[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = rawDb[i] + preampDb + totalDb[i];
+        }
+    }
+
+    private void resum() {
+        Arrays.fill(totalDb, 0.0);
+        for (double[] db : bandDb) {
+            for (int i = 0; i < totalDb.length; i++) totalDb[i] += db[i];
+        }
+        editsSinceResum = 0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.models.PEQBand;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+/**
+ * Real-time parametric EQ on the audio path.
+ * Wraps a native per-channel biquad cascade that filters direct buffers in place.
+ * setBands() may be called from the UI thread while process() runs on the audio thread;
+ * the new coefficients are picked up at the next block and ramped in across it.
+ */
+public final class EqStream implements AutoCloseable {
+    private long handle;
+    private final int channels;
+
+    public EqStream(int fs, int channels) {
+        this.channels = channels;
+        this.handle   = DSPProcessor.createEqStream(fs, channels);
+    }
+
+    public int channels() { return channels; }
+
+    /** Replace all bands and the preamp. Only one thread should call this at a time. */
+    public void setBands(List<PEQBand> bands, double preampDb) {
+        int n = bands.size();
+        int[]   types = new int[n];
+        float[] fc    = new float[n];
+        float[] q     = new float[n];
+        float[] gain  = new float[n];
+        for (int i = 0; i < n; i++) {
+            PEQBand b = bands.get(i);
+            types[i] = b.type.ordinal();
+            fc[i]    = (float) b.fc;
+            q[i]     = (float) b.Q;
+            gain[i]  = (float) b.gainDb;
+        }
+        DSPProcessor.setEqStreamBands(checkOpen(), types, fc, q, gain, (float) preampDb);
+    }
+
+    /**
+     * Filter interleaved PCM16 in place. The buffer must be direct and in native byte order;
+     * frames are read from index 0 regardless of position.
+     */
+    public void process(ByteBuffer pcm16, int frames) {
+        if (!DSPProcessor.processEqStreamPcm16(checkOpen(), pcm16, frames)) {
+            throw new IllegalArgumentException("pcm16 must be a direct buffer holding " + frames + " frames");
+        }
+    }
+
+    /** Filter interleaved float samples in place. The buffer must be direct. */
+    public void process(FloatBuffer samples, int frames) {
+        if (!DSPProcessor.processEqStreamFloat(checkOpen(), samples, frames)) {
+            throw new IllegalArgumentException("samples must be a direct buffer holding " + frames + " frames");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (handle != 0) {
+            DSPProcessor.releaseEqStream(handle);
+            handle = 0;
+        }
+    }
+
+    private long checkOpen() {
+        if (handle == 0) throw new IllegalStateException("EqStream is closed");
+        return handle;
+    }
+}
@@ -0,0 +1,204 @@
+package com.ece420_parametric_eq;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the heavy stages (decode, deconvolve, smooth, optimize, render) off the UI thread.
+ * A small bounded pool executes jobs; results, errors and progress are posted back to the
+ * main looper. Jobs are submitted under a key, and a new job cancels and supersedes the
+ * one already running under the same key, so a stale result is never delivered.
+ */
+public final class JobExecutor {
+    private static final String TAG = "JobExecutor";
+    private static final int THREADS  = 2;
+    private static final int QUEUE    = 16;
+
+    /** Work run on a pool thread. Check ctx between stages so cancellation is prompt. */
+    public interface Job<T> {
+        T run(JobContext ctx) throws Exception;
+    }
+
+    /** Delivered on the main thread, and only while the job is still current. */
+    public interface Callback<T> {
+        void onResult(T result);
+        default void onError(Exception e) {}
+        default void onProgress(String stage, float fraction) {}
+        /** An intermediate result handed over with JobContext.publish, e.g. a best-so-far fit. */
+        default void onUpdate(T partial) {}
+    }
+
+    /** Handed to a running job for progress and cancellation checks. */
+    public static final class JobContext {
+        private final JobHandle handle;
+        private final Callback<?> callback;
+
+        private JobContext(JobHandle handle, Callback<?> callback) {
+            this.handle   = handle;
+            this.callback = callback;
+        }
+
+        public boolean isCancelled() {
+            return handle.isCancelled() || Thread.currentThread().isInterrupted();
+        }
+
+        /** Throws CancellationException once the job has been cancelled or superseded. */
+        public void checkCancelled() {
+            if (isCancelled()) throw new CancellationException();
+        }
+
+        /** Report entering a stage (fraction 0..1 of the whole job); also a cancellation point. */
+        public void progress(String stage, float fraction) {
+            checkCancelled();
+            handle.executor.main.post(() -> {
+                if (handle.isCurrent()) callback.onProgress(stage, fraction);
+            });
+        }
+
+        /**
+         * Deliver a partial result to Callback.onUpdate; also a cancellation point. The job must
+         * not modify it afterwards. Must be of the job's result type.
+         */
+        @SuppressWarnings("unchecked")
+        public void publish(Object partial) {
+            checkCancelled();
+            Callback<Object> cb = (Callback<Object>) callback;
+            handle.executor.main.post(() -> {
+                if (handle.isCurrent()) cb.onUpdate(partial);
+            });
+        }
+    }
+
+    /** Cancellable reference to a submitted job. */
+    public static final class JobHandle {
+        private final JobExecutor executor;
+        private final String key;
+        private volatile FutureTask<?> task;
+
+        private JobHandle(JobExecutor executor, String key) {
+            this.executor = executor;
+            this.key      = key;
+        }
+
+        public void cancel() {
+            FutureTask<?> t = task;
+            if (t != null) t.cancel(true);
+            executor.forget(this);
+        }
+
+        public boolean isCancelled() {
+            FutureTask<?> t = task;
+            return t != null && t.isCancelled();
+        }
+
+        public boolean isDone() {
+            FutureTask<?> t = task;
+            return t != null && t.isDone();
+        }
+
+        private boolean isCurrent() {
+            return !isCancelled() && executor.current(key) == this;
+        }
+    }
+
+    private static JobExecutor shared;
+
+    private final ThreadPoolExecutor pool;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Map<String, JobHandle> running = new HashMap<>();
+
+    public JobExecutor(int threads, int queueCapacity) {
+        AtomicInteger n = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, TAG + "-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /** App-wide executor shared by the activities. */
+    public static synchronized JobExecutor shared() {
+        if (shared == null) shared = new JobExecutor(THREADS, QUEUE);
+        return shared;
+    }
+
+    /** Run job under key, cancelling whatever was running under that key. */
+    public <T> JobHandle submit(String key, Job<T> job, Callback<T> callback) {
+        JobHandle handle = new JobHandle(this, key);
+        JobContext ctx = new JobContext(handle, callback);
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                T result = job.run(ctx);
+                ctx.checkCancelled();
+                main.post(() -> {
+                    if (!handle.isCurrent()) return;
+                    forget(handle);
+                    callback.onResult(result);
+                });
+            } catch (CancellationException | InterruptedException e) {
+                // superseded or cancelled: nothing to deliver
+            } catch (Exception e) {
+                if (ctx.isCancelled()) return null;
+                Log.e(TAG, "Job " + key + " failed", e);
+                main.post(() -> {
+                    if (!handle.isCurrent()) return;
+                    forget(handle);
+                    callback.onError(e);
+                });
+            }
+            return null;
+        });
+        handle.task = task;
+
+        JobHandle previous;
+        synchronized (running) {
+            previous = running.put(key, handle);
+        }
+        if (previous != null) {
+            FutureTask<?> t = previous.task;
+            if (t != null) t.cancel(true);
+        }
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            forget(handle);
+            main.post(() -> callback.onError(e));
+        }
+        return handle;
+    }
+
+    /** Cancel the job running under key, if any. */
+    public void cancel(String key) {
+        JobHandle h;
+        synchronized (running) {
+            h = running.remove(key);
+        }
+        if (h != null && h.task != null) h.task.cancel(true);
+    }
+
+    private JobHandle current(String key) {
+        synchronized (running) {
+            return running.get(key);
+        }
+    }
+
+    private void forget(JobHandle handle) {
+        synchronized (running) {
+            if (running.get(handle.key) == handle) running.remove(handle.key);
+        }
+    }
+}
@@ -0,0 +1,968 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.ParametricEQUtils.AutoEQResult;
+import com.ece420_parametric_eq.models.PEQBand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pure-Java port of autoeq_helper.run_autoeq for the 8_PEAKING_WITH_SHELVES layout.
+ * Runs the same steps as the Python path (interpolate, center, compensate, smoothen, equalize,
+ * optimize) and scores filters with the same loss as peq.py PEQ._optimizer_loss, but works on
+ * plain arrays: no Python runtime and no speaker_eq.txt round-trip.
+ */
+public class PEQOptimizer {
+
+    // AutoEQ defaults from constants.py
+    private static final double F_MIN          = 20.0;
+    private static final double F_MAX          = 20000.0;
+    private static final double F_STEP         = 1.01;
+    private static final double OPT_F_STEP     = 1.02;   // DEFAULT_BIQUAD_OPTIMIZATION_F_STEP
+    private static final double MAX_GAIN       = 6.0;
+    private static final double MAX_SLOPE      = 18.0;
+    private static final double TREBLE_F_LOWER = 6000.0;
+    private static final double TREBLE_F_UPPER = 8000.0;
+    private static final double SMOOTHING_WINDOW_OCT        = 1.0 / 12;
+    private static final double TREBLE_SMOOTHING_WINDOW_OCT = 2.0;
+    private static final double EQ_SMOOTHING_WINDOW_OCT     = 1.0 / 5;
+    // built once, so the same arrays (and ResponseCache axes) are reused by every fit
+    private static final double[] GRID  = generateFrequencies(F_MIN, F_MAX, F_STEP);
+    private static final double[] OPT_F = generateFrequencies(F_MIN, F_MAX, OPT_F_STEP);
+
+    // PEQ optimizer settings, 8_PEAKING_WITH_SHELVES overrides min_std
+    private static final double OPT_MIN_F = 20.0;
+    private static final double OPT_MAX_F = 20000.0;
+    private static final double MIN_STD   = 0.008;
+    private static final int    STD_N     = 8;
+    private static final int    MAX_ITERATIONS = 400;
+    private static final int    LBFGS_MEMORY   = 8;
+
+    private static final double SHELF_FC_LOW  = 105.0;
+    private static final double SHELF_FC_HIGH = 10000.0;
+    private static final double SHELF_Q       = 0.7;
+    private static final int    NUM_PEAKING   = 8;
+
+    /** One filter slot, mirrors peq.py PEQFilter with its bounds and cached response. */
+    private static class Filter {
+        final PEQBand.Type type;
+        double fc, q, gain;
+        final boolean optFc, optQ, optGain;
+        final double minFc, maxFc, minQ, maxQ, minGain, maxGain;
+        double[] fr;
+        double penalty;
+
+        Filter(PEQBand.Type type, double fc, double q, boolean optFc, boolean optQ,
+               double minFc, double maxFc, double minQ, double maxQ) {
+            this.type    = type;
+            this.fc      = fc;
+            this.q       = q;
+            this.optFc   = optFc;
+            this.optQ    = optQ;
+            this.optGain = true;
+            this.minFc   = minFc;
+            this.maxFc   = maxFc;
+            this.minQ    = minQ;
+            this.maxQ    = maxQ;
+            this.minGain = -20.0;
+            this.maxGain = 20.0;
+        }
+    }
+
+    /** Best-so-far reports from an anytime fit, called on the fitting thread. */
+    public interface Progress {
+        /**
+         * @param iterations optimizer iterations so far
+         * @param loss       PEQ._optimizer_loss of best
+         * @param best       lowest-loss filters so far, with their preamp
+         * @return false to stop now and return best
+         */
+        boolean onProgress(int iterations, double loss, AutoEQResult best);
+    }
+
+    /** Stopping rules on top of the convergence test, and progress reporting. */
+    public static final class Options {
+        /** Run to convergence (or MAX_ITERATIONS) without reports, as before. */
+        public static final Options DEFAULT = new Options(0, 0, 0, null);
+
+        public final long   timeBudgetMs;   // 0 = unbounded; counted from the start of fit()
+        public final double targetLoss;     // stop as soon as the loss is this low; 0 = off
+        public final int    reportEvery;    // iterations between Progress calls
+        final Progress progress;
+
+        public Options(long timeBudgetMs, double targetLoss, int reportEvery, Progress progress) {
+            if (timeBudgetMs < 0 || targetLoss < 0) throw new IllegalArgumentException("Negative limit");
+            if (progress != null && reportEvery < 1) throw new IllegalArgumentException("reportEvery must be >= 1");
+            this.timeBudgetMs = timeBudgetMs;
+            this.targetLoss   = targetLoss;
+            this.reportEvery  = reportEvery;
+            this.progress     = progress;
+        }
+    }
+
+    private final double[] f;
+    private final double[] phi;
+    private final double[] target;
+    private final double   fs;
+    private final Filter[] filters;
+    private final int minFIx, maxFIx, ix10k;
+    private final double targetTailMean;
+
+    // scratch buffers reused across loss evaluations
+    private final double[] coeffs = new double[5];
+    private final double[] sumFr;
+    private final double[] trialFr;
+
+    private PEQOptimizer(double[] f, double[] target, double fs) {
+        this.f      = f;
+        this.target = target;
+        this.fs     = fs;
+        int N = f.length;
+        phi = new double[N];
+        for (int i = 0; i < N; i++) {
+            double s = Math.sin(Math.PI * f[i] / fs);
+            phi[i] = 4 * s * s;
+        }
+        minFIx = argMinAbs(f, OPT_MIN_F);
+        maxFIx = argMinAbs(f, OPT_MAX_F);
+        ix10k  = argMinAbs(f, 10000.0);
+        double tail = 0;
+        for (int i = ix10k; i < N; i++) tail += target[i];
+        targetTailMean = tail / (N - ix10k);
+        sumFr   = new double[N];
+        trialFr = new double[N];
+
+        filters = new Filter[2 + NUM_PEAKING];
+        filters[0] = new Filter(PEQBand.Type.LOW_SHELF, SHELF_FC_LOW, SHELF_Q, false, false,
+                20.0, 10000.0, 0.4, 0.7);
+        filters[1] = new Filter(PEQBand.Type.HIGH_SHELF, SHELF_FC_HIGH, SHELF_Q, false, false,
+                20.0, 10000.0, 0.4, 0.7);
+        for (int i = 0; i < NUM_PEAKING; i++) {
+            filters[2 + i] = new Filter(PEQBand.Type.PEAKING, Double.NaN, Double.NaN, true, true,
+                    20.0, 10000.0, 0.18248, 6.0);
+        }
+    }
+
+    /**
+     * Fit 8 peaking filters plus low/high shelves so that measured + EQ follows the target.
+     * Equivalent to autoeq_helper.run_autoeq without the file hand-off.
+     * @param measFreqs measured frequencies (Hz, ascending)
+     * @param measDb    measured response (dB)
+     * @param tgtFreqs  target frequencies (Hz, ascending)
+     * @param tgtDb     target response (dB)
+     * @param fs        sample rate the biquads are designed for
+     */
+    public static AutoEQResult fit(double[] measFreqs, double[] measDb,
+                                   double[] tgtFreqs, double[] tgtDb, double fs) {
+        return fit(measFreqs, measDb, tgtFreqs, tgtDb, fs, Options.DEFAULT);
+    }
+
+    /**
+     * Anytime fit: stops at the first of convergence, opt's time budget or target loss, or a
+     * Progress callback returning false, and returns the best filters found until then.
+     */
+    public static AutoEQResult fit(double[] measFreqs, double[] measDb,
+                                   double[] tgtFreqs, double[] tgtDb, double fs, Options opt) {
+        long startNs = System.nanoTime();
+        double[] eq;
+        try (PipelineMetrics.Span s = PipelineMetrics.begin("autoeq.equalization")) {
+            eq = equalizationTarget(GRID, measFreqs, measDb, tgtFreqs, tgtDb);
+        }
+        try (PipelineMetrics.Span s = PipelineMetrics.begin("autoeq.optimize")) {
+            return optimize(OPT_F, ParametricEQUtils.interpLogFreq(GRID, eq, OPT_F), fs, opt, startNs);
+        }
+    }
+
+    /**
+     * Optimize the filter layout against an equalization curve already sampled on f.
+     * This is peq.py PEQ.optimize followed by the preamp of write_eqapo_parametric_eq.
+     */
+    public static AutoEQResult optimize(double[] f, double[] equalization, double fs) {
+        return optimize(f, equalization, fs, Options.DEFAULT, System.nanoTime());
+    }
+
+    private static AutoEQResult optimize(double[] f, double[] equalization, double fs,
+                                         Options options, long startNs) {
+        PEQOptimizer opt = new PEQOptimizer(f, equalization, fs);
+        long deadlineNs = options.timeBudgetMs > 0 ? startNs + options.timeBudgetMs * 1000000 : 0;
+        opt.run(options, deadlineNs);
+        return opt.result();
+    }
+
+    // Hooks for PEQOptimizerTest: the curve, loss and starting point of the fit() optimizer
+
+    /** {optimizer axis, equalization curve on it}, what fit() hands to the optimizer. */
+    static double[][] equalization(double[] measFreqs, double[] measDb, double[] tgtFreqs, double[] tgtDb) {
+        double[] eq = equalizationTarget(GRID, measFreqs, measDb, tgtFreqs, tgtDb);
+        return new double[][] { OPT_F, ParametricEQUtils.interpLogFreq(GRID, eq, OPT_F) };
+    }
+
+    /** PEQ._optimizer_loss of bands, given in fit() order (low shelf, high shelf, 8 peaking). */
+    static double loss(double[] f, double[] equalization, double fs, List<PEQBand> bands) {
+        PEQOptimizer opt = new PEQOptimizer(f, equalization, fs);
+        if (bands.size() != opt.filters.length) {
+            throw new IllegalArgumentException("Expected " + opt.filters.length + " bands");
+        }
+        for (int k = 0; k < opt.filters.length; k++) {
+            Filter flt = opt.filters[k];
+            PEQBand b = bands.get(k);
+            if (b.type != flt.type) throw new IllegalArgumentException("Band " + k + " is not " + flt.type);
+            flt.fc   = b.fc;
+            flt.q    = b.Q;
+            flt.gain = b.gainDb;
+            flt.fr   = new double[f.length];
+        }
+        opt.refreshAll();
+        return opt.loss(-1, null, 0);
+    }
+
+    /** Filters after PEQ._init_optimizer_params, before any optimizer step. */
+    static List<PEQBand> initialBands(double[] f, double[] equalization, double fs) {
+        PEQOptimizer opt = new PEQOptimizer(f, equalization, fs);
+        opt.initFilters();
+        opt.refreshAll();
+        return opt.result().bands;
+    }
+
+    // AutoEQ FrequencyResponse preprocessing
+
+    /**
+     * Interpolate, center and compensate the measurement, then derive the equalization curve
+     * the same way FrequencyResponse.equalize does (smoothed inverse error, slope limited,
+     * clipped to +6 dB and smoothed again). Returned on grid.
+     */
+    static double[] equalizationTarget(double[] grid, double[] measFreqs, double[] measDb,
+                                       double[] tgtFreqs, double[] tgtDb) {
+        int N = grid.length;
+        double[] raw = ParametricEQUtils.interpLogFreq(measFreqs, measDb, grid);
+        // the target is usually the same from fit to fit; copied because center() shifts it
+        ResponseCache cache = ResponseCache.shared();
+        double[] tgt = cache.resample(ResponseCache.contentId(tgtFreqs, tgtDb), tgtFreqs, tgtDb,
+                cache.intern(grid)).clone();
+        center(grid, raw);
+        center(grid, tgt);
+
+        double[] error = new double[N];
+        for (int i = 0; i < N; i++) error[i] = raw[i] - tgt[i];
+
+        double[] smoothedError = smoothen(grid, error,
+                SMOOTHING_WINDOW_OCT, TREBLE_SMOOTHING_WINDOW_OCT);
+        double[] y = new double[N];
+        double[] negY = new double[N];
+        for (int i = 0; i < N; i++) {
+            y[i]    = -smoothedError[i];
+            negY[i] = smoothedError[i];
+        }
+
+        int[] peaks = Peaks.find(y, 1.0).indices;
+        int[] dips  = Peaks.find(negY, 1.0).indices;
+        if (peaks.length == 0 && dips.length == 0) {
+            // flat line, inverse error is the equalization
+            return y;
+        }
+
+        boolean[] limitFree = protectionMask(y, peaks, dips);
+        int rtlStart = findRtlStart(y, peaks, dips);
+        double[] ltr = limitedLtrSlope(grid, y, MAX_SLOPE, 0, peaks, limitFree);
+        double[] rtl = limitedRtlSlope(grid, y, MAX_SLOPE, rtlStart, peaks, limitFree);
+
+        double[] combined = new double[N];
+        for (int i = 0; i < N; i++) {
+            combined[i] = Math.min(Math.min(ltr[i], rtl[i]), MAX_GAIN);
+        }
+        return smoothen(grid, combined, EQ_SMOOTHING_WINDOW_OCT, EQ_SMOOTHING_WINDOW_OCT);
+    }
+
+    /** utils.generate_frequencies: geometric grid from fMin while f <= fMax. */
+    static double[] generateFrequencies(double fMin, double fMax, double step) {
+        int n = 0;
+        for (double x = fMin; x <= fMax; x *= step) n++;
+        double[] out = new double[n];
+        double x = fMin;
+        for (int i = 0; i < n; i++) {
+            out[i] = x;
+            x *= step;
+        }
+        return out;
+    }
+
+    /** FrequencyResponse.center: shift so the response is 0 dB at 1 kHz. */
+    private static void center(double[] grid, double[] db) {
+        double diff = ParametricEQUtils.interpLogFreq(grid, db, new double[] { 1000.0 })[0];
+        for (int i = 0; i < db.length; i++) db[i] -= diff;
+    }
+
+    /** FrequencyResponse._smoothen: Savitzky-Golay (order 2) blended into a wider treble window. */
+    private static double[] smoothen(double[] grid, double[] data, double windowOct, double trebleWindowOct) {
+        double[] yNormal = SavitzkyGolay.filter(data, smoothingWindowSize(grid, windowOct), 2);
+        double[] yTreble = trebleWindowOct == windowOct
+                ? yNormal
+                : SavitzkyGolay.filter(data, smoothingWindowSize(grid, trebleWindowOct), 2);
+        double fCenter   = Math.sqrt(TREBLE_F_UPPER / TREBLE_F_LOWER) * TREBLE_F_LOWER;
+        double halfRange = Math.log10(TREBLE_F_UPPER) - Math.log10(fCenter);
+        double logCenter = Math.log10(fCenter);
+        double[] out = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            double k = 1.0 / (1.0 + Math.exp(-(Math.log10(grid[i]) - logCenter) / (halfRange / 4)));
+            out[i] = yNormal[i] * (1 - k) + yTreble[i] * k;
+        }
+        return out;
+    }
+
+    /** utils.smoothing_window_size: window length in samples for a width in octaves (odd). */
+    private static int smoothingWindowSize(double[] grid, double octaves) {
+        double steps = 0;
+        for (int i = 1; i < grid.length; i++) steps += grid[i] / grid[i - 1];
+        double stepSize = steps / (grid.length - 1);
+        int n = (int) Math.rint(Math.log(Math.pow(2, octaves)) / Math.log(stepSize));
+        if (n % 2 == 0) n++;
+        return n;
+    }
+
+    /** FrequencyResponse.protection_mask: zones around dips lower than their neighbouring dips. */
+    private static boolean[] protectionMask(double[] y, int[] peaks, int[] dips) {
+        int N = y.length;
+        int[] dipIx;
+        double[] dipLevels;
+        if (peaks.length > 0 && (dips.length == 0 || peaks[peaks.length - 1] > dips[dips.length - 1])) {
+            int from = peaks[peaks.length - 1];
+            int last = from;
+            for (int i = from; i < N; i++) if (y[i] < y[last]) last = i;
+            dipIx = Arrays.copyOf(dips, dips.length + 1);
+            dipIx[dips.length] = last;
+            dipLevels = new double[dipIx.length];
+            for (int i = 0; i < dipIx.length; i++) dipLevels[i] = y[dipIx[i]];
+        } else {
+            dipIx = Arrays.copyOf(dips, dips.length + 1);
+            dipIx[dips.length] = N - 1;
+            dipLevels = new double[dipIx.length];
+            for (int i = 0; i < dips.length; i++) dipLevels[i] = y[dipIx[i]];
+            double min = Double.POSITIVE_INFINITY;
+            for (double v : y) min = Math.min(min, v);
+            dipLevels[dips.length] = min;
+        }
+
+        boolean[] mask = new boolean[N];
+        if (dipIx.length < 3) return mask;
+        for (int i = 1; i < dipIx.length - 1; i++) {
+            int dip = dipIx[i];
+            int left = 0;
+            for (int j = dip - 1; j >= 0; j--) {
+                if (y[j] >= dipLevels[i - 1]) { left = j + 1; break; }
+            }
+            int right = N - 1;
+            for (int j = dip; j < N; j++) {
+                if (y[j] >= dipLevels[i + 1]) { right = j - 1; break; }
+            }
+            for (int j = left; j <= right; j++) mask[j] = true;
+        }
+        return mask;
+    }
+
+    /** FrequencyResponse.find_rtl_start */
+    private static int findRtlStart(double[] y, int[] peaks, int[] dips) {
+        int N = y.length;
+        if (peaks.length > 0 && (dips.length == 0 || peaks[peaks.length - 1] > dips[dips.length - 1])) {
+            int lastPeak = peaks[peaks.length - 1];
+            double level = dips.length > 0 ? y[dips[dips.length - 1]] : Math.max(y[0], y[N - 1]);
+            for (int i = lastPeak; i < N; i++) {
+                if (y[i] <= level) return i;
+            }
+            return N - 1;
+        }
+        return dips[dips.length - 1];
+    }
+
+    /** FrequencyResponse.limited_ltr_slope (no decay, no concha interference). */
+    private static double[] limitedLtrSlope(double[] x, double[] y, double maxSlope, int startIndex,
+                                            int[] peaks, boolean[] limitFree) {
+        int N = x.length;
+        double[] limited = new double[N];
+        boolean[] clipped = new boolean[N];
+        int regionStart = -1;
+        for (int i = 0; i < N; i++) {
+            if (i <= startIndex) {
+                limited[i] = y[i];
+                continue;
+            }
+            double octaves = Math.log(x[i] / x[i - 1]) / Math.log(2);
+            double slope = (y[i] - limited[i - 1]) / octaves;
+            if (slope > maxSlope && !limitFree[i]) {
+                if (!clipped[i - 1]) regionStart = i;
+                clipped[i] = true;
+                limited[i] = limited[i - 1] + maxSlope * octaves;
+            } else {
+                limited[i] = y[i];
+                if (clipped[i - 1]) {
+                    // end of a clipped region, drop it unless it touches a peak
+                    boolean touchesPeak = false;
+                    for (int p : peaks) {
+                        if (p >= regionStart && p < i) { touchesPeak = true; break; }
+                    }
+                    if (!touchesPeak) {
+                        for (int j = regionStart; j < i; j++) {
+                            limited[j] = y[j];
+                            clipped[j] = false;
+                        }
+                    }
+                }
+            }
+        }
+        return limited;
+    }
+
+    /** FrequencyResponse.limited_rtl_slope: ltr pass over the flipped curve (x kept ascending, as upstream). */
+    private static double[] limitedRtlSlope(double[] x, double[] y, double maxSlope, int startIndex,
+                                            int[] peaks, boolean[] limitFree) {
+        int N = y.length;
+        double[] yFlip = new double[N];
+        boolean[] freeFlip = new boolean[N];
+        for (int i = 0; i < N; i++) {
+            yFlip[i]    = y[N - 1 - i];
+            freeFlip[i] = limitFree[N - 1 - i];
+        }
+        int[] peaksFlip = new int[peaks.length];
+        for (int i = 0; i < peaks.length; i++) peaksFlip[i] = N - 1 - peaks[i];
+        double[] lim = limitedLtrSlope(x, yFlip, maxSlope, N - 1 - startIndex, peaksFlip, freeFlip);
+        double[] out = new double[N];
+        for (int i = 0; i < N; i++) out[i] = lim[N - 1 - i];
+        return out;
+    }
+
+    // PEQ optimization
+
+    private void updateFr(Filter flt, double[] dst) {
+        ParametricEQUtils.biquadCoefficients(flt.type, flt.fc, flt.q, flt.gain, fs, coeffs);
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = ParametricEQUtils.biquadMagnitudeDb(coeffs, phi[i]);
+        }
+    }
+
+    /** Peaking.sharpness_penalty, zero for shelves. */
+    private static double sharpnessPenalty(Filter flt, double[] fr) {
+        if (flt.type != PEQBand.Type.PEAKING) return 0.0;
+        double gainLimit = -0.09503189270199464 + 20.575128011847003 * (1 / flt.q);
+        double x = flt.gain / gainLimit - 1;
+        double coef = 1 / (1 + Math.exp(-x * 100));
+        double sum = 0;
+        for (double v : fr) {
+            double p = v * coef;
+            sum += p * p;
+        }
+        return sum / fr.length;
+    }
+
+    private void refreshAll() {
+        Arrays.fill(sumFr, 0.0);
+        for (Filter flt : filters) {
+            updateFr(flt, flt.fr);
+            flt.penalty = sharpnessPenalty(flt, flt.fr);
+            for (int i = 0; i < sumFr.length; i++) sumFr[i] += flt.fr[i];
+        }
+    }
+
+    /**
+     * PEQ._optimizer_loss. Filter k's response is swapped for frK (pass null to use the cached
+     * one), so a single-parameter probe only has to recompute one filter.
+     */
+    private double loss(int k, double[] frK, double penaltyK) {
+        int N = f.length;
+        double penalty = 0;
+        for (int j = 0; j < filters.length; j++) {
+            penalty += (j == k && frK != null) ? penaltyK : filters[j].penalty;
+        }
+        // above 10 kHz only the total energy matters
+        double frTail = 0;
+        for (int i = ix10k; i < N; i++) frTail += frAt(i, k, frK);
+        frTail /= (N - ix10k);
+
+        double sse = 0;
+        for (int i = minFIx; i < maxFIx; i++) {
+            double d = (i >= ix10k) ? targetTailMean - frTail : target[i] - frAt(i, k, frK);
+            sse += d * d;
+        }
+        double mse = maxFIx > minFIx ? sse / (maxFIx - minFIx) : 0.0;
+        return Math.sqrt(mse + penalty);
+    }
+
+    private double frAt(int i, int k, double[] frK) {
+        return frK == null ? sumFr[i] : sumFr[i] - filters[k].fr[i] + frK[i];
+    }
+
+    /** PEQ._init_optimizer_params: shelves first, then peaking filters on what is left. */
+    private void initFilters() {
+        for (Filter flt : filters) flt.fr = new double[f.length];
+        double[] remaining = target.clone();
+        int[] order = new int[filters.length];
+        order[0] = 1;   // high shelf
+        order[1] = 0;   // low shelf
+        for (int i = 2; i < filters.length; i++) order[i] = i;
+        for (int ix : order) {
+            Filter flt = filters[ix];
+            if (flt.type == PEQBand.Type.PEAKING) {
+                initPeaking(flt, remaining);
+            } else {
+                // weighted average of the target with a 1 dB shelf as the weights
+                flt.gain = 1.0;
+                updateFr(flt, flt.fr);
+                double dot = 0, sum = 0;
+                for (int i = 0; i < f.length; i++) {
+                    dot += remaining[i] * flt.fr[i];
+                    sum += flt.fr[i];
+                }
+                flt.gain = clip(dot / sum, flt.minGain, flt.maxGain);
+            }
+            updateFr(flt, flt.fr);
+            for (int i = 0; i < f.length; i++) remaining[i] -= flt.fr[i];
+        }
+    }
+
+    /** Peaking.init: centre the filter on the biggest (width x height) peak or dip. */
+    private void initPeaking(Filter flt, double[] target) {
+        int N = f.length;
+        double[] pos = new double[N], neg = new double[N];
+        for (int i = 0; i < N; i++) {
+            pos[i] = Math.max(target[i], 0);
+            neg[i] = Math.max(-target[i], 0);
+        }
+        Peaks pp = Peaks.find(pos, 0.0);
+        Peaks np = Peaks.find(neg, 0.0);
+        int minFcIx = argMinAbs(f, flt.minFc);
+        int maxFcIx = argMinAbs(f, flt.maxFc);
+
+        int best = -1;
+        double bestSize = Double.NEGATIVE_INFINITY, bestWidth = 0, bestHeight = 0;
+        for (Peaks p : new Peaks[] { pp, np }) {
+            for (int j = 0; j < p.indices.length; j++) {
+                int ix = p.indices[j];
+                if (ix < minFcIx || ix > maxFcIx) continue;
+                double size = p.widths[j] * p.heights[j];
+                if (size > bestSize) {
+                    bestSize   = size;
+                    best       = ix;
+                    bestWidth  = p.widths[j];
+                    bestHeight = p.heights[j];
+                }
+            }
+        }
+
+        if (best < 0) {
+            // no peaks found
+            flt.fc   = f[(minFcIx + maxFcIx) / 2];
+            flt.q    = Math.sqrt(2);
+            flt.gain = 0.0;
+            return;
+        }
+        flt.fc = clip(f[best], flt.minFc, flt.maxFc);
+        // bandwidth matching the peak width
+        double fStep = Math.log(f[1] / f[0]) / Math.log(2);
+        double bw = fStep * bestWidth;
+        flt.q = clip(Math.sqrt(Math.pow(2, bw)) / (Math.pow(2, bw) - 1), flt.minQ, flt.maxQ);
+        flt.gain = clip(target[best] > 0 ? bestHeight : -bestHeight, flt.minGain, flt.maxGain);
+    }
+
+    private int paramCount() {
+        int n = 0;
+        for (Filter flt : filters) {
+            if (flt.optFc) n++;
+            if (flt.optQ) n++;
+            if (flt.optGain) n++;
+        }
+        return n;
+    }
+
+    /** Parameters in optimizer order (log10 fc, q, gain per filter), with their bounds. */
+    private void readParams(double[] p, double[] lo, double[] hi) {
+        int i = 0;
+        for (Filter flt : filters) {
+            if (flt.optFc) {
+                p[i] = Math.log10(flt.fc);
+                lo[i] = Math.log10(flt.minFc);
+                hi[i] = Math.log10(flt.maxFc);
+                i++;
+            }
+            if (flt.optQ) {
+                p[i] = flt.q; lo[i] = flt.minQ; hi[i] = flt.maxQ;
+                i++;
+            }
+            if (flt.optGain) {
+                p[i] = flt.gain; lo[i] = flt.minGain; hi[i] = flt.maxGain;
+                i++;
+            }
+        }
+    }
+
+    /** PEQ._parse_optimizer_params */
+    private void writeParams(double[] p) {
+        int i = 0;
+        for (Filter flt : filters) {
+            if (flt.optFc) flt.fc = Math.pow(10, p[i++]);
+            if (flt.optQ) flt.q = p[i++];
+            if (flt.optGain) flt.gain = p[i++];
+        }
+        refreshAll();
+    }
+
+    /** Forward-difference gradient, probing one filter at a time. */
+    private void gradient(double[] p, double[] lo, double[] hi, double baseLoss, double[] g) {
+        int i = 0;
+        for (int k = 0; k < filters.length; k++) {
+            Filter flt = filters[k];
+            for (int which = 0; which < 3; which++) {
+                boolean opt = which == 0 ? flt.optFc : which == 1 ? flt.optQ : flt.optGain;
+                if (!opt) continue;
+                double h = 1e-6 * (hi[i] - lo[i]);
+                if (p[i] + h > hi[i]) h = -h;
+                double fc = flt.fc, q = flt.q, gain = flt.gain;
+                if (which == 0) flt.fc = Math.pow(10, p[i] + h);
+                else if (which == 1) flt.q = p[i] + h;
+                else flt.gain = p[i] + h;
+                updateFr(flt, trialFr);
+                double pen = sharpnessPenalty(flt, trialFr);
+                flt.fc = fc; flt.q = q; flt.gain = gain;
+                g[i] = (loss(k, trialFr, pen) - baseLoss) / h;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Bound-constrained quasi-Newton (projected L-BFGS) in place of scipy's fmin_slsqp, stopped
+     * with the same loss-history rules as PEQ._callback. Best parameters seen are restored.
+     * deadlineNs is a System.nanoTime() value, 0 for none.
+     */
+    private void run(Options opt, long deadlineNs) {
+        initFilters();
+        int n = paramCount();
+        if (n == 0) {
+            refreshAll();
+            return;
+        }
+        double[] p = new double[n], lo = new double[n], hi = new double[n];
+        readParams(p, lo, hi);
+        refreshAll();
+
+        double[] g = new double[n], gNew = new double[n], d = new double[n], trial = new double[n];
+        double[][] sHist = new double[LBFGS_MEMORY][], yHist = new double[LBFGS_MEMORY][];
+        double[] rho = new double[LBFGS_MEMORY];
+        int mem = 0, head = 0;
+
+        double loss = loss(-1, null, 0);
+        double bestLoss = loss;
+        double[] best = p.clone();
+        List<Double> history = new ArrayList<>();
+        gradient(p, lo, hi, loss, g);
+
+        for (int iter = 0; iter < MAX_ITERATIONS; iter++) {
+            // variables pinned at a bound with the gradient pushing outward stay fixed
+            boolean[] free = new boolean[n];
+            for (int j = 0; j < n; j++) {
+                free[j] = !((p[j] <= lo[j] && g[j] > 0) || (p[j] >= hi[j] && g[j] < 0));
+                d[j] = free[j] ? -g[j] : 0.0;
+            }
+            // L-BFGS two-loop recursion on the free subspace
+            double[] alpha = new double[LBFGS_MEMORY];
+            for (int m = 0; m < mem; m++) {
+                int idx = (head - 1 - m + LBFGS_MEMORY) % LBFGS_MEMORY;
+                alpha[idx] = rho[idx] * dot(sHist[idx], d, free);
+                axpy(-alpha[idx], yHist[idx], d, free);
+            }
+            if (mem > 0) {
+                int last = (head - 1 + LBFGS_MEMORY) % LBFGS_MEMORY;
+                double gamma = dot(sHist[last], yHist[last], free) / dot(yHist[last], yHist[last], free);
+                if (gamma > 0 && !Double.isInfinite(gamma)) {
+                    for (int j = 0; j < n; j++) d[j] *= gamma;
+                }
+            }
+            for (int m = mem - 1; m >= 0; m--) {
+                int idx = (head - 1 - m + LBFGS_MEMORY) % LBFGS_MEMORY;
+                double beta = rho[idx] * dot(yHist[idx], d, free);
+                axpy(alpha[idx] - beta, sHist[idx], d, free);
+            }
+            double slope = dot(g, d, free);
+            if (!(slope < 0)) {
+                // not a descent direction, fall back to steepest descent
+                mem = 0;
+                for (int j = 0; j < n; j++) d[j] = free[j] ? -g[j] : 0.0;
+                slope = dot(g, d, free);
+                if (!(slope < 0)) break;
+            }
+
+            // backtracking line search on the projected path
+            double step = 1.0;
+            if (mem == 0) {
+                double dMax = 0;
+                for (int j = 0; j < n; j++) dMax = Math.max(dMax, Math.abs(d[j]) / (hi[j] - lo[j]));
+                if (dMax > 0) step = Math.min(1.0, 0.1 / dMax);
+            }
+            double trialLoss = Double.NaN;
+            boolean accepted = false;
+            for (int ls = 0; ls < 30; ls++) {
+                double decrease = 0;
+                for (int j = 0; j < n; j++) {
+                    trial[j] = clip(p[j] + step * d[j], lo[j], hi[j]);
+                    decrease += g[j] * (trial[j] - p[j]);
+                }
+                writeParams(trial);
+                trialLoss = loss(-1, null, 0);
+                if (trialLoss <= loss + 1e-4 * decrease) {
+                    accepted = true;
+                    break;
+                }
+                step *= 0.5;
+            }
+            if (!accepted) {
+                writeParams(p);
+                if (mem == 0) break;
+                mem = 0;
+                continue;
+            }
+
+            gradient(trial, lo, hi, trialLoss, gNew);
+            double[] s = new double[n], y = new double[n];
+            for (int j = 0; j < n; j++) {
+                s[j] = trial[j] - p[j];
+                y[j] = gNew[j] - g[j];
+            }
+            double sy = dot(s, y, null);
+            if (sy > 1e-12) {
+                sHist[head] = s;
+                yHist[head] = y;
+                rho[head]   = 1.0 / sy;
+                head = (head + 1) % LBFGS_MEMORY;
+                mem  = Math.min(mem + 1, LBFGS_MEMORY);
+            }
+            System.arraycopy(trial, 0, p, 0, n);
+            System.arraycopy(gNew, 0, g, 0, n);
+            loss = trialLoss;
+            if (loss < bestLoss) {
+                bestLoss = loss;
+                best = p.clone();
+            }
+            history.add(loss);
+            if (converged(history)) break;
+            if (opt.targetLoss > 0 && bestLoss <= opt.targetLoss) break;
+            if (deadlineNs != 0 && System.nanoTime() - deadlineNs >= 0) break;
+            if (opt.progress != null && (iter + 1) % opt.reportEvery == 0
+                    && !report(opt.progress, iter + 1, bestLoss, best, p)) {
+                break;
+            }
+        }
+        writeParams(best);
+    }
+
+    /** Hands best to the listener, then restores the current point p. */
+    private boolean report(Progress progress, int iterations, double bestLoss, double[] best, double[] p) {
+        writeParams(best);
+        AutoEQResult snapshot = result();
+        writeParams(p);
+        return progress.onProgress(iterations, bestLoss, snapshot);
+    }
+
+    /** PEQ._callback stopping rule on the standard deviation of recent losses. */
+    private static boolean converged(List<Double> history) {
+        int len = history.size();
+        if (len > STD_N && std(history, STD_N) < MIN_STD) return true;
+        return len > STD_N / 2 && std(history, STD_N / 2) < MIN_STD / 2;
+    }
+
+    private static double std(List<Double> values, int lastN) {
+        int from = Math.max(0, values.size() - lastN);
+        int n = values.size() - from;
+        double mean = 0;
+        for (int i = from; i < values.size(); i++) mean += values.get(i);
+        mean /= n;
+        double var = 0;
+        for (int i = from; i < values.size(); i++) {
+            double d = values.get(i) - mean;
+            var += d * d;
+        }
+        return Math.sqrt(var / n);
+    }
+
+    /** Bands in config order, preamp = -max(cascade response) as in write_eqapo_parametric_eq. */
+    private AutoEQResult result() {
+        List<PEQBand> bands = new ArrayList<>(filters.length);
+        for (Filter flt : filters) {
+            bands.add(new PEQBand(flt.type, flt.fc, flt.q, flt.gain));
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (double v : sumFr) max = Math.max(max, v);
+        return new AutoEQResult(-max, bands);
+    }
+
+    // Small helpers
+
+    private static int argMinAbs(double[] xs, double x) {
+        int best = 0;
+        for (int i = 1; i < xs.length; i++) {
+            if (Math.abs(xs[i] - x) < Math.abs(xs[best] - x)) best = i;
+        }
+        return best;
+    }
+
+    private static double clip(double v, double lo, double hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+
+    private static double dot(double[] a, double[] b, boolean[] mask) {
+        double s = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (mask == null || mask[i]) s += a[i] * b[i];
+        }
+        return s;
+    }
+
+    private static void axpy(double a, double[] x, double[] y, boolean[] mask) {
+        for (int i = 0; i < y.length; i++) {
+            if (mask[i]) y[i] += a * x[i];
+        }
+    }
+
+    /** Minimal scipy.signal.find_peaks: local maxima with prominence and half-prominence width. */
+    static final class Peaks {
+        final int[] indices;
+        final double[] heights, prominences, widths;
+
+        private Peaks(int[] indices, double[] heights, double[] prominences, double[] widths) {
+            this.indices     = indices;
+            this.heights     = heights;
+            this.prominences = prominences;
+            this.widths      = widths;
+        }
+
+        static Peaks find(double[] x, double minProminence) {
+            int N = x.length;
+            int[] idx = new int[N];
+            double[] hts = new double[N], proms = new double[N], wds = new double[N];
+            int[] bases = new int[2];
+            int count = 0;
+            int i = 1;
+            while (i < N - 1) {
+                if (x[i - 1] < x[i]) {
+                    // plateaus resolve to their middle sample
+                    int ahead = i + 1;
+                    while (ahead < N - 1 && x[ahead] == x[i]) ahead++;
+                    if (x[ahead] < x[i]) {
+                        int peak = (i + ahead - 1) / 2;
+                        double prom = prominence(x, peak, bases);
+                        if (prom >= minProminence) {
+                            idx[count]   = peak;
+                            hts[count]   = x[peak];
+                            proms[count] = prom;
+                            wds[count]   = width(x, peak, prom, bases);
+                            count++;
+                        }
+                        i = ahead;
+                        continue;
+                    }
+                }
+                i++;
+            }
+            return new Peaks(Arrays.copyOf(idx, count), Arrays.copyOf(hts, count),
+                    Arrays.copyOf(proms, count), Arrays.copyOf(wds, count));
+        }
+
+        /** Prominence of a peak; bases receives the {left, right} base indices. */
+        private static double prominence(double[] x, int peak, int[] bases) {
+            double leftMin = x[peak];
+            bases[0] = peak;
+            for (int i = peak; i >= 0 && x[i] <= x[peak]; i--) {
+                if (x[i] <= leftMin) { leftMin = x[i]; bases[0] = i; }
+            }
+            double rightMin = x[peak];
+            bases[1] = peak;
+            for (int i = peak; i < x.length && x[i] <= x[peak]; i++) {
+                if (x[i] <= rightMin) { rightMin = x[i]; bases[1] = i; }
+            }
+            return x[peak] - Math.max(leftMin, rightMin);
+        }
+
+        /** Width at half prominence with linear interpolation, between the prominence bases. */
+        private static double width(double[] x, int peak, double prom, int[] bases) {
+            double h = x[peak] - prom * 0.5;
+            int i = peak;
+            while (bases[0] < i && h < x[i]) i--;
+            double leftIp = i;
+            if (x[i] < h) leftIp += (h - x[i]) / (x[i + 1] - x[i]);
+            i = peak;
+            while (i < bases[1] && h < x[i]) i++;
+            double rightIp = i;
+            if (x[i] < h) rightIp -= (h - x[i]) / (x[i - 1] - x[i]);
+            return rightIp - leftIp;
+        }
+    }
+
+    /** scipy.signal.savgol_filter with mode='interp' (edges use the window's polynomial fit). */
+    static final class SavitzkyGolay {
+        private SavitzkyGolay() {}
+
+        static double[] filter(double[] x, int window, int polyOrder) {
+            int N = x.length;
+            if (window > N) window = (N % 2 == 0) ? N - 1 : N;
+            int m = window / 2;
+            double[][] H = projection(window, polyOrder);
+            double[] out = new double[N];
+            for (int j = m; j < N - m; j++) {
+                double s = 0;
+                for (int k = 0; k < window; k++) s += H[m][k] * x[j - m + k];
+                out[j] = s;
+            }
+            int tail = N - window;
+            for (int j = 0; j < m; j++) {
+                double sl = 0, sr = 0;
+                for (int k = 0; k < window; k++) {
+                    sl += H[j][k] * x[k];
+                    sr += H[window - m + j][k] * x[tail + k];
+                }
+                out[j] = sl;
+                out[N - m + j] = sr;
+            }
+            return out;
+        }
+
+        /** Hat matrix A (A^T A)^-1 A^T of a polynomial fit over positions -m..m. */
+        static double[][] projection(int window, int polyOrder) {
+            int m = window / 2, P = polyOrder + 1;
+            double[][] A = new double[window][P];
+            for (int i = 0; i < window; i++) {
+                double v = 1, t = i - m;
+                for (int k = 0; k < P; k++) { A[i][k] = v; v *= t; }
+            }
+            // normal matrix augmented with A^T, solved by Gauss-Jordan
+            double[][] M = new double[P][P + window];
+            for (int r = 0; r < P; r++) {
+                for (int c = 0; c < P; c++) {
+                    double s = 0;
+                    for (int i = 0; i < window; i++) s += A[i][r] * A[i][c];
+                    M[r][c] = s;
+                }
+                for (int i = 0; i < window; i++) M[r][P + i] = A[i][r];
+            }
+            for (int col = 0; col < P; col++) {
+                int piv = col;
+                for (int r = col + 1; r < P; r++) {
+                    if (Math.abs(M[r][col]) > Math.abs(M[piv][col])) piv = r;
+                }
+                double[] tmp = M[col]; M[col] = M[piv]; M[piv] = tmp;
+                double d = M[col][col];
+                for (int c = 0; c < P + window; c++) M[col][c] /= d;
+                for (int r = 0; r < P; r++) {
+                    if (r == col) continue;
+                    double fct = M[r][col];
+                    for (int c = 0; c < P + window; c++) M[r][c] -= fct * M[col][c];
+                }
+            }
+            double[][] H = new double[window][window];
+            for (int i = 0; i < window; i++) {
+                for (int j = 0; j < window; j++) {
+                    double s = 0;
+                    for (int k = 0; k < P; k++) s += A[i][k] * M[k][P + j];
+                    H[i][j] = s;
+                }
+            }
+            return H;
+        }
+    }
+}
@@ -4,8 +4,8 @@ import java.io.*;
 import java.util.*;
 import java.util.Locale;
 import java.util.Arrays;
-import org.apache.commons.math3.complex.Complex;
 import com.ece420_parametric_eq.models.PEQBand;
+import com.ece420_parametric_eq.models.StageMetrics;
 
 /**
  * Utility methods for parsing AutoEQ output and computing parametric EQ filters in Java.
@@ -18,10 +18,20 @@ public class ParametricEQUtils {
     public static class AutoEQResult {
         public final double preampDb;
         public final List<PEQBand> bands;
+        public final StageMetrics metrics;   // EMPTY unless PipelineMetrics is on
 
         public AutoEQResult(double preampDb, List<PEQBand> bands) {
+            this(preampDb, bands, StageMetrics.EMPTY);
+        }
+
+        public AutoEQResult(double preampDb, List<PEQBand> bands, StageMetrics metrics) {
             this.preampDb = preampDb;
             this.bands = bands;
+            this.metrics = metrics;
+        }
+
+        public AutoEQResult withMetrics(StageMetrics metrics) {
+            return new AutoEQResult(preampDb, bands, metrics);
         }
     }
 
@@ -100,126 +110,95 @@ public class ParametricEQUtils {
      * @return [0]=frequencies[], [1]=dB values[]
      */
     public static double[][] loadFrequencyResponse(File txtFile) throws IOException {
-        List<Double> freqs = new ArrayList<>(), dbs = new ArrayList<>();
+        double[] fArr = new double[256], dArr = new double[256];
+        int n = 0;
         try (BufferedReader rd = new BufferedReader(new FileReader(txtFile))) {
             String line;
             while ((line = rd.readLine()) != null) {
                 String[] p = line.trim().split("[,\\s]+");
                 if (p.length < 2) continue;
                 try {
-                    freqs.add(Double.parseDouble(p[0]));
-                    dbs.add(Double.parseDouble(p[1]));
+                    double f = Double.parseDouble(p[0]);
+                    double d = Double.parseDouble(p[1]);
+                    if (n == fArr.length) {
+                        fArr = Arrays.copyOf(fArr, 2 * n);
+                        dArr = Arrays.copyOf(dArr, 2 * n);
+                    }
+                    fArr[n] = f;
+                    dArr[n] = d;
+                    n++;
                 } catch (NumberFormatException ignored) {}
             }
         }
-        double[] fArr = freqs.stream().mapToDouble(d -> d).toArray();
-        double[] dArr = dbs.stream().mapToDouble(d -> d).toArray();
-        return new double[][] { fArr, dArr };
-    }
-
-    /**
-     * Compute the frequency-response (dB) of a peaking filter.
-     */
-    private static double[] peakingResponse(double[] freqs, double fc, double Q, double gainDb, double fs) {
-        int N = freqs.length;
-        double[] resp = new double[N];
-        double G = Math.pow(10, gainDb / 20.0);
-        double B = fc / Q;
-        for (int i = 0; i < N; i++) {
-            double f = freqs[i];
-            double w = 2 * Math.PI * f / fs;
-            double wc = 2 * Math.PI * fc / fs;
-            Complex zInv = new Complex(Math.cos(w), -Math.sin(w));
-            Complex zInv2 = zInv.multiply(zInv);
-            double sqrtG = Math.sqrt(G);
-            double tanB2 = Math.tan((B / 2) * (Math.PI / fs));
-            double cosWc = Math.cos(wc);
-            Complex num = new Complex(sqrtG + G * tanB2, 0)
-                    .subtract(zInv.multiply(2 * sqrtG * cosWc))
-                    .add(zInv2.multiply(sqrtG - G * tanB2));
-            Complex den = new Complex(sqrtG + tanB2, 0)
-                    .subtract(zInv.multiply(2 * sqrtG * cosWc))
-                    .add(zInv2.multiply(sqrtG - tanB2));
-            resp[i] = 20 * Math.log10(num.divide(den).abs() + 1e-12);
-        }
-        return resp;
+        return new double[][] { Arrays.copyOf(fArr, n), Arrays.copyOf(dArr, n) };
     }
 
     /**
-     * Compute the frequency-response (dB) of a low-shelf filter.
+     * RBJ cookbook biquad coefficients for one band, same formulas as peq.py biquad_coefficients.
+     * Written into out as {b0, b1, b2, a1, a2}, normalized so that a0 = 1.
      */
-    private static double[] lowShelfResponse(double[] freqs, double fc, double Q, double gainDb, double fs) {
-        int N = freqs.length;
-        double[] resp = new double[N];
-        double G = Math.pow(10, gainDb / 20.0);
-        double Gs = Math.sqrt(G);
-        double omega_c = Math.tan((2 * Math.PI * fc / fs) / 2);
-        double omega2 = omega_c * omega_c;
-        double omegaG = Math.sqrt(2) * omega_c * Math.pow(G, 0.25);
-        for (int i = 0; i < N; i++) {
-            double w = 2 * Math.PI * freqs[i] / fs;
-            Complex zInv = new Complex(Math.cos(w), -Math.sin(w));
-            Complex zInv2 = zInv.multiply(zInv);
-            Complex num = new Complex(Gs * omega2 + omegaG + 1, 0)
-                    .add(zInv.multiply(2 * (Gs * omega2 - 1)))
-                    .add(zInv2.multiply(Gs * omega2 - omegaG + 1));
-            Complex den = new Complex(Gs + omegaG + omega2, 0)
-                    .add(zInv.multiply(2 * (omega2 - Gs)))
-                    .add(zInv2.multiply(Gs - omegaG + omega2));
-            resp[i] = 20 * Math.log10(num.divide(den).multiply(Gs).abs() + 1e-12);
+    public static void biquadCoefficients(PEQBand.Type type, double fc, double Q, double gainDb,
+                                          double fs, double[] out) {
+        double a     = Math.pow(10, gainDb / 40.0);
+        double w0    = 2 * Math.PI * fc / fs;
+        double cosW0 = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2 * Q);
+        double b0, b1, b2, a0, a1, a2;
+        switch (type) {
+            case LOW_SHELF: {
+                double sqA2 = 2 * Math.sqrt(a) * alpha;
+                a0 = (a + 1) + (a - 1) * cosW0 + sqA2;
+                a1 = -2 * ((a - 1) + (a + 1) * cosW0);
+                a2 = (a + 1) + (a - 1) * cosW0 - sqA2;
+                b0 = a * ((a + 1) - (a - 1) * cosW0 + sqA2);
+                b1 = 2 * a * ((a - 1) - (a + 1) * cosW0);
+                b2 = a * ((a + 1) - (a - 1) * cosW0 - sqA2);
+                break;
+            }
+            case HIGH_SHELF: {
+                double sqA2 = 2 * Math.sqrt(a) * alpha;
+                a0 = (a + 1) - (a - 1) * cosW0 + sqA2;
+                a1 = 2 * ((a - 1) - (a + 1) * cosW0);
+                a2 = (a + 1) - (a - 1) * cosW0 - sqA2;
+                b0 = a * ((a + 1) + (a - 1) * cosW0 + sqA2);
+                b1 = -2 * a * ((a - 1) + (a + 1) * cosW0);
+                b2 = a * ((a + 1) + (a - 1) * cosW0 - sqA2);
+                break;
+            }
+            default:
+                a0 = 1 + alpha / a;
+                a1 = -2 * cosW0;
+                a2 = 1 - alpha / a;
+                b0 = 1 + alpha * a;
+                b1 = -2 * cosW0;
+                b2 = 1 - alpha * a;
         }
-        return resp;
+        out[0] = b0 / a0;
+        out[1] = b1 / a0;
+        out[2] = b2 / a0;
+        out[3] = a1 / a0;
+        out[4] = a2 / a0;
     }
 
     /**
-     * Compute the frequency-response (dB) of a high-shelf filter.
+     * Magnitude (dB) of a normalized biquad {b0, b1, b2, a1, a2} at phi = 4*sin^2(w/2).
+     * Same closed form peq.py uses in PEQFilter.fr.
      */
-    private static double[] highShelfResponse(double[] freqs, double fc, double Q, double gainDb, double fs) {
-        int N = freqs.length;
-        double[] resp = new double[N];
-        double G = Math.pow(10, gainDb / 20.0);
-        double Gs = Math.sqrt(G);
-        double omega_c = Math.tan((2 * Math.PI * fc / fs) / 2);
-        double omega2 = omega_c * omega_c;
-        double omegaG = Math.sqrt(2) * omega_c * Math.pow(G, 0.25);
-        for (int i = 0; i < N; i++) {
-            double w = 2 * Math.PI * freqs[i] / fs;
-            Complex zInv = new Complex(Math.cos(w), -Math.sin(w));
-            Complex zInv2 = zInv.multiply(zInv);
-            Complex num = new Complex(Gs + omegaG + omega2, 0)
-                    .subtract(zInv.multiply(2 * (Gs - omega2)))
-                    .add(zInv2.multiply(Gs - omegaG + omega2));
-            Complex den = new Complex(Gs * omega2 + omegaG + 1, 0)
-                    .add(zInv.multiply(2 * (Gs * omega2 - 1)))
-                    .add(zInv2.multiply(Gs * omega2 - omegaG + 1));
-            resp[i] = 20 * Math.log10(num.divide(den).multiply(Gs).abs() + 1e-12);
-        }
-        return resp;
+    static double biquadMagnitudeDb(double[] c, double phi) {
+        double b0 = c[0], b1 = c[1], b2 = c[2], a1 = c[3], a2 = c[4];
+        double bs = b0 + b1 + b2, as = 1 + a1 + a2;
+        double num = bs * bs + (b0 * b2 * phi - (b1 * (b0 + b2) + 4 * b0 * b2)) * phi;
+        double den = as * as + (a2 * phi - (a1 * (1 + a2) + 4 * a2)) * phi;
+        return 10 * Math.log10(num / den);
     }
 
     /**
      * Cascade all bands to compute the final EQ'd response.
+     * Callers that redraw repeatedly on the same axis should keep a BiquadResponseEngine instead.
      */
     public static double[] computeCombinedEQ(double[] freqs, double[] rawDb, List<PEQBand> bands, double fs) {
-        int N = freqs.length;
-        double[] netLin = new double[N];
-        Arrays.fill(netLin, 1.0);
-        for (PEQBand band : bands) {
-            double[] bandDb;
-            switch (band.type) {
-                case LOW_SHELF:  bandDb = lowShelfResponse(freqs, band.fc, band.Q, band.gainDb, fs); break;
-                case HIGH_SHELF: bandDb = highShelfResponse(freqs, band.fc, band.Q, band.gainDb, fs); break;
-                default: bandDb = peakingResponse(freqs, band.fc, band.Q, band.gainDb, fs);
-            }
-            for (int i = 0; i < N; i++) {
-                netLin[i] *= Math.pow(10, bandDb[i] / 20.0);
-            }
-        }
-        double[] eqedDb = new double[N];
-        for (int i = 0; i < N; i++) {
-            double eqCurve = 20 * Math.log10(netLin[i] + 1e-12);
-            eqedDb[i] = rawDb[i] + eqCurve;
-        }
+        double[] eqedDb = new double[freqs.length];
+        new BiquadResponseEngine(freqs, fs).applyEq(rawDb, bands, 0.0, eqedDb);
         return eqedDb;
     }
 
@@ -0,0 +1,244 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.models.StageMetrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Stage timers, counters and byte gauges for one measurement session, from Java and from
+ * native code (metrics.h, pulled in with DSPProcessor.drainMetrics). Both sides stamp events
+ * with the monotonic clock, so they merge into a single timeline that can be summarised as
+ * StageMetrics or written out in Chrome trace format (chrome://tracing, ui.perfetto.dev).
+ *
+ * Off by default. While disabled, begin() returns a shared no-op span and the other calls
+ * return after one volatile read, so the instrumentation can stay in the hot paths.
+ */
+public final class PipelineMetrics {
+    public static final String TAG = "PipelineMetrics";
+    public static final String TRACE_FILE = "trace.json";
+
+    // same values as metrics::Kind
+    static final int SPAN = 0, COUNTER = 1, GAUGE = 2;
+
+    // a long session drops its newest events rather than grow without bound
+    private static final int MAX_EVENTS = 16384;
+
+    private static final class Event {
+        final int kind;
+        final boolean nativeSide;
+        final String name;
+        final long startNs, durNs;
+        final long tid;
+        final String thread;   // null for native events
+        final long value;
+
+        Event(int kind, boolean nativeSide, String name, long startNs, long durNs,
+              long tid, String thread, long value) {
+            this.kind       = kind;
+            this.nativeSide = nativeSide;
+            this.name       = name;
+            this.startNs    = startNs;
+            this.durNs      = durNs;
+            this.tid        = tid;
+            this.thread     = thread;
+            this.value      = value;
+        }
+    }
+
+    /** Times from begin() to close(); use with try-with-resources. */
+    public static final class Span implements AutoCloseable {
+        private static final Span NOOP = new Span(null, 0);
+
+        private final String name;
+        private final long startNs;
+
+        private Span(String name, long startNs) {
+            this.name    = name;
+            this.startNs = startNs;
+        }
+
+        @Override
+        public void close() {
+            if (name != null) span(name, startNs, System.nanoTime());
+        }
+    }
+
+    private static volatile boolean enabled;
+    private static final List<Event> events = new ArrayList<>();
+
+    private PipelineMetrics() {}
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Java side only; pair with DSPProcessor.setMetricsEnabled for the native stages. */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+        if (!on) startSession();
+    }
+
+    /** Drops everything recorded so far, e.g. when a new recording starts. */
+    public static void startSession() {
+        synchronized (events) {
+            events.clear();
+        }
+    }
+
+    public static Span begin(String name) {
+        return enabled ? new Span(name, System.nanoTime()) : Span.NOOP;
+    }
+
+    /** A stage timed by the caller, e.g. one that starts and ends on different threads. */
+    public static void span(String name, long startNs, long endNs) {
+        if (enabled) record(SPAN, false, name, startNs, endNs - startNs, 0);
+    }
+
+    public static void count(String name, long delta) {
+        if (enabled) record(COUNTER, false, name, System.nanoTime(), 0, delta);
+    }
+
+    public static void gaugeBytes(String name, long bytes) {
+        if (enabled) record(GAUGE, false, name, System.nanoTime(), 0, bytes);
+    }
+
+    private static void record(int kind, boolean nativeSide, String name, long startNs, long durNs,
+                               long value) {
+        Thread t = Thread.currentThread();
+        add(new Event(kind, nativeSide, name, startNs, durNs, t.getId(), t.getName(), value));
+    }
+
+    private static void add(Event e) {
+        synchronized (events) {
+            if (events.size() < MAX_EVENTS) events.add(e);
+        }
+    }
+
+    // called from DSPProcessor.drainMetrics for each buffered native event
+    static void nativeEvent(int kind, String name, long startNs, long durNs, long tid, long value) {
+        if (enabled) add(new Event(kind, true, name, startNs, durNs, tid, null, value));
+    }
+
+    /** Position in the session; since(mark()) later covers only what was recorded after it. */
+    public static int mark() {
+        synchronized (events) {
+            return events.size();
+        }
+    }
+
+    /** Everything recorded this session. */
+    public static StageMetrics snapshot() {
+        return since(0);
+    }
+
+    /** Totals over the events recorded after mark, from every thread. */
+    public static StageMetrics since(int mark) {
+        Map<String, Long>    nanos    = new TreeMap<>();
+        Map<String, Integer> calls    = new TreeMap<>();
+        Map<String, Long>    counters = new TreeMap<>();
+        Map<String, Long>    peaks    = new TreeMap<>();
+        synchronized (events) {
+            for (int i = Math.min(mark, events.size()); i < events.size(); i++) {
+                Event e = events.get(i);
+                String key = e.nativeSide ? "native." + e.name : e.name;
+                switch (e.kind) {
+                    case SPAN:
+                        nanos.merge(key, e.durNs, Long::sum);
+                        calls.merge(key, 1, Integer::sum);
+                        break;
+                    case COUNTER:
+                        counters.merge(key, e.value, Long::sum);
+                        break;
+                    case GAUGE:
+                        peaks.merge(key, e.value, Math::max);
+                        break;
+                }
+            }
+        }
+        return new StageMetrics(nanos, calls, counters, peaks);
+    }
+
+    public static void writeChromeTrace(File file) throws IOException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writeChromeTrace(w);
+        }
+    }
+
+    /**
+     * The session as a Chrome trace: spans are complete ("X") events, counters plot their
+     * running total and gauges their byte value ("C"). Java threads appear under pid 1 by
+     * thread id, native threads under pid 2 by kernel tid.
+     */
+    public static void writeChromeTrace(Writer w) throws IOException {
+        List<Event> all;
+        synchronized (events) {
+            all = new ArrayList<>(events);
+        }
+        all.sort(Comparator.comparingLong(e -> e.startNs));
+        long t0 = all.isEmpty() ? 0 : all.get(0).startNs;
+
+        w.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+        w.write("{\"ph\":\"M\",\"name\":\"process_name\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"java\"}},\n");
+        w.write("{\"ph\":\"M\",\"name\":\"process_name\",\"pid\":2,\"tid\":0,\"args\":{\"name\":\"native\"}}");
+
+        Set<Long> namedThreads = new HashSet<>();
+        Map<String, Long> totals = new HashMap<>();
+        for (Event e : all) {
+            int pid = e.nativeSide ? 2 : 1;
+            if (e.thread != null && namedThreads.add(e.tid)) {
+                w.write(String.format(Locale.US,
+                        ",\n{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":\"%s\"}}",
+                        e.tid, escape(e.thread)));
+            }
+            double ts = (e.startNs - t0) / 1e3;
+            switch (e.kind) {
+                case SPAN:
+                    w.write(String.format(Locale.US,
+                            ",\n{\"ph\":\"X\",\"name\":\"%s\",\"pid\":%d,\"tid\":%d,\"ts\":%.3f,\"dur\":%.3f}",
+                            escape(e.name), pid, e.tid, ts, e.durNs / 1e3));
+                    break;
+                case COUNTER: {
+                    String key = pid + e.name;
+                    long total = totals.merge(key, e.value, Long::sum);
+                    w.write(String.format(Locale.US,
+                            ",\n{\"ph\":\"C\",\"name\":\"%s\",\"pid\":%d,\"ts\":%.3f,\"args\":{\"total\":%d}}",
+                            escape(e.name), pid, ts, total));
+                    break;
+                }
+                case GAUGE:
+                    w.write(String.format(Locale.US,
+                            ",\n{\"ph\":\"C\",\"name\":\"%s\",\"pid\":%d,\"ts\":%.3f,\"args\":{\"bytes\":%d}}",
+                            escape(e.name), pid, ts, e.value));
+                    break;
+            }
+        }
+        w.write("\n]}\n");
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < ' ') sb.append(String.format(Locale.US, "\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -21,15 +21,11 @@ import com.jjoe64.graphview.series.DataPoint;
 import com.jjoe64.graphview.series.LineGraphSeries;
 import android.graphics.Color;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.Locale;
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
 public class ProcessActivity extends Activity {
     private Spinner spinnerProfile;
@@ -38,13 +34,35 @@ public class ProcessActivity extends Activity {
     private ToggleButton btnNormalize;
     private TextView titleText;
 
+    // points on the log axis when the WAV has to be processed here
+    private static final int PLOT_POINTS = 480;
+
+    private static final String JOB_PROCESS = "process.measure";
+    private static final String JOB_TARGET  = "process.target";
+    private static final String JOB_SAVE    = "process.save";
+
+    /** Output of the background processing job. */
+    private static final class Measurement {
+        final AnalysisResult result;
+        final float[] xLog;
+        final File sessionFile;
+
+        Measurement(AnalysisResult result, float[] xLog, File sessionFile) {
+            this.result      = result;
+            this.xLog        = xLog;
+            this.sessionFile = sessionFile;
+        }
+    }
+
     // Measured arrays
     private float[] measuredFreqs, measuredRawDb, measuredSmthDb;
     // for CSV file
     private float[] csvFreqs, csvDb;
+    // log10 x-values, computed once per data set rather than per redraw
+    private float[] xLogMeasured, xLogTarget;
 
     private String[] profileNames = { "Harman", "B&K", "THX" };
-    private String[] profileFiles = { "harman.csv", "bk.csv", "thx.csv" };
+    private String[] profileFiles = TargetCurveRegistry.BUNDLED;
     private int selectedProfileIndex = 0;
 
     @Override
@@ -72,9 +90,6 @@ public class ProcessActivity extends Activity {
                 selectedProfileIndex = pos;
                 titleText.setText(profileNames[pos]);
                 loadTargetFromCSV(profileFiles[pos]);
-                if (measuredFreqs != null) {
-                    plotGraphs(btnNormalize.isChecked());
-                }
             }
             @Override public void onNothingSelected(AdapterView<?> parent) {}
         });
@@ -107,20 +122,29 @@ public class ProcessActivity extends Activity {
         btnNormalize.setOnCheckedChangeListener((button, isChecked) -> plotGraphs(isChecked));
 
         btnNext.setOnClickListener(v -> {
+            if (measuredFreqs == null || csvFreqs == null) {
+                Toast.makeText(this, "Process the recording first", Toast.LENGTH_SHORT).show();
+                return;
+            }
             // Compute raw MSE *before* launching EQ screen
-            float rawMse = computeMSE(
+            float rawMse = ResponseScore.mse(
                     measuredFreqs,
                     measuredSmthDb,   // or measuredRawDb if you prefer
                     csvFreqs,
                     csvDb
             );
 
-            // intent and attach extras
+            // EqActivity reads measurement and target from SessionStore; the file is only
+            // there in case the process is restarted in between
             File dir = getExternalFilesDir(null);
-            String frPath = new File(dir, "FR.txt").getAbsolutePath();
+            if (dir != null) {
+                File session = new File(dir, SessionStore.FILE_NAME);
+                JobExecutor.shared().submit(JOB_SAVE, ctx -> {
+                    SessionStore.save(session);
+                    return session;
+                }, f -> {});
+            }
             Intent intent = new Intent(ProcessActivity.this, EqActivity.class);
-            intent.putExtra("fr_path", frPath);
-            intent.putExtra("target_csv_path", profileFiles[selectedProfileIndex]);
             intent.putExtra("raw_mse", rawMse);
 
             // Start EQActivity
@@ -134,98 +158,150 @@ public class ProcessActivity extends Activity {
             Toast.makeText(this, "No WAV path found!", Toast.LENGTH_SHORT).show();
             return;
         }
-
-        float[] audioSamples = DataStore.readWavAsFloatArray(wavPath);
-        if (audioSamples == null || audioSamples.length == 0) {
-            Toast.makeText(this, "Failed to read WAV file", Toast.LENGTH_SHORT).show();
+        File dir = getExternalFilesDir(null);
+        if (dir == null) {
+            Toast.makeText(this, "Cannot access storage", Toast.LENGTH_SHORT).show();
             return;
         }
 
+        CharSequence label = btnProcess.getText();
+        btnProcess.setEnabled(false);
+        JobExecutor.shared().submit(JOB_PROCESS, ctx -> {
+            // deconvolved while recording; fall back to the full WAV otherwise
+            AnalysisResult res = DataStore.getStreamedResult(wavPath);
+            if (res == null) {
+                res = processWav(wavPath, ctx);
+            }
+            if (res == null) throw new IOException("DSP failed");
 
-        DSPProcessor.initConfig(
-                48000,   // fs
-                0.30f,   // impulse-window
-                0.5f,    // marker silence
-                4.0f,    // sweep duration
-                31,      // SavGol window
-                3        // SavGol poly order
-        );
+            ctx.progress("Saving", 0.8f);
+            if (PipelineMetrics.isEnabled()) {
+                // whole session so far: recording, streamed or batch deconvolution, decode
+                DSPProcessor.drainMetrics();
+                res = res.withMetrics(PipelineMetrics.snapshot());
+                Log.d(PipelineMetrics.TAG, "Measurement stages:\n" + res.metrics);
+            }
+            SessionStore.putMeasured(res);
+            File out = new File(dir, SessionStore.FILE_NAME);
+            try (PipelineMetrics.Span s = PipelineMetrics.begin("session.save")) {
+                SessionStore.save(out);
+            }
+            if (PipelineMetrics.isEnabled()) {
+                PipelineMetrics.writeChromeTrace(new File(dir, PipelineMetrics.TRACE_FILE));
+            }
+            return new Measurement(res, log10(res.freqs), out);
+        }, new JobExecutor.Callback<Measurement>() {
+            @Override public void onResult(Measurement m) {
+                btnProcess.setEnabled(true);
+                btnProcess.setText(label);
+                measuredFreqs  = m.result.freqs;
+                measuredRawDb  = m.result.rawDb;
+                measuredSmthDb = m.result.smoothDb;
+                xLogMeasured   = m.xLog;
+                Toast.makeText(ProcessActivity.this,
+                        "Saved session to: " + m.sessionFile.getAbsolutePath(), Toast.LENGTH_LONG).show();
+                plotGraphs(btnNormalize.isChecked());
+            }
+            @Override public void onError(Exception e) {
+                btnProcess.setEnabled(true);
+                btnProcess.setText(label);
+                Toast.makeText(ProcessActivity.this,
+                        e.getMessage() != null ? e.getMessage() : "Processing failed",
+                        Toast.LENGTH_SHORT).show();
+            }
+            @Override public void onProgress(String stage, float fraction) {
+                btnProcess.setText(String.format(Locale.US, "%s… %d%%", stage, Math.round(fraction * 100)));
+            }
+        });
+    }
 
-        AnalysisResult res = DSPProcessor.processBuffer(audioSamples);
-        if (res == null) {
-            Toast.makeText(this, "DSP failed", Toast.LENGTH_SHORT).show();
-            return;
+    /**
+     * The recorder's mono PCM16 WAV is processed straight from its mapping, with no float[]
+     * copy of the recording on the Java heap; other formats are decoded first.
+     */
+    private static AnalysisResult processWav(String wavPath, JobExecutor.JobContext ctx) throws IOException {
+        DSPProcessor.initDefaultConfig();
+        try (WavReader wav = new WavReader(wavPath)) {
+            ByteBuffer pcm16 = wav.pcm16Data();
+            if (pcm16 != null) {
+                ctx.progress("Deconvolving", 0.1f);
+                FloatBuffer freqs  = DSPProcessor.allocateResult(PLOT_POINTS);
+                FloatBuffer rawDb  = DSPProcessor.allocateResult(PLOT_POINTS);
+                FloatBuffer smooth = DSPProcessor.allocateResult(PLOT_POINTS);
+                try (PipelineMetrics.Span s = PipelineMetrics.begin("jni.processBufferPcm16")) {
+                    DSPProcessor.processBufferPcm16(pcm16, PLOT_POINTS, DSPProcessor.SMOOTH_SAVGOL, 0f,
+                            freqs, rawDb, smooth);
+                }
+                return new AnalysisResult(toArray(freqs), toArray(rawDb), toArray(smooth));
+            }
         }
-        measuredFreqs  = res.freqs;
-        measuredRawDb  = res.rawDb;
-        measuredSmthDb = res.smoothDb;
-
-        saveFrequencyResponseToTxt("FR.txt", measuredFreqs, measuredRawDb);
-        plotGraphs(false);
-    }
 
-    private void saveFrequencyResponseToTxt(String filename, float[] freqs, float[] dbs) {
-        File dir = getExternalFilesDir(null);
-        if (dir == null) {
-            Toast.makeText(this, "Cannot access storage", Toast.LENGTH_SHORT).show();
-            return;
+        ctx.progress("Decoding", 0f);
+        float[] audioSamples = DataStore.readWavAsFloatArray(wavPath);
+        if (audioSamples == null || audioSamples.length == 0) {
+            throw new IOException("Failed to read WAV file");
         }
-        File out = new File(dir, filename);
-        try (BufferedWriter w = new BufferedWriter(new FileWriter(out))) {
-            for (int i = 1; i < freqs.length; i++) {
-                w.write(String.format(Locale.US, "%.2f\t%.2f\n", freqs[i], dbs[i]));
-            }
-            Toast.makeText(this, "Saved FR to: " + out.getAbsolutePath(), Toast.LENGTH_LONG).show();
-        } catch (IOException e) {
-            Log.e(TAG, "Error saving FR", e);
-            Toast.makeText(this, "Failed to save FR", Toast.LENGTH_SHORT).show();
+        ctx.progress("Deconvolving", 0.3f);
+        try (PipelineMetrics.Span s = PipelineMetrics.begin("jni.processBufferLog")) {
+            return DSPProcessor.processBufferLog(audioSamples, PLOT_POINTS,
+                    DSPProcessor.SMOOTH_SAVGOL, 0f, false);
         }
     }
 
+    private static float[] toArray(FloatBuffer b) {
+        float[] out = new float[b.remaining()];
+        b.get(out);
+        return out;
+    }
+
     private void loadTargetFromCSV(String assetName) {
-        try (InputStream is = getAssets().open(assetName);
-             BufferedReader r = new BufferedReader(new InputStreamReader(is))) {
-            String line = r.readLine(); // skip header
-            ArrayList<Float> fList = new ArrayList<>();
-            ArrayList<Float> dList = new ArrayList<>();
-            while ((line = r.readLine()) != null) {
-                String[] p = line.split(",");
-                fList.add(Float.parseFloat(p[0].trim()));
-                dList.add(Float.parseFloat(p[1].trim()));
+        TargetCurveRegistry registry = TargetCurveRegistry.shared(this);
+        TargetCurveRegistry.Curve cached = registry.peek(assetName);
+        if (cached != null) {
+            JobExecutor.shared().cancel(JOB_TARGET);
+            applyTarget(cached);
+            return;
+        }
+        // first use parses the asset; a newer pick supersedes a load still in flight
+        JobExecutor.shared().submit(JOB_TARGET, ctx -> registry.get(assetName),
+                new JobExecutor.Callback<TargetCurveRegistry.Curve>() {
+            @Override public void onResult(TargetCurveRegistry.Curve c) {
+                applyTarget(c);
             }
-            csvFreqs = new float[fList.size()];
-            csvDb    = new float[dList.size()];
-            for (int i = 0; i < fList.size(); i++) {
-                csvFreqs[i] = fList.get(i);
-                csvDb[i]    = dList.get(i);
+            @Override public void onError(Exception e) {
+                Toast.makeText(ProcessActivity.this, "Failed to load CSV", Toast.LENGTH_LONG).show();
             }
-            Toast.makeText(this, "CSV loaded: " + csvFreqs.length + " points", Toast.LENGTH_SHORT).show();
-        } catch (IOException e) {
-            Log.e(TAG, "Failed to load CSV", e);
-            Toast.makeText(this, "Failed to load CSV", Toast.LENGTH_LONG).show();
+        });
+    }
+
+    private void applyTarget(TargetCurveRegistry.Curve c) {
+        csvFreqs   = c.freqs;
+        csvDb      = c.db;
+        xLogTarget = c.xLog;
+        SessionStore.putTarget(new SessionStore.Target(c.name, c.freqs, c.db));
+        if (measuredFreqs != null) {
+            plotGraphs(btnNormalize.isChecked());
         }
     }
 
     private void plotGraphs(boolean normalize) {
-        if (measuredFreqs == null) return;
+        if (measuredFreqs == null || csvFreqs == null) return;
+        try (PipelineMetrics.Span s = PipelineMetrics.begin("render.process_graph")) {
+            drawGraphs(normalize);
+        }
+    }
+
+    private void drawGraphs(boolean normalize) {
         float[] plotDb = normalize
                 ? DSPProcessor.normalizeAt1kHz(measuredFreqs, measuredSmthDb)
                 : measuredSmthDb;
 
         // compute & display MSE in ProcessActivity
-        float mse = computeMSE(measuredFreqs, plotDb, csvFreqs, csvDb);
+        float mse = ResponseScore.mse(measuredFreqs, plotDb, csvFreqs, csvDb);
         TextView tv = findViewById(R.id.tv_mse);
         if (tv != null) tv.setText(String.format(Locale.US, "MSE: %.2f", mse));
 
         // build series
-        float[] xLogMeasured = new float[measuredFreqs.length];
-        for (int i = 0; i < measuredFreqs.length; i++) {
-            xLogMeasured[i] = (float)Math.log10(measuredFreqs[i]);
-        }
-        float[] xLogTarget = new float[csvFreqs.length];
-        for (int i = 0; i < csvFreqs.length; i++) {
-            xLogTarget[i] = (float)Math.log10(csvFreqs[i]);
-        }
         LineGraphSeries<DataPoint> sMeas = DataStore.toSeries(xLogMeasured, plotDb);
         LineGraphSeries<DataPoint> sTgt  = DataStore.toSeries(xLogTarget, csvDb);
         sTgt.setColor(Color.RED);
@@ -235,29 +311,18 @@ public class ProcessActivity extends Activity {
         graphRaw.addSeries(sTgt);
     }
 
-    private float interpolateTargetDb(float freq, float[] tgtFreqs, float[] tgtDb) {
-        if (freq <= tgtFreqs[0]) return tgtDb[0];
-        if (freq >= tgtFreqs[tgtFreqs.length-1]) return tgtDb[tgtDb.length-1];
-        for (int i = 0; i < tgtFreqs.length-1; i++) {
-            if (freq >= tgtFreqs[i] && freq <= tgtFreqs[i+1]) {
-                float t = (freq - tgtFreqs[i])/(tgtFreqs[i+1]-tgtFreqs[i]);
-                return tgtDb[i] + t*(tgtDb[i+1]-tgtDb[i]);
-            }
-        }
-        return tgtDb[0];
+    @Override
+    protected void onDestroy() {
+        JobExecutor.shared().cancel(JOB_PROCESS);
+        JobExecutor.shared().cancel(JOB_TARGET);
+        super.onDestroy();
     }
 
-    private float computeMSE(float[] freqs, float[] values, float[] tgtFreqs, float[] tgtDb) {
-        float sum = 0, count = 0;
-        for (int i = 0; i < freqs.length; i++) {
-            float f = freqs[i];
-            if (f >= 100 && f <= 9000) {
-                float target = interpolateTargetDb(f, tgtFreqs, tgtDb);
-                float d = values[i] - target;
-                sum += d*d;
-                count++;
-            }
+    private static float[] log10(float[] xs) {
+        float[] out = new float[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            out[i] = (float)Math.log10(xs[i]);
         }
-        return count>0 ? sum/count : 0f;
+        return out;
     }
 }
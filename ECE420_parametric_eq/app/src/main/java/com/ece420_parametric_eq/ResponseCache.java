@@ -0,0 +1,251 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.models.PEQBand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide memo of computed curves: single-band responses keyed by
+ * (type, fc, Q, gain, fs, axis) and resampled curves keyed by (curve id, axis), plus the
+ * source points for curves resampled from arrays.
+ * Re-fitting, redrawing and comparing targets keep asking for the same ones.
+ * The cache is an LRU bounded by the total number of doubles it holds. Frequency axes are
+ * interned to small ids, so a key is a few numbers rather than a whole array.
+ * Cached arrays are shared between callers and must not be modified. Thread-safe; values are
+ * computed outside the lock, so two threads missing on the same key may both compute it.
+ */
+public final class ResponseCache {
+    /** About 2 MB: 512 display-axis curves. */
+    public static final int DEFAULT_CAPACITY = 256 * 1024;
+    private static final int MAX_AXES = 16;
+
+    private static final ResponseCache SHARED = new ResponseCache(DEFAULT_CAPACITY);
+
+    /** An interned frequency axis; same id means same points. */
+    public static final class Axis {
+        public final int id;
+        public final double[] freqs;   // shared, must not be modified
+        private final int hash;
+
+        private Axis(int id, double[] freqs, int hash) {
+            this.id    = id;
+            this.freqs = freqs;
+            this.hash  = hash;
+        }
+    }
+
+    /** Counters since the cache was created or last cleared. */
+    public static final class Stats {
+        public final long hits, misses, evictions;
+        public final int entries;
+        public final long weight;   // doubles held, values and kept source points
+
+        private Stats(long hits, long misses, long evictions, int entries, long weight) {
+            this.hits      = hits;
+            this.misses    = misses;
+            this.evictions = evictions;
+            this.entries   = entries;
+            this.weight    = weight;
+        }
+
+        public double hitRate() {
+            long n = hits + misses;
+            return n == 0 ? 0 : (double) hits / n;
+        }
+
+        @Override public String toString() {
+            return String.format(Locale.US, "%d hits, %d misses (%.0f%% hit), %d evictions, %d entries, %d KB",
+                    hits, misses, 100 * hitRate(), evictions, entries, weight * 8 / 1024);
+        }
+    }
+
+    private static final class BandKey {
+        final PEQBand.Type type;
+        final double fc, Q, gainDb, fs;
+        final int axis;
+
+        BandKey(PEQBand.Type type, double fc, double Q, double gainDb, double fs, int axis) {
+            this.type   = type;
+            this.fc     = fc;
+            this.Q      = Q;
+            this.gainDb = gainDb;
+            this.fs     = fs;
+            this.axis   = axis;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof BandKey)) return false;
+            BandKey k = (BandKey) o;
+            return type == k.type && axis == k.axis
+                    && Double.compare(fc, k.fc) == 0 && Double.compare(Q, k.Q) == 0
+                    && Double.compare(gainDb, k.gainDb) == 0 && Double.compare(fs, k.fs) == 0;
+        }
+
+        @Override public int hashCode() {
+            int h = type.hashCode();
+            h = 31 * h + Double.hashCode(fc);
+            h = 31 * h + Double.hashCode(Q);
+            h = 31 * h + Double.hashCode(gainDb);
+            h = 31 * h + Double.hashCode(fs);
+            return 31 * h + axis;
+        }
+    }
+
+    private static final class CurveKey {
+        final String id;
+        final int axis;
+        final double[] xs, ys;   // source of a resampled curve, null if only named by id
+
+        CurveKey(String id, int axis, double[] xs, double[] ys) {
+            this.id   = id;
+            this.axis = axis;
+            this.xs   = xs;
+            this.ys   = ys;
+        }
+
+        // A hit on a resampled curve also compares the source points, so an id that collides
+        // (or was reused for new data) is a miss rather than a wrong curve
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof CurveKey)) return false;
+            CurveKey k = (CurveKey) o;
+            return k.axis == axis && k.id.equals(id) && sameData(xs, k.xs) && sameData(ys, k.ys);
+        }
+
+        private static boolean sameData(double[] a, double[] b) {
+            return Arrays.equals(a, b);
+        }
+
+        int weight() {
+            return (xs != null ? xs.length : 0) + (ys != null ? ys.length : 0);
+        }
+
+        /** Same key holding its own copy of the source, so callers may reuse their arrays. */
+        CurveKey detached() {
+            return xs == null && ys == null ? this
+                    : new CurveKey(id, axis, xs != null ? xs.clone() : null, ys != null ? ys.clone() : null);
+        }
+
+        @Override public int hashCode() {
+            return 31 * id.hashCode() + axis;
+        }
+    }
+
+    private final long capacity;
+    private final LinkedHashMap<Object, double[]> map = new LinkedHashMap<>(64, 0.75f, true);
+    private final List<Axis> axes = new ArrayList<>();
+    private int nextAxisId;
+    private long weight, hits, misses, evictions;
+
+    /** @param capacity largest total number of doubles held */
+    public ResponseCache(long capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    public static ResponseCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * The interned axis with these points. An array that was interned before is found by
+     * identity. Otherwise the content is compared, O(N) once per new array. Only the last
+     * MAX_AXES axes are kept; entries on a dropped axis are simply never hit again.
+     */
+    public synchronized Axis intern(double[] freqs) {
+        for (int i = axes.size() - 1; i >= 0; i--) {
+            if (axes.get(i).freqs == freqs) return axes.get(i);
+        }
+        int hash = Arrays.hashCode(freqs);
+        for (int i = axes.size() - 1; i >= 0; i--) {
+            Axis a = axes.get(i);
+            if (a.hash == hash && Arrays.equals(a.freqs, freqs)) return a;
+        }
+        if (axes.size() == MAX_AXES) axes.remove(0);
+        Axis a = new Axis(nextAxisId++, freqs, hash);
+        axes.add(a);
+        return a;
+    }
+
+    /** Response (dB) of one band on axis, computed by compute on a miss. */
+    public double[] band(PEQBand.Type type, double fc, double Q, double gainDb, double fs, Axis axis,
+                         Supplier<double[]> compute) {
+        return get(new BandKey(type, fc, Q, gainDb, fs, axis.id), compute);
+    }
+
+    /**
+     * A curve resampled onto axis, computed by compute on a miss. curveId must change whenever
+     * the curve's data does, e.g. a target's name or a file path.
+     */
+    public double[] curve(String curveId, Axis axis, Supplier<double[]> compute) {
+        return get(new CurveKey(curveId, axis.id, null, null), compute);
+    }
+
+    /**
+     * interpLogFreq(xs, ys, axis) under (curveId, axis). The entry keeps a copy of xs and ys,
+     * and a hit must match them as well as the id.
+     */
+    public double[] resample(String curveId, double[] xs, double[] ys, Axis axis) {
+        return get(new CurveKey(curveId, axis.id, xs, ys),
+                () -> ParametricEQUtils.interpLogFreq(xs, ys, axis.freqs));
+    }
+
+    /**
+     * Id of a curve derived from its content, for callers of resample that have no name for it.
+     * Hashing and the comparison on a hit are much cheaper than interpLogFreq, which takes a
+     * log10 per point; two curves whose hashes collide just share a bucket.
+     */
+    public static String contentId(double[] xs, double[] ys) {
+        return "curve:" + xs.length + ':' + Integer.toHexString(Arrays.hashCode(xs))
+                + ':' + Integer.toHexString(Arrays.hashCode(ys));
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, map.size(), weight);
+    }
+
+    /** Drop all entries and reset the counters; interned axes stay. */
+    public synchronized void clear() {
+        map.clear();
+        weight = hits = misses = evictions = 0;
+    }
+
+    private double[] get(Object key, Supplier<double[]> compute) {
+        synchronized (this) {
+            double[] v = map.get(key);
+            if (v != null) {
+                hits++;
+                return v;
+            }
+            misses++;
+        }
+        double[] v = Objects.requireNonNull(compute.get());
+        synchronized (this) {
+            double[] raced = map.get(key);
+            if (raced != null) return raced;
+            if (entryWeight(key, v) > capacity) return v;
+            map.put(key instanceof CurveKey ? ((CurveKey) key).detached() : key, v);
+            weight += entryWeight(key, v);
+            Iterator<Map.Entry<Object, double[]>> it = map.entrySet().iterator();
+            while (weight > capacity) {
+                Map.Entry<Object, double[]> e = it.next();
+                weight -= entryWeight(e.getKey(), e.getValue());
+                it.remove();
+                evictions++;
+            }
+        }
+        return v;
+    }
+
+    /** Doubles an entry holds, including the source points a CurveKey keeps. */
+    private static long entryWeight(Object key, double[] v) {
+        return v.length + (key instanceof CurveKey ? ((CurveKey) key).weight() : 0);
+    }
+}
@@ -0,0 +1,145 @@
+package com.ece420_parametric_eq;
+
+/**
+ * Scores a measured (or EQ'd) response against a target curve.
+ * Both frequency axes must be ascending. The target is interpolated linearly in Hz, as the
+ * app's MSE always has been (so reported numbers do not move), by walking both axes together
+ * in one merged pass, so scoring N points against an M-point target is O(N + M).
+ */
+public final class ResponseScore {
+
+    /** Frequency limits and optional per-band weights for the error metrics. */
+    public static final class Options {
+        /** The 100 Hz .. 9 kHz window the app has always reported MSE over. */
+        public static final Options DEFAULT = new Options(100, 9000);
+
+        public final double fMin, fMax;
+        final double[] bandEdges;     // ascending, length bands + 1
+        final double[] bandWeights;   // length bands
+
+        public Options(double fMin, double fMax) {
+            this(fMin, fMax, null, null);
+        }
+
+        /**
+         * @param bandEdges   ascending edges in Hz; points outside all bands get weight 1
+         * @param bandWeights weight of [bandEdges[k], bandEdges[k+1])
+         */
+        public Options(double fMin, double fMax, double[] bandEdges, double[] bandWeights) {
+            if (!(fMin < fMax)) throw new IllegalArgumentException("fMin must be below fMax");
+            if ((bandEdges == null) != (bandWeights == null)
+                    || (bandEdges != null && bandEdges.length != bandWeights.length + 1)) {
+                throw new IllegalArgumentException("Need one weight per band, edges = weights + 1");
+            }
+            this.fMin        = fMin;
+            this.fMax        = fMax;
+            this.bandEdges   = bandEdges   != null ? bandEdges.clone()   : null;
+            this.bandWeights = bandWeights != null ? bandWeights.clone() : null;
+        }
+    }
+
+    public static final class Result {
+        public final double mse;          // weighted mean squared error, dB²
+        public final double rms;          // sqrt(mse), dB
+        public final double maxDeviation; // largest |error| in the window, dB
+        /**
+         * Olive et al. over-ear predicted preference (114.49 - 12.62 SD - 15.52 |slope|),
+         * from the error's standard deviation and log-frequency slope over 50 Hz .. 10 kHz.
+         * NaN when fewer than 3 points fall in that range.
+         */
+        public final double preference;
+        public final int count;
+
+        Result(double mse, double maxDeviation, double preference, int count) {
+            this.mse          = mse;
+            this.rms          = Math.sqrt(mse);
+            this.maxDeviation = maxDeviation;
+            this.preference   = preference;
+            this.count        = count;
+        }
+    }
+
+    private static final double PREF_F_MIN = 50, PREF_F_MAX = 10000;
+
+    private ResponseScore() {}
+
+    public static double mse(double[] freqs, double[] values, double[] tgtFreqs, double[] tgtDb) {
+        return score(freqs, values, tgtFreqs, tgtDb, Options.DEFAULT).mse;
+    }
+
+    public static float mse(float[] freqs, float[] values, float[] tgtFreqs, float[] tgtDb) {
+        return (float) score(freqs, values, tgtFreqs, tgtDb, Options.DEFAULT).mse;
+    }
+
+    public static Result score(float[] freqs, float[] values, float[] tgtFreqs, float[] tgtDb,
+                               Options opt) {
+        return score(toDouble(freqs), toDouble(values), toDouble(tgtFreqs), toDouble(tgtDb), opt);
+    }
+
+    public static Result score(double[] freqs, double[] values, double[] tgtFreqs, double[] tgtDb,
+                               Options opt) {
+        int n = Math.min(freqs.length, values.length);
+        int m = Math.min(tgtFreqs.length, tgtDb.length);
+        if (m == 0) throw new IllegalArgumentException("Empty target");
+
+        double wSum = 0, wErr = 0, maxDev = 0;
+        int count = 0;
+        // regression of error against log10 f for the preference model
+        double sx = 0, sy = 0, sxx = 0, sxy = 0, syy = 0;
+        int np = 0;
+
+        int j = 0;   // target segment [j, j+1] containing f
+        int k = 0;   // weight band containing f
+        double lo = Math.min(opt.fMin, PREF_F_MIN), hi = Math.max(opt.fMax, PREF_F_MAX);
+        for (int i = 0; i < n; i++) {
+            double f = freqs[i];
+            if (f < lo) continue;
+            if (f > hi) break;
+
+            while (j < m - 1 && tgtFreqs[j + 1] <= f) j++;
+            double target;
+            if (j == m - 1 || f <= tgtFreqs[j]) {
+                target = tgtDb[j];   // clamp outside the target's range
+            } else {
+                double t = (f - tgtFreqs[j]) / (tgtFreqs[j + 1] - tgtFreqs[j]);
+                target = tgtDb[j] + t * (tgtDb[j + 1] - tgtDb[j]);
+            }
+            double d = values[i] - target;
+
+            if (f >= opt.fMin && f <= opt.fMax) {
+                double w = 1;
+                if (opt.bandEdges != null) {
+                    double[] e = opt.bandEdges;
+                    while (k < e.length - 1 && e[k + 1] <= f) k++;
+                    if (k < e.length - 1 && f >= e[k]) w = opt.bandWeights[k];
+                }
+                wSum += w;
+                wErr += w * d * d;
+                maxDev = Math.max(maxDev, Math.abs(d));
+                count++;
+            }
+            if (f >= PREF_F_MIN && f <= PREF_F_MAX) {
+                double x = Math.log10(f);
+                sx += x; sy += d; sxx += x * x; sxy += x * d; syy += d * d;
+                np++;
+            }
+        }
+
+        double mse = wSum > 0 ? wErr / wSum : 0.0;
+        double pref = Double.NaN;
+        if (np >= 3) {
+            double varX  = np * sxx - sx * sx;
+            double slope = varX > 0 ? (np * sxy - sx * sy) / varX : 0.0;
+            double mean  = sy / np;
+            double sd    = Math.sqrt(Math.max(0.0, syy / np - mean * mean));
+            pref = 114.49 - 12.62 * sd - 15.52 * Math.abs(slope);
+        }
+        return new Result(mse, maxDev, pref, count);
+    }
+
+    private static double[] toDouble(float[] xs) {
+        double[] out = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) out[i] = xs[i];
+        return out;
+    }
+}
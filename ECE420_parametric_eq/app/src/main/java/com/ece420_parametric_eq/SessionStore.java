@@ -0,0 +1,264 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.ParametricEQUtils.AutoEQResult;
+import com.ece420_parametric_eq.models.AnalysisResult;
+import com.ece420_parametric_eq.models.PEQBand;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory hand-off between the measure, target and EQ stages.
+ * Everything is kept as primitive arrays, so moving from one screen to the next needs no
+ * formatting, parsing or boxing. save/load persist the session in a small binary file so
+ * a restarted process can pick up where it left off.
+ *
+ * File layout (little endian): magic "EQSS", u16 major, u16 minor, then tagged sections
+ * {u32 tag, u32 length, payload padded to 4 bytes}. Readers skip tags they do not know,
+ * so minor versions may add sections; a different major version is rejected.
+ */
+public final class SessionStore {
+    /** Default file name under getExternalFilesDir(null). */
+    public static final String FILE_NAME = "session.eqs";
+
+    private static final int MAGIC = 0x53535145; // "EQSS"
+    private static final int VERSION_MAJOR = 1;
+    private static final int VERSION_MINOR = 0;
+
+    private static final int TAG_MEASURED = 0x5341454D; // "MEAS"
+    private static final int TAG_TARGET   = 0x20544754; // "TGT "
+    private static final int TAG_EQ       = 0x20205145; // "EQ  "
+
+    /** A target curve together with the profile it came from. */
+    public static final class Target {
+        public final String name;
+        public final float[] freqs;
+        public final float[] db;
+
+        public Target(String name, float[] freqs, float[] db) {
+            this.name  = name;
+            this.freqs = freqs;
+            this.db    = db;
+        }
+    }
+
+    private static AnalysisResult measured;
+    private static Target target;
+    private static AutoEQResult eq;
+
+    // held across snapshot, write and rename, so the last save to finish has the newest state
+    private static final Object SAVE_LOCK = new Object();
+
+    private SessionStore() {}
+
+    public static synchronized void putMeasured(AnalysisResult result) {
+        measured = result;
+        eq = null;   // a new measurement invalidates the fit
+    }
+
+    public static synchronized AnalysisResult measured() { return measured; }
+
+    public static synchronized void putTarget(Target t) {
+        if (target == null || t == null || !t.name.equals(target.name)) eq = null;
+        target = t;
+    }
+
+    public static synchronized Target target() { return target; }
+
+    public static synchronized void putEq(AutoEQResult result) { eq = result; }
+
+    public static synchronized AutoEQResult eq() { return eq; }
+
+    public static synchronized void clear() {
+        measured = null;
+        target   = null;
+        eq       = null;
+    }
+
+    // ── Persistence ───────────────────────────────────────────────────────
+
+    /**
+     * Write the current session to file, replacing it. Safe to call from several threads:
+     * saves run one at a time, each through its own temporary file.
+     */
+    public static void save(File file) throws IOException {
+        synchronized (SAVE_LOCK) {
+            saveLocked(file);
+        }
+    }
+
+    private static void saveLocked(File file) throws IOException {
+        AnalysisResult m;
+        Target t;
+        AutoEQResult e;
+        synchronized (SessionStore.class) {
+            m = measured;
+            t = target;
+            e = eq;
+        }
+
+        int size = 8;
+        if (m != null) size += 8 + measuredBytes(m);
+        if (t != null) size += 8 + targetBytes(t);
+        if (e != null) size += 8 + eqBytes(e);
+
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC);
+        b.putShort((short) VERSION_MAJOR);
+        b.putShort((short) VERSION_MINOR);
+        if (m != null) {
+            section(b, TAG_MEASURED, measuredBytes(m));
+            int n = m.freqs.length;
+            b.putInt(n);
+            b.asFloatBuffer().put(m.freqs).put(m.rawDb, 0, n).put(m.smoothDb, 0, n);
+            b.position(b.position() + 12 * n);
+        }
+        if (t != null) {
+            section(b, TAG_TARGET, targetBytes(t));
+            byte[] name = t.name.getBytes(StandardCharsets.UTF_8);
+            b.putInt(name.length).put(name);
+            b.position(b.position() + pad(name.length));
+            int n = t.freqs.length;
+            b.putInt(n);
+            b.asFloatBuffer().put(t.freqs).put(t.db, 0, n);
+            b.position(b.position() + 8 * n);
+        }
+        if (e != null) {
+            section(b, TAG_EQ, eqBytes(e));
+            b.putDouble(e.preampDb);
+            b.putInt(e.bands.size());
+            for (PEQBand band : e.bands) {
+                b.putInt(band.type.ordinal());
+                b.putDouble(band.fc);
+                b.putDouble(band.Q);
+                b.putDouble(band.gainDb);
+            }
+        }
+
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+             FileChannel ch = raf.getChannel()) {
+            b.flip();
+            while (b.hasRemaining()) ch.write(b);
+        } catch (IOException ex) {
+            tmp.delete();
+            throw ex;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Replace the in-memory session with the one in file.
+     * @return false if the file does not exist
+     */
+    public static boolean load(File file) throws IOException {
+        if (!file.isFile()) return false;
+        AnalysisResult m = null;
+        Target t = null;
+        AutoEQResult e = null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel ch = raf.getChannel()) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            ByteBuffer b = map.order(ByteOrder.LITTLE_ENDIAN);
+            if (b.remaining() < 8 || b.getInt() != MAGIC) {
+                throw new IOException("Not a session file: " + file);
+            }
+            int major = b.getShort() & 0xFFFF;
+            b.getShort(); // minor: later minors only add sections
+            if (major != VERSION_MAJOR) {
+                throw new IOException("Unsupported session version " + major);
+            }
+
+            while (b.remaining() >= 8) {
+                int tag = b.getInt();
+                int len = b.getInt();
+                if (len < 0 || len > b.remaining()) {
+                    throw new IOException("Truncated session file: " + file);
+                }
+                ByteBuffer s = b.slice().order(ByteOrder.LITTLE_ENDIAN);
+                s.limit(len);
+                b.position(Math.min(b.limit(), b.position() + len + pad(len)));
+                try {
+                    switch (tag) {
+                        case TAG_MEASURED: m = readMeasured(s); break;
+                        case TAG_TARGET:   t = readTarget(s);   break;
+                        case TAG_EQ:       e = readEq(s);       break;
+                        default:           break;
+                    }
+                } catch (RuntimeException ex) {
+                    throw new IOException("Corrupt section in " + file, ex);
+                }
+            }
+        }
+
+        synchronized (SessionStore.class) {
+            measured = m;
+            target   = t;
+            eq       = e;
+        }
+        return true;
+    }
+
+    private static AnalysisResult readMeasured(ByteBuffer s) {
+        int n = s.getInt();
+        float[] f = new float[n], raw = new float[n], smooth = new float[n];
+        s.asFloatBuffer().get(f).get(raw).get(smooth);
+        return new AnalysisResult(f, raw, smooth);
+    }
+
+    private static Target readTarget(ByteBuffer s) {
+        byte[] name = new byte[s.getInt()];
+        s.get(name);
+        s.position(s.position() + pad(name.length));
+        int n = s.getInt();
+        float[] f = new float[n], d = new float[n];
+        s.asFloatBuffer().get(f).get(d);
+        return new Target(new String(name, StandardCharsets.UTF_8), f, d);
+    }
+
+    private static AutoEQResult readEq(ByteBuffer s) {
+        double preamp = s.getDouble();
+        int n = s.getInt();
+        PEQBand.Type[] types = PEQBand.Type.values();
+        List<PEQBand> bands = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            PEQBand.Type type = types[s.getInt()];
+            bands.add(new PEQBand(type, s.getDouble(), s.getDouble(), s.getDouble()));
+        }
+        return new AutoEQResult(preamp, bands);
+    }
+
+    private static void section(ByteBuffer b, int tag, int len) {
+        b.putInt(tag);
+        b.putInt(len);
+    }
+
+    private static int measuredBytes(AnalysisResult m) {
+        return 4 + 12 * m.freqs.length;
+    }
+
+    private static int targetBytes(Target t) {
+        int name = t.name.getBytes(StandardCharsets.UTF_8).length;
+        return 4 + name + pad(name) + 4 + 8 * t.freqs.length;
+    }
+
+    private static int eqBytes(AutoEQResult e) {
+        return 8 + 4 + 28 * e.bands.size();
+    }
+
+    private static int pad(int len) {
+        return (4 - (len & 3)) & 3;
+    }
+}
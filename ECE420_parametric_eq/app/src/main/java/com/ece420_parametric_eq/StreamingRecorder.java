@@ -0,0 +1,167 @@
+package com.ece420_parametric_eq;
+
+import android.media.AudioRecord;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records 16-bit PCM from an AudioRecord directly into a WAV file.
+ * A capture thread reads into a small pool of recycled direct buffers and hands them to a
+ * writer thread, which appends them to the file and returns them to the pool. Memory use is
+ * fixed regardless of recording length, and the file is complete as soon as the listener fires.
+ */
+public final class StreamingRecorder {
+    private static final String TAG = "StreamingRecorder";
+    private static final int POOL_SIZE = 8;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /** Called once on the writer thread when the file is finalized or recording failed. */
+    public interface Listener {
+        void onSaved(String path);
+        void onFailed(Exception e);
+    }
+
+    /** Sees every block on the writer thread, before it is written. Must not keep the buffer. */
+    public interface BlockSink {
+        void onBlock(ByteBuffer pcm16, int frames);
+    }
+
+    private final AudioRecord audioRecord;
+    private final String path;
+    private final WavWriter writer;
+    private final Listener listener;
+    private final int frameBytes;
+    private BlockSink sink;
+    private final BlockingQueue<ByteBuffer> free   = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(POOL_SIZE + 1);
+
+    private volatile boolean running;
+    private volatile Exception captureError;
+    private long startNs;
+
+    /**
+     * Opens the output file right away so the first block can be written as soon as it arrives.
+     * The recorder takes ownership of audioRecord and releases it when capture ends.
+     */
+    public StreamingRecorder(AudioRecord audioRecord, int bufferSize, String path,
+                             int sampleRate, int channels, Listener listener) throws IOException {
+        this.audioRecord = audioRecord;
+        this.path        = path;
+        this.listener    = listener;
+        this.frameBytes  = 2 * channels;
+        this.writer      = new WavWriter(path, sampleRate, channels);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    public String path()         { return path; }
+    public boolean isRecording() { return running; }
+
+    /** Optional; set before start(). */
+    public void setBlockSink(BlockSink sink) {
+        this.sink = sink;
+    }
+
+    public void start() {
+        startNs = System.nanoTime();
+        running = true;
+        new Thread(this::capture, TAG + "-capture").start();
+        new Thread(this::drain,   TAG + "-writer").start();
+    }
+
+    /** Ask capture to finish. The listener fires once the remaining blocks are on disk. */
+    public void stop() {
+        running = false;
+    }
+
+    private void capture() {
+        try {
+            audioRecord.startRecording();
+            while (running) {
+                ByteBuffer b = free.take();
+                b.clear();
+                int read = audioRecord.read(b, b.capacity());
+                if (read > 0) {
+                    b.limit(read);
+                    filled.put(b);
+                } else {
+                    free.put(b);
+                    if (read < 0) {
+                        captureError = new IOException("AudioRecord.read failed: " + read);
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            captureError = e;
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            captureError = e;
+        } finally {
+            running = false;
+            try {
+                audioRecord.stop();
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "error AudioRecord stop", e);
+            }
+            audioRecord.release();
+            // filled has one slot more than the pool, so this never blocks
+            filled.add(END);
+        }
+    }
+
+    private void drain() {
+        Exception failure = null;
+        long blocks = 0;
+        try {
+            for (;;) {
+                ByteBuffer b = filled.take();
+                if (b == END) break;
+                blocks++;
+                if (sink != null) {
+                    try (PipelineMetrics.Span s = PipelineMetrics.begin("record.block_sink")) {
+                        sink.onBlock(b, b.remaining() / frameBytes);
+                    } catch (RuntimeException e) {
+                        // a failing consumer must not cost us the recording
+                        Log.e(TAG, "Block sink failed, detaching", e);
+                        sink = null;
+                    }
+                }
+                if (failure == null) {
+                    try {
+                        writer.write(b);
+                    } catch (IOException e) {
+                        failure = e;
+                        running = false;
+                    }
+                }
+                free.add(b);
+            }
+        } catch (InterruptedException e) {
+            failure = e;
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+        if (failure == null) failure = captureError;
+        PipelineMetrics.span("record", startNs, System.nanoTime());
+        PipelineMetrics.count("record.blocks", blocks);
+        PipelineMetrics.gaugeBytes("record.wav_bytes", writer.dataBytes());
+
+        if (failure == null) {
+            Log.d(TAG, "Recording saved to: " + path + " (" + writer.dataBytes() + " bytes)");
+            listener.onSaved(path);
+        } else {
+            Log.e(TAG, "Recording failed", failure);
+            listener.onFailed(failure);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ece420_parametric_eq;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Target curves parsed once and kept resampled to the app's standard log axis
+ * (20 Hz .. 20 kHz, 512 points, the axis EqActivity fits on).
+ * Bundled curves stay cached for the life of the process; user-imported curves share a
+ * small LRU. After the first load, switching profiles is a map lookup with no I/O.
+ */
+public final class TargetCurveRegistry {
+    public static final double F_MIN  = 20;
+    public static final double F_MAX  = 20000;
+    public static final int    POINTS = 512;
+
+    public static final String[] BUNDLED = { "harman.csv", "bk.csv", "thx.csv" };
+
+    private static final int USER_CAPACITY = 8;
+
+    private static final double[] AXIS = ParametricEQUtils.logSpace(F_MIN, F_MAX, POINTS);
+    private static final float[] AXIS_F   = new float[POINTS];
+    private static final float[] AXIS_LOG = new float[POINTS];
+    static {
+        for (int i = 0; i < POINTS; i++) {
+            AXIS_F[i]   = (float) AXIS[i];
+            AXIS_LOG[i] = (float) Math.log10(AXIS[i]);
+        }
+    }
+
+    /**
+     * A target curve on the standard axis. Arrays are shared between all users of the
+     * registry and must not be modified.
+     */
+    public static final class Curve {
+        public final String name;
+        public final float[] freqs;   // standard axis, Hz
+        public final float[] xLog;    // log10(freqs), ready for plotting
+        public final float[] db;
+
+        private Curve(String name, float[] db) {
+            this.name  = name;
+            this.freqs = AXIS_F;
+            this.xLog  = AXIS_LOG;
+            this.db    = db;
+        }
+    }
+
+    private static TargetCurveRegistry shared;
+
+    private final AssetManager assets;
+    private final Map<String, Curve> bundled = new HashMap<>();
+    private final LinkedHashMap<String, Curve> user =
+            new LinkedHashMap<String, Curve>(16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(Map.Entry<String, Curve> e) {
+                    return size() > USER_CAPACITY;
+                }
+            };
+
+    private TargetCurveRegistry(AssetManager assets) {
+        this.assets = assets;
+    }
+
+    public static synchronized TargetCurveRegistry shared(Context context) {
+        if (shared == null) shared = new TargetCurveRegistry(context.getApplicationContext().getAssets());
+        return shared;
+    }
+
+    /** The standard axis, shared; must not be modified. */
+    public static double[] axis() {
+        return AXIS;
+    }
+
+    /** Cached curve or null; never does I/O, safe on the UI thread. */
+    public synchronized Curve peek(String name) {
+        Curve c = bundled.get(name);
+        return c != null ? c : user.get(name);
+    }
+
+    /** Cached curve, parsing the bundled asset on first use. */
+    public Curve get(String name) throws IOException {
+        Curve c = peek(name);
+        if (c != null) return c;
+        if (!isBundled(name)) throw new IOException("Unknown target curve: " + name);
+
+        try (InputStream is = assets.open(name)) {
+            c = new Curve(name, parse(is));
+        }
+        synchronized (this) {
+            Curve raced = bundled.putIfAbsent(name, c);
+            return raced != null ? raced : c;
+        }
+    }
+
+    /** Parse all bundled curves, e.g. from a background job at startup. */
+    public void preload() throws IOException {
+        for (String name : BUNDLED) get(name);
+    }
+
+    /** Parse a user-supplied two-column (freq, dB) curve and cache it under name. */
+    public Curve importCurve(String name, InputStream in) throws IOException {
+        if (isBundled(name)) throw new IllegalArgumentException("Name clashes with bundled curve: " + name);
+        Curve c = new Curve(name, parse(in));
+        synchronized (this) {
+            user.put(name, c);
+        }
+        return c;
+    }
+
+    private static boolean isBundled(String name) {
+        for (String b : BUNDLED) {
+            if (b.equals(name)) return true;
+        }
+        return false;
+    }
+
+    /** Reads freq,dB rows (comma or whitespace separated; header and bad rows skipped). */
+    private static float[] parse(InputStream in) throws IOException {
+        double[] f = new double[1024], d = new double[1024];
+        int n = 0;
+        BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = r.readLine()) != null) {
+            int len = line.length();
+            int a = 0;
+            while (a < len && line.charAt(a) <= ' ') a++;
+            int sep = a;
+            while (sep < len && line.charAt(sep) != ',' && line.charAt(sep) > ' ') sep++;
+            int b = sep;
+            while (b < len && (line.charAt(b) == ',' || line.charAt(b) <= ' ')) b++;
+            int e = b;
+            while (e < len && line.charAt(e) != ',' && line.charAt(e) > ' ') e++;
+            if (sep == a || e == b) continue;
+            double fv, dv;
+            try {
+                fv = Double.parseDouble(line.substring(a, sep));
+                dv = Double.parseDouble(line.substring(b, e));
+            } catch (NumberFormatException ex) {
+                continue;
+            }
+            if (n == f.length) {
+                f = Arrays.copyOf(f, 2 * n);
+                d = Arrays.copyOf(d, 2 * n);
+            }
+            f[n] = fv;
+            d[n] = dv;
+            n++;
+        }
+        if (n < 2) throw new IOException("Target curve has fewer than 2 points");
+
+        double[] db = ParametricEQUtils.interpLogFreq(Arrays.copyOf(f, n), Arrays.copyOf(d, n), AXIS);
+        float[] out = new float[POINTS];
+        for (int i = 0; i < POINTS; i++) out[i] = (float) db[i];
+        return out;
+    }
+}
@@ -0,0 +1,287 @@
+package com.ece420_parametric_eq;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Chunk-aware RIFF/WAVE reader on a memory-mapped FileChannel.
+ * Handles 8/16/24/32-bit integer PCM, 32-bit float and WAVE_FORMAT_EXTENSIBLE, skips
+ * unknown chunks (LIST, fact, bext, ...) wherever they sit, and tolerates a data size
+ * left at 0 / 0xFFFFFFFF by recorders that never finalized the header.
+ *
+ * Samples are read one channel at a time in fixed-size float blocks, so a caller can start
+ * working on the first block while the rest of the file is still paged in:
+ * <pre>
+ *   try (WavReader wav = new WavReader(file)) {
+ *       float[] block = new float[4096];
+ *       int n;
+ *       while ((n = wav.read(block)) > 0) { ... }
+ *   }
+ * </pre>
+ */
+public final class WavReader implements AutoCloseable {
+    private static final int FORMAT_PCM        = 1;
+    private static final int FORMAT_FLOAT      = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final RandomAccessFile file;
+    private final ByteBuffer data;       // data chunk only, little endian
+    private final int  channels;
+    private final int  sampleRate;
+    private final int  bitsPerSample;
+    private final int  bytesPerSample;
+    private final int  frameSize;
+    private final boolean isFloat;
+    private final long numFrames;
+
+    private long    framePos;
+    private short[] shortScratch;
+    private int[]   intScratch;
+    private float[] floatScratch;
+    private byte[]  byteScratch;
+
+    public WavReader(String path) throws IOException {
+        this(new File(path));
+    }
+
+    public WavReader(File f) throws IOException {
+        file = new RandomAccessFile(f, "r");
+        try {
+            FileChannel ch = file.getChannel();
+            long fileSize = ch.size();
+            ByteBuffer hdr = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(ch, hdr, 0);
+            if (hdr.getInt(0) != fourCC("RIFF") || hdr.getInt(8) != fourCC("WAVE")) {
+                throw new IOException("Not a RIFF/WAVE file: " + f);
+            }
+
+            int fmtTag = -1, nCh = 0, rate = 0, bits = 0, blockAlign = 0;
+            long dataOffset = -1, dataSize = 0;
+            ByteBuffer chunkHdr = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            long pos = 12;
+            while (pos + 8 <= fileSize) {
+                chunkHdr.clear();
+                readFully(ch, chunkHdr, pos);
+                int  id   = chunkHdr.getInt(0);
+                long size = chunkHdr.getInt(4) & 0xFFFFFFFFL;
+                long body = pos + 8;
+
+                if (id == fourCC("fmt ")) {
+                    if (size < 16) throw new IOException("Truncated fmt chunk (" + size + " bytes): " + f);
+                    ByteBuffer fmt = ByteBuffer.allocate((int) Math.min(size, 64)).order(ByteOrder.LITTLE_ENDIAN);
+                    readFully(ch, fmt, body);
+                    fmtTag     = fmt.getShort(0) & 0xFFFF;
+                    nCh        = fmt.getShort(2) & 0xFFFF;
+                    rate       = fmt.getInt(4);
+                    blockAlign = fmt.getShort(12) & 0xFFFF;
+                    bits       = fmt.getShort(14) & 0xFFFF;
+                    if (fmtTag == FORMAT_EXTENSIBLE && size >= 26) {
+                        // the sub-format GUID starts with the plain format tag
+                        fmtTag = fmt.getShort(24) & 0xFFFF;
+                    }
+                } else if (id == fourCC("data")) {
+                    dataOffset = body;
+                    // unfinalized or truncated header: take whatever is in the file
+                    dataSize = (size == 0 || size == 0xFFFFFFFFL || body + size > fileSize)
+                            ? fileSize - body : size;
+                    if (fmtTag >= 0) break;
+                }
+                // chunks are word aligned
+                pos = body + size + (size & 1);
+            }
+
+            if (fmtTag < 0)      throw new IOException("Missing fmt chunk: " + f);
+            if (dataOffset < 0)  throw new IOException("Missing data chunk: " + f);
+            if (fmtTag != FORMAT_PCM && fmtTag != FORMAT_FLOAT) {
+                throw new IOException("Unsupported WAV format tag: " + fmtTag);
+            }
+            if (fmtTag == FORMAT_FLOAT ? bits != 32 : (bits < 8 || bits > 32 || bits % 8 != 0)) {
+                throw new IOException("Unsupported sample size: " + bits);
+            }
+            if (nCh <= 0) throw new IOException("Invalid channel count: " + nCh);
+
+            channels       = nCh;
+            sampleRate     = rate;
+            bitsPerSample  = bits;
+            bytesPerSample = bits / 8;
+            frameSize      = Math.max(blockAlign, bytesPerSample * nCh);
+            isFloat        = fmtTag == FORMAT_FLOAT;
+
+            long mapSize = Math.min(dataSize, Integer.MAX_VALUE - (Integer.MAX_VALUE % frameSize));
+            numFrames = mapSize / frameSize;
+            data = ch.map(FileChannel.MapMode.READ_ONLY, dataOffset, numFrames * frameSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        } catch (RuntimeException e) {
+            // any other header inconsistency; callers treat unreadable files as IOException
+            file.close();
+            throw new IOException("Malformed WAV header: " + f, e);
+        }
+    }
+
+    public int  channels()      { return channels; }
+    public int  sampleRate()    { return sampleRate; }
+    public int  bitsPerSample() { return bitsPerSample; }
+    public boolean isFloat()    { return isFloat; }
+    public long numFrames()     { return numFrames; }
+    public long position()      { return framePos; }
+
+    /**
+     * The mapped data chunk of a mono 16-bit PCM file, for DSPProcessor.processBufferPcm16 to
+     * read in place; null for any other layout. Native byte order, which is little endian on
+     * every Android ABI, so the bytes are usable as they are on disk.
+     */
+    public ByteBuffer pcm16Data() {
+        if (isFloat || bitsPerSample != 16 || channels != 1 || frameSize != 2
+                || ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            return null;
+        }
+        return data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /** Seek to an absolute frame. */
+    public void seek(long frame) {
+        framePos = Math.max(0, Math.min(frame, numFrames));
+    }
+
+    /** Next block of channel 0. Returns frames read, 0 at end of data. */
+    public int read(float[] block) {
+        return read(block, 0, block.length, 0);
+    }
+
+    /**
+     * Next block of one channel, normalized to [-1, 1), into dst[off, off+len).
+     * Returns frames read, 0 at end of data.
+     */
+    public int read(float[] dst, int off, int len, int channel) {
+        if (channel < 0 || channel >= channels) {
+            throw new IllegalArgumentException("channel " + channel + " of " + channels);
+        }
+        int n = (int) Math.min(len, numFrames - framePos);
+        if (n <= 0) return 0;
+        int byteOff = (int) (framePos * frameSize) + channel * bytesPerSample;
+        // packed frames let the typed views read straight through; stride picks the channel
+        boolean packed = frameSize == bytesPerSample * channels;
+        if (packed && bytesPerSample == 2) {
+            readShorts(dst, off, n, byteOff - channel * 2, channel);
+        } else if (packed && bytesPerSample == 4) {
+            readInts(dst, off, n, byteOff - channel * 4, channel);
+        } else {
+            readGeneric(dst, off, n, byteOff);
+        }
+        framePos += n;
+        return n;
+    }
+
+    /** Whole file, one channel. */
+    public float[] readAll(int channel) {
+        seek(0);
+        float[] out = new float[(int) Math.min(numFrames, Integer.MAX_VALUE - 8)];
+        int got = 0;
+        while (got < out.length) {
+            int n = read(out, got, out.length - got, channel);
+            if (n == 0) break;
+            got += n;
+        }
+        return out;
+    }
+
+    private void readShorts(float[] dst, int off, int n, int frameByteOff, int channel) {
+        ShortBuffer sb = view(frameByteOff, n).asShortBuffer();
+        int count = n * channels;
+        if (shortScratch == null || shortScratch.length < count) shortScratch = new short[count];
+        sb.get(shortScratch, 0, count);
+        final float k = 1f / 32768f;
+        for (int i = 0, j = channel; i < n; i++, j += channels) {
+            dst[off + i] = shortScratch[j] * k;
+        }
+    }
+
+    private void readInts(float[] dst, int off, int n, int frameByteOff, int channel) {
+        ByteBuffer bb = view(frameByteOff, n);
+        int count = n * channels;
+        if (isFloat) {
+            FloatBuffer fb = bb.asFloatBuffer();
+            if (channels == 1) {
+                fb.get(dst, off, n);
+                return;
+            }
+            if (floatScratch == null || floatScratch.length < count) floatScratch = new float[count];
+            fb.get(floatScratch, 0, count);
+            for (int i = 0, j = channel; i < n; i++, j += channels) dst[off + i] = floatScratch[j];
+        } else {
+            IntBuffer ib = bb.asIntBuffer();
+            if (intScratch == null || intScratch.length < count) intScratch = new int[count];
+            ib.get(intScratch, 0, count);
+            final float k = 1f / 2147483648f;
+            for (int i = 0, j = channel; i < n; i++, j += channels) dst[off + i] = intScratch[j] * k;
+        }
+    }
+
+    /** 8/24-bit and padded frame layouts: one bulk copy, then assemble bytes. */
+    private void readGeneric(float[] dst, int off, int n, int byteOff) {
+        int span = (n - 1) * frameSize + bytesPerSample;
+        if (byteScratch == null || byteScratch.length < span) byteScratch = new byte[span];
+        ByteBuffer bb = data.duplicate();
+        bb.position(byteOff);
+        bb.get(byteScratch, 0, span);
+        byte[] b = byteScratch;
+        switch (bytesPerSample) {
+            case 1:
+                // 8 bit WAV is unsigned
+                for (int i = 0, p = 0; i < n; i++, p += frameSize) {
+                    dst[off + i] = ((b[p] & 0xff) - 128) / 128f;
+                }
+                break;
+            case 2:
+                for (int i = 0, p = 0; i < n; i++, p += frameSize) {
+                    dst[off + i] = (short) ((b[p] & 0xff) | (b[p + 1] << 8)) / 32768f;
+                }
+                break;
+            case 3:
+                for (int i = 0, p = 0; i < n; i++, p += frameSize) {
+                    int raw = (b[p] & 0xff) | ((b[p + 1] & 0xff) << 8) | (b[p + 2] << 16);
+                    dst[off + i] = raw / 8388608f;
+                }
+                break;
+            default:
+                for (int i = 0, p = 0; i < n; i++, p += frameSize) {
+                    int raw = (b[p] & 0xff) | ((b[p + 1] & 0xff) << 8)
+                            | ((b[p + 2] & 0xff) << 16) | (b[p + 3] << 24);
+                    dst[off + i] = isFloat ? Float.intBitsToFloat(raw) : raw / 2147483648f;
+                }
+        }
+    }
+
+    private ByteBuffer view(int byteOff, int frames) {
+        ByteBuffer bb = data.duplicate();
+        bb.position(byteOff);
+        bb.limit(byteOff + frames * frameSize);
+        return bb.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long pos) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, pos + dst.position());
+            if (n < 0) throw new IOException("Unexpected end of WAV file");
+        }
+    }
+
+    private static int fourCC(String s) {
+        return (s.charAt(0)) | (s.charAt(1) << 8) | (s.charAt(2) << 16) | (s.charAt(3) << 24);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ece420_parametric_eq;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes 16-bit PCM WAV straight to disk as blocks arrive.
+ * A header with zero sizes goes out when the file is opened; close() patches the
+ * RIFF and data sizes in place, so nothing but the current block is held in memory.
+ */
+public final class WavWriter implements AutoCloseable {
+    private static final int  HEADER_SIZE = 44;
+    private static final long MAX_DATA    = 0xFFFFFFFFL - 36;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private long dataBytes;
+    private boolean closed;
+
+    public WavWriter(String path, int sampleRate, int channels) throws IOException {
+        file    = new RandomAccessFile(new File(path), "rw");
+        channel = file.getChannel();
+        try {
+            channel.truncate(0);
+            ByteBuffer hdr = header(sampleRate, channels, 0);
+            while (hdr.hasRemaining()) channel.write(hdr);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /** Bytes of PCM written so far. */
+    public long dataBytes() { return dataBytes; }
+
+    /** Append buf[position, limit) as PCM. The buffer's position is advanced to its limit. */
+    public void write(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            dataBytes += channel.write(buf);
+        }
+    }
+
+    /** Patch the header sizes and close the file. Safe to call more than once. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            long data = Math.min(dataBytes, MAX_DATA);
+            ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            size.putInt(0, (int) (data + 36));
+            channel.write(size, 4);
+            size.clear();
+            size.putInt(0, (int) data);
+            channel.write(size, 40);
+            channel.force(false);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static ByteBuffer header(int sampleRate, int channels, int dataSize) {
+        int blockAlign = channels * 2;
+        ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(new byte[]{'R', 'I', 'F', 'F'}).putInt(dataSize + 36)
+         .put(new byte[]{'W', 'A', 'V', 'E'})
+         .put(new byte[]{'f', 'm', 't', ' '}).putInt(16)
+         .putShort((short) 1)                  // PCM
+         .putShort((short) channels)
+         .putInt(sampleRate)
+         .putInt(sampleRate * blockAlign)      // byte rate
+         .putShort((short) blockAlign)
+         .putShort((short) 16)
+         .put(new byte[]{'d', 'a', 't', 'a'}).putInt(dataSize);
+        b.flip();
+        return b;
+    }
+}
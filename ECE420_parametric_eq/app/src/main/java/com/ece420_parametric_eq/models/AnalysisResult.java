@@ -4,9 +4,24 @@ public class  AnalysisResult {
     public final float[] freqs;     // X‑axis: frequencies
     public final float[] rawDb;     // raw curve in dB
     public final float[] smoothDb;  // smoothed/normalized curve
+    public final long fullResHandle; // native full-resolution spectrum, 0 if not kept (see DSPProcessor.fetchFullResolution)
+    public final StageMetrics metrics; // how the result was produced, EMPTY unless PipelineMetrics is on
     public AnalysisResult(float[] freqs, float[] rawDb, float[] smoothDb) {
+        this(freqs, rawDb, smoothDb, 0L);
+    }
+    public AnalysisResult(float[] freqs, float[] rawDb, float[] smoothDb, long fullResHandle) {
+        this(freqs, rawDb, smoothDb, fullResHandle, StageMetrics.EMPTY);
+    }
+    public AnalysisResult(float[] freqs, float[] rawDb, float[] smoothDb, long fullResHandle,
+                          StageMetrics metrics) {
         this.freqs    = freqs;
         this.rawDb    = rawDb;
         this.smoothDb = smoothDb;
+        this.fullResHandle = fullResHandle;
+        this.metrics  = metrics;
+    }
+    /** Same curves (shared, not copied) with metrics attached. */
+    public AnalysisResult withMetrics(StageMetrics metrics) {
+        return new AnalysisResult(freqs, rawDb, smoothDb, fullResHandle, metrics);
     }
 }
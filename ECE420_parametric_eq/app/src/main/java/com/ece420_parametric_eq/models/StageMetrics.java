@@ -0,0 +1,47 @@
+package com.ece420_parametric_eq.models;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Per-stage timings, counters and peak byte gauges, summed over part of a measurement session. */
+public class StageMetrics {
+    public static final StageMetrics EMPTY = new StageMetrics(
+            new TreeMap<>(), new TreeMap<>(), new TreeMap<>(), new TreeMap<>());
+
+    public final Map<String, Long>    stageNanos;  // total wall time per stage
+    public final Map<String, Integer> stageCalls;  // times each stage ran
+    public final Map<String, Long>    counters;    // summed deltas
+    public final Map<String, Long>    peakBytes;   // largest value seen per gauge
+
+    public StageMetrics(Map<String, Long> stageNanos, Map<String, Integer> stageCalls,
+                        Map<String, Long> counters, Map<String, Long> peakBytes) {
+        this.stageNanos = Collections.unmodifiableMap(stageNanos);
+        this.stageCalls = Collections.unmodifiableMap(stageCalls);
+        this.counters   = Collections.unmodifiableMap(counters);
+        this.peakBytes  = Collections.unmodifiableMap(peakBytes);
+    }
+
+    public double stageMs(String stage) {
+        Long ns = stageNanos.get(stage);
+        return ns != null ? ns / 1e6 : 0.0;
+    }
+
+    /** One line per stage / counter / gauge, for logcat. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> e : stageNanos.entrySet()) {
+            sb.append(String.format(Locale.US, "%-32s %9.2f ms  x%d%n",
+                    e.getKey(), e.getValue() / 1e6, stageCalls.get(e.getKey())));
+        }
+        for (Map.Entry<String, Long> e : counters.entrySet()) {
+            sb.append(String.format(Locale.US, "%-32s %12d%n", e.getKey(), e.getValue()));
+        }
+        for (Map.Entry<String, Long> e : peakBytes.entrySet()) {
+            sb.append(String.format(Locale.US, "%-32s %9.1f KB peak%n", e.getKey(), e.getValue() / 1024.0));
+        }
+        return sb.toString();
+    }
+}
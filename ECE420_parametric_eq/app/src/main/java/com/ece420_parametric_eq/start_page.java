@@ -44,8 +44,6 @@ import com.jjoe64.graphview.series.LineGraphSeries;
 import com.jjoe64.graphview.series.PointsGraphSeries;
 
 //file wiritng stuf f
-import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -57,9 +55,6 @@ public class start_page extends Activity {
     private ToggleButton buttonStartStop;
     public LineGraphSeries<DataPoint> rawGraphData;
     public PointsGraphSeries<DataPoint> rawGraphSteps;
-    private boolean ready = false;
-    private Handler handler = new Handler(); // used for timer for chekcing for ready
-    private Runnable readyChecker;
 
     // === AUDIO RECORDING CONSTANTS ===
     private static final int SAMPLE_RATE = 48000; // matching naative sampelr ate
@@ -68,8 +63,7 @@ public class start_page extends Activity {
     private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
     private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
 
-    private AudioRecord audioRecord;
-    private boolean isRecording = false;
+    private StreamingRecorder recorder;
     private String outputFilePath;
 
     @Override
@@ -79,6 +73,17 @@ public class start_page extends Activity {
         setContentView(R.layout.start_page);
         super.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
 
+        // adb shell setprop log.tag.PipelineMetrics DEBUG, then restart the app, to record
+        // stage timings; trace.json is written next to the session file
+        boolean metrics = Log.isLoggable(PipelineMetrics.TAG, Log.DEBUG);
+        PipelineMetrics.setEnabled(metrics);
+        DSPProcessor.setMetricsEnabled(metrics);
+        // adb shell setprop log.tag.AutoEqWorker DEBUG to fit with the Python AutoEQ instead of
+        // PEQOptimizer; the interpreter warms up while the sweep is being recorded
+        if (Log.isLoggable(AutoEqWorker.TAG, Log.DEBUG)) {
+            AutoEqWorker.start(this);
+        }
+
         buttonStartStop = findViewById(R.id.button_start_stop);
         buttonNext = findViewById(R.id.next_button);
 
@@ -91,10 +96,8 @@ public class start_page extends Activity {
         buttonStartStop.setOnCheckedChangeListener((buttonView, isChecked) -> {
             if (isChecked) {
                 Log.d(TAG, "Toggle ON → Start recording");
+                buttonNext.setVisibility(View.INVISIBLE);
                 startRecording();
-                startReadyCheck();
-                buttonNext.setVisibility(View.VISIBLE);
-                ready = false;
             } else {
                 Log.d(TAG, "Toggle OFF → Stop and save recording");
                 stopRecording();
@@ -110,46 +113,6 @@ public class start_page extends Activity {
         });
     }
 
-    private void startReadyCheck() {
-        readyChecker = new Runnable() {
-            @Override
-            public void run() {
-                if (ready) {
-//                    buttonStart.setVisibility(View.VISIBLE);
-                    buttonNext.setVisibility(View.VISIBLE);
-                    Log.d(TAG, "ready for next page");
-                    handler.removeCallbacks(readyChecker);
-                } else {
-                    handler.postDelayed(this, 100);
-                }
-            }
-        };
-        handler.post(readyChecker);
-    }
-
-    private void writeWavFile(byte[] audioData, String filePath) throws IOException {
-        FileOutputStream out = new FileOutputStream(filePath);
-        int totalDataLen = audioData.length + 36;
-        int byteRate = SAMPLE_RATE * 2;
-
-        //this is setting up wav file format
-        out.write(new byte[]{
-                'R', 'I', 'F', 'F',
-                (byte) (totalDataLen & 0xff), (byte) ((totalDataLen >> 8) & 0xff), (byte) ((totalDataLen >> 16) & 0xff), (byte) ((totalDataLen >> 24) & 0xff),
-                'W', 'A', 'V', 'E',
-                'f', 'm', 't', ' ',
-                16, 0, 0, 0, 1, 0, 1, 0,
-                (byte) (SAMPLE_RATE & 0xff), (byte) ((SAMPLE_RATE >> 8) & 0xff), (byte) ((SAMPLE_RATE >> 16) & 0xff), (byte) ((SAMPLE_RATE >> 24) & 0xff),
-                (byte) (byteRate & 0xff), (byte) ((byteRate >> 8) & 0xff), (byte) ((byteRate >> 16) & 0xff), (byte) ((byteRate >> 24) & 0xff),
-                2, 0, 16, 0,
-                'd', 'a', 't', 'a',
-                (byte) (audioData.length & 0xff), (byte) ((audioData.length >> 8) & 0xff), (byte) ((audioData.length >> 16) & 0xff), (byte) ((audioData.length >> 24) & 0xff)
-        });
-
-        out.write(audioData);
-        out.close();
-    }
-
     private void startRecording() {
         int bufferSize = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT);
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
@@ -157,40 +120,48 @@ public class start_page extends Activity {
             return;
         }
 
-        audioRecord = new AudioRecord(AUDIO_SOURCE, SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT, bufferSize);
-        byte[] buffer = new byte[bufferSize];
-        isRecording = true;
+        AudioRecord audioRecord = new AudioRecord(AUDIO_SOURCE, SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT, bufferSize);
         outputFilePath = getExternalFilesDir(null).getAbsolutePath() + "/recorded_audio.wav";
 
-        new Thread(() -> {
-            ByteArrayOutputStream rawAudio = new ByteArrayOutputStream();
-            try {
-                audioRecord.startRecording();
-
-                while (isRecording) {
-                    int read = audioRecord.read(buffer, 0, buffer.length);
-                    if (read > 0) {
-                        rawAudio.write(buffer, 0, read);
-                    }
-                }
-
-                audioRecord.stop();
-                audioRecord.release();
-                audioRecord = null;
-
-                writeWavFile(rawAudio.toByteArray(), outputFilePath);
-                Log.d(TAG, "Recording saved to: " + outputFilePath);
-                ready = true;
-
-
-            } catch (Exception e) {
-                Log.e(TAG, "Recording failed", e);
-            }
-        }).start();
+        // deconvolve while recording so the response is ready when the file is
+        PipelineMetrics.startSession();
+        DSPProcessor.initDefaultConfig();
+        DataStore.putStreamedResult(null, null);
+        final DeconvStream dc = new DeconvStream();
+
+        // blocks go straight to disk; the file is finalized before the listener fires
+        try {
+            recorder = new StreamingRecorder(audioRecord, bufferSize, outputFilePath, SAMPLE_RATE, 1,
+                    new StreamingRecorder.Listener() {
+                        @Override
+                        public void onSaved(String path) {
+                            DataStore.putStreamedResult(path, dc.finish());
+                            dc.close();
+                            if (PipelineMetrics.isEnabled()) DSPProcessor.drainMetrics();
+                            runOnUiThread(() -> {
+                                buttonNext.setVisibility(View.VISIBLE);
+                                Log.d(TAG, "ready for next page");
+                            });
+                        }
+
+                        @Override
+                        public void onFailed(Exception e) {
+                            Log.e(TAG, "Recording failed", e);
+                            dc.close();
+                        }
+                    });
+        } catch (IOException e) {
+            Log.e(TAG, "Could not open " + outputFilePath, e);
+            audioRecord.release();
+            dc.close();
+            return;
+        }
+        recorder.setBlockSink(dc::push);
+        recorder.start();
     }
 
     private void stopRecording() {
-        isRecording = false;
+        if (recorder != null) recorder.stop();
     }
 
 
@@ -213,19 +184,9 @@ public class start_page extends Activity {
     }
 
     private void stopRecordingSafely() {
-        if (audioRecord != null) {
-            try {
-                if (isRecording) {
-                    audioRecord.stop();
-                }
-            } catch (IllegalStateException e) {
-                Log.e(TAG, "error AudioRecord stop", e);
-            }
-
-            audioRecord.release();
-            audioRecord = null;
-            isRecording = false;
-            Log.d(TAG, "AudioRecord released");
+        if (recorder != null && recorder.isRecording()) {
+            recorder.stop();
+            Log.d(TAG, "Recording stopped");
         }
     }
 
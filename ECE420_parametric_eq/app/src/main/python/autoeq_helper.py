@@ -1,25 +1,119 @@
 # app/src/main/python/autoeq_helper.py
 
+from copy import deepcopy
+from time import time
+
+import numpy as np
+
 from autoeq.frequency_response import FrequencyResponse
-from autoeq.constants import PEQ_CONFIGS
+from autoeq.constants import PEQ_CONFIGS, DEFAULT_BIQUAD_OPTIMIZATION_F_STEP, DEFAULT_PREAMP
+from autoeq.peq import PEQ, Peaking, LowShelf, HighShelf, OptimizationFinished
+
+# Filter type codes of fit_arrays, the PEQBand.Type ordinals on the Java side
+TYPE_CODES = {Peaking.__name__: 0, LowShelf.__name__: 1, HighShelf.__name__: 2}
+
+
+class AnytimePEQ(PEQ):
+    """PEQ whose optimizer callback also hands the best filters so far to progress(iterations,
+    loss, bands) every report_every iterations; progress returning False stops the optimizer
+    with those filters, like max_time and target_loss do."""
+    progress = None
+    report_every = 10
+
+    def _callback(self, params):
+        super()._callback(params)
+        n = len(self.history.loss)
+        if self.progress is None or n % self.report_every:
+            return
+        best = int(np.argmin(self.history.loss))
+        self._parse_optimizer_params(self.history.params[best])
+        bands = _encode([self])
+        self._parse_optimizer_params(params)
+        if not self.progress(n, float(self.history.loss[best]), bands):
+            raise OptimizationFinished('Stopped by caller')
+
+
+def _optimize(fr, target, fs, max_time=None, target_loss=None, progress=None, report_every=10):
+    """Desktop workflow on a measured response: compensate, smoothen, equalize, fit 8 + shelves.
+    The fit is FrequencyResponse._optimize_peq_filters with AnytimePEQ in place of PEQ."""
+    start = time()
+    fr.interpolate()
+    fr.center()
+    fr.compensate(target)
+    fr.smoothen()
+    fr.equalize(concha_interference=False)
+
+    config = deepcopy(PEQ_CONFIGS['8_PEAKING_WITH_SHELVES'])
+    optimizer = config.setdefault('optimizer', {})
+    if max_time is not None:
+        # the budget covers the preprocessing above too
+        optimizer['max_time'] = max(max_time - (time() - start), 0.0)
+    if target_loss is not None:
+        optimizer['target_loss'] = target_loss
+
+    eq = FrequencyResponse(name='optimizer', frequency=fr.frequency, equalization=fr.equalization)
+    if DEFAULT_PREAMP:
+        eq.equalization += DEFAULT_PREAMP
+    eq.interpolate(f_step=DEFAULT_BIQUAD_OPTIMIZATION_F_STEP)
+    peq = AnytimePEQ.from_dict(config, eq.frequency, fs, target=eq.equalization)
+    peq.progress = progress
+    peq.report_every = report_every
+    peq.optimize()
+    return [peq]
+
+
+def _encode(peqs):
+    """Flat [preamp_db, type, fc, q, gain_db, type, fc, ...], type from TYPE_CODES; the preamp is
+    the one write_eqapo_parametric_eq writes."""
+    compound = PEQ(peqs[0].f, peqs[0].fs, [])
+    for peq in peqs:
+        for filt in peq.filters:
+            compound.add_filter(filt)
+    out = [float(-compound.max_gain)]
+    for filt in compound.filters:
+        out += [float(TYPE_CODES[filt.__class__.__name__]), float(filt.fc), float(filt.q), float(filt.gain)]
+    return out
+
 
 def run_autoeq(fr_txt_path, target_csv_path, output_eq_path):
     # 1) Load measured and target responses
     harman = FrequencyResponse.read_csv(target_csv_path)
     fr = FrequencyResponse.read_csv(fr_txt_path)
 
-    # 2) Follow your desktop workflow
+    # 2) + 3) Follow your desktop workflow, optimize 8-band + shelves
+    peqs = _optimize(fr, harman, 48000)
+
+    # 4) Write out the EQ file (EQ APO format)
+    fr.write_eqapo_parametric_eq(output_eq_path, peqs)
+
+    # No return needed—file is on disk for Java to display
+
+
+def warm_up():
+    """Runs the lazily loaded parts of the pipeline once on a flat curve, so the first real
+    fit only pays for the optimization. Importing this module already loads numpy, scipy,
+    pandas and matplotlib."""
+    fr = FrequencyResponse(name='warm_up', frequency=[20.0, 1000.0, 20000.0], raw=[0.0, 0.0, 0.0])
     fr.interpolate()
     fr.center()
-    fr.compensate(harman)
     fr.smoothen()
-    fr.equalize(concha_interference=False)
 
-    # 3) Optimize 8-band + shelves
-    config = dict(PEQ_CONFIGS['8_PEAKING_WITH_SHELVES'])
-    peqs = fr.optimize_parametric_eq(config, 48000)
 
-    # 4) Write out the EQ file (EQ APO format)
-    fr.write_eqapo_parametric_eq(output_eq_path, peqs)
+def fit_arrays(freqs, raw, target_freqs, target_raw, fs=48000,
+               max_time=None, target_loss=None, progress=None, report_every=10):
+    """run_autoeq on arrays instead of files.
+
+    Inputs are anything numpy can read: lists, numpy arrays, or Java double[] passed straight
+    through (they expose the buffer protocol). Returns the filters as _encode's flat list of
+    floats, so Java reads it back as one double[].
 
-    # No return needed—file is on disk for Java to display
\ No newline at end of file
+    Anytime mode: max_time (seconds, preprocessing included) and target_loss end the fit early
+    with the best filters found; progress(iterations, loss, encoded_bands) is called every
+    report_every iterations and stops the fit by returning False.
+    """
+    fr = FrequencyResponse(name='measured',
+                           frequency=np.asarray(freqs, dtype=float), raw=np.asarray(raw, dtype=float))
+    target = FrequencyResponse(name='target',
+                               frequency=np.asarray(target_freqs, dtype=float),
+                               raw=np.asarray(target_raw, dtype=float))
+    return _encode(_optimize(fr, target, fs, max_time, target_loss, progress, report_every))
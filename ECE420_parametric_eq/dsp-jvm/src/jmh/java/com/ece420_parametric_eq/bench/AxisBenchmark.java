@@ -0,0 +1,40 @@
+package com.ece420_parametric_eq.bench;
+
+import com.ece420_parametric_eq.ParametricEQUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** logSpace and interpLogFreq of a 700-point target (harman.csv size) onto N points. */
+@State(Scope.Thread)
+public class AxisBenchmark {
+    @Param({"512", "4096", "65536"})
+    public int points;
+
+    private double[] tgtFreqs;
+    private double[] tgtDb;
+    private double[] axis;
+
+    @Setup
+    public void setup() {
+        tgtFreqs = ParametricEQUtils.logSpace(20, 20000, 700);
+        tgtDb    = new double[tgtFreqs.length];
+        for (int i = 0; i < tgtDb.length; i++) {
+            tgtDb[i] = -0.01 * i + Math.cos(i * 0.05);
+        }
+        axis = ParametricEQUtils.logSpace(20, 20000, points);
+    }
+
+    @Benchmark
+    public double[] logSpace() {
+        return ParametricEQUtils.logSpace(20, 20000, points);
+    }
+
+    @Benchmark
+    public double[] interpLogFreq() {
+        return ParametricEQUtils.interpLogFreq(tgtFreqs, tgtDb, axis);
+    }
+}
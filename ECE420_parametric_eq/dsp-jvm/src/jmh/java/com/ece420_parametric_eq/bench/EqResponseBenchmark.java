@@ -0,0 +1,73 @@
+package com.ece420_parametric_eq.bench;
+
+import com.ece420_parametric_eq.BiquadResponseEngine;
+import com.ece420_parametric_eq.EqModel;
+import com.ece420_parametric_eq.ParametricEQUtils;
+import com.ece420_parametric_eq.ResponseCache;
+import com.ece420_parametric_eq.models.PEQBand;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * computeCombinedEQ over display-sized to FFT-sized axes and 1..20 bands, the same curve
+ * summed from ResponseCache hits, and the cost of one band edit in EqModel on the same axes.
+ */
+@State(Scope.Thread)
+public class EqResponseBenchmark {
+    @Param({"128", "512", "4096", "32768"})
+    public int points;
+
+    @Param({"1", "10", "20"})
+    public int bands;
+
+    private double[] freqs;
+    private double[] rawDb;
+    private List<PEQBand> eq;
+    private EqModel model;
+    private BiquadResponseEngine engine;
+    private ResponseCache cache;
+    private double[] curve;
+    private double editGain;
+
+    @Setup
+    public void setup() {
+        freqs = ParametricEQUtils.logSpace(20, 20000, points);
+        rawDb = new double[points];
+        for (int i = 0; i < points; i++) {
+            rawDb[i] = 3 * Math.sin(i * 0.01);
+        }
+        eq = Fixtures.bands(bands);
+        model = new EqModel(freqs, 48000);
+        model.setBands(eq);
+        engine = new BiquadResponseEngine(freqs, 48000);
+        cache  = new ResponseCache((long) points * bands);   // every band fits, so all hits
+        curve  = new double[points];
+        engine.eqCurveDbCached(eq, cache, curve);
+    }
+
+    @Benchmark
+    public double[] computeCombinedEQ() {
+        return ParametricEQUtils.computeCombinedEQ(freqs, rawDb, eq, 48000);
+    }
+
+    @Benchmark
+    public double[] eqCurveCached() {
+        engine.eqCurveDbCached(eq, cache, curve);
+        return curve;
+    }
+
+    /** One drag step on the middle band. */
+    @Benchmark
+    public double[] editOneBand() {
+        PEQBand b = model.band(bands / 2);
+        editGain = -editGain + 0.5;
+        model.setBand(bands / 2, b.fc, b.Q, editGain);
+        return model.curveDb();
+    }
+}
@@ -0,0 +1,83 @@
+package com.ece420_parametric_eq.bench;
+
+import com.ece420_parametric_eq.ParametricEQUtils;
+import com.ece420_parametric_eq.WavWriter;
+import com.ece420_parametric_eq.models.PEQBand;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/** Deterministic inputs shared by the benchmarks. */
+final class Fixtures {
+    private Fixtures() {}
+
+    /** Low shelf, peaking bands spread over the spectrum, high shelf. */
+    static List<PEQBand> bands(int n) {
+        List<PEQBand> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            PEQBand.Type type = i == 0 ? PEQBand.Type.LOW_SHELF
+                    : i == n - 1 && n > 2 ? PEQBand.Type.HIGH_SHELF
+                    : PEQBand.Type.PEAKING;
+            double fc = 30 * Math.pow(600, (i + 0.5) / n);
+            out.add(new PEQBand(type, fc, 0.7 + 0.3 * (i % 4), (i % 2 == 0 ? 4 : -4)));
+        }
+        return out;
+    }
+
+    static File frequencyResponseFile(int lines) throws IOException {
+        File f = File.createTempFile("fr-bench", ".txt");
+        double[] freqs = ParametricEQUtils.logSpace(20, 20000, lines);
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(f))) {
+            for (int i = 0; i < lines; i++) {
+                w.write(String.format(Locale.US, "%.2f\t%.2f\n", freqs[i], 5 * Math.sin(i * 0.02)));
+            }
+        }
+        return f;
+    }
+
+    static File autoEqFile(int filters) throws IOException {
+        File f = File.createTempFile("speaker_eq", ".txt");
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(f))) {
+            w.write("Preamp: -6.2 dB\n");
+            List<PEQBand> b = bands(filters);
+            for (int i = 0; i < b.size(); i++) {
+                PEQBand p = b.get(i);
+                String t = p.type == PEQBand.Type.LOW_SHELF ? "LSC"
+                        : p.type == PEQBand.Type.HIGH_SHELF ? "HSC" : "PK";
+                w.write(String.format(Locale.US, "Filter %d: ON %s Fc %.0f Hz Gain %.1f dB Q %.2f\n",
+                        i + 1, t, p.fc, p.gainDb, p.Q));
+            }
+        }
+        return f;
+    }
+
+    /** Exponential sweep, 20 Hz .. 20 kHz, written as 16-bit mono. */
+    static File sweepWav(int seconds, int fs) throws IOException {
+        File f = File.createTempFile("sweep", ".wav");
+        long frames = (long) seconds * fs;
+        double k = Math.log(1000.0);
+        ByteBuffer buf = ByteBuffer.allocate(2 * 8192).order(ByteOrder.LITTLE_ENDIAN);
+        try (WavWriter w = new WavWriter(f.getPath(), fs, 1)) {
+            for (long i = 0; i < frames; i++) {
+                double t = (double) i / frames;
+                double phase = 2 * Math.PI * 20 * seconds / k * (Math.exp(t * k) - 1);
+                buf.putShort((short) (0.5 * 32767 * Math.sin(phase)));
+                if (!buf.hasRemaining()) {
+                    buf.flip();
+                    w.write(buf);
+                    buf.clear();
+                }
+            }
+            buf.flip();
+            w.write(buf);
+        }
+        return f;
+    }
+}
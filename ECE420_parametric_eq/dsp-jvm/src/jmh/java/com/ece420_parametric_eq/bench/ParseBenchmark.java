@@ -0,0 +1,45 @@
+package com.ece420_parametric_eq.bench;
+
+import com.ece420_parametric_eq.ParametricEQUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/** Text parsers: two-column FR files and AutoEQ (EQ APO) parametric output. */
+@State(Scope.Thread)
+public class ParseBenchmark {
+    @Param({"480", "16384"})
+    public int lines;
+
+    private File frFile;
+    private File eqFile;
+
+    @Setup
+    public void setup() throws IOException {
+        frFile = Fixtures.frequencyResponseFile(lines);
+        eqFile = Fixtures.autoEqFile(10);
+    }
+
+    @TearDown
+    public void tearDown() {
+        frFile.delete();
+        eqFile.delete();
+    }
+
+    @Benchmark
+    public double[][] loadFrequencyResponse() throws IOException {
+        return ParametricEQUtils.loadFrequencyResponse(frFile);
+    }
+
+    @Benchmark
+    public ParametricEQUtils.AutoEQResult loadAutoEQResult() throws IOException {
+        return ParametricEQUtils.loadAutoEQResult(eqFile);
+    }
+}
@@ -0,0 +1,57 @@
+package com.ece420_parametric_eq.bench;
+
+import com.ece420_parametric_eq.WavReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Decoding 48 kHz mono 16-bit recordings of 10 s to 10 min: the whole file at once, as
+ * DataStore.readWavAsFloatArray does, and in fixed blocks as the streaming consumers do.
+ */
+@State(Scope.Thread)
+public class WavDecodeBenchmark {
+    private static final int BLOCK = 4096;
+
+    @Param({"10", "60", "600"})
+    public int seconds;
+
+    private File wav;
+    private final float[] block = new float[BLOCK];
+
+    @Setup
+    public void setup() throws IOException {
+        wav = Fixtures.sweepWav(seconds, 48000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        wav.delete();
+    }
+
+    @Benchmark
+    public float[] readAll() throws IOException {
+        try (WavReader r = new WavReader(wav)) {
+            return r.readAll(0);
+        }
+    }
+
+    @Benchmark
+    public double readBlocks() throws IOException {
+        double acc = 0;
+        try (WavReader r = new WavReader(wav)) {
+            int n;
+            while ((n = r.read(block)) > 0) {
+                acc += block[n - 1];
+            }
+        }
+        return acc;
+    }
+}
@@ -0,0 +1,317 @@
+package com.ece420_parametric_eq.batch;
+
+import com.ece420_parametric_eq.BiquadResponseEngine;
+import com.ece420_parametric_eq.DSPProcessor;
+import com.ece420_parametric_eq.PEQOptimizer;
+import com.ece420_parametric_eq.ParametricEQUtils;
+import com.ece420_parametric_eq.ParametricEQUtils.AutoEQResult;
+import com.ece420_parametric_eq.ResponseCache;
+import com.ece420_parametric_eq.ResponseScore;
+import com.ece420_parametric_eq.WavReader;
+import com.ece420_parametric_eq.models.AnalysisResult;
+import com.ece420_parametric_eq.models.PEQBand;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless version of start_page → ProcessActivity → EqActivity for a whole folder of sweeps:
+ * every WAV is decoded, deconvolved and smoothed (processBuffer), fitted against one target
+ * (PEQOptimizer) and scored (ResponseScore), on a work-stealing pool with one thread per core.
+ * One CSV row per file goes to the report; throughput and latency percentiles go to stdout.
+ * <pre>
+ *   ./gradlew :dsp-jvm:batch --args="sweeps/ harman.csv [-o report.csv] [-j threads] [-r]"
+ * </pre>
+ */
+public final class BatchRunner {
+    // same axes as the app: ProcessActivity's plot points, TargetCurveRegistry's fit axis
+    private static final int    PLOT_POINTS = 480;
+    private static final int    AXIS_POINTS = 512;
+    private static final double AXIS_MIN    = 20;
+    private static final double AXIS_MAX    = 20000;
+    // DSPProcessor.initDefaultConfig's recording settings
+    private static final int    FS          = 48000;
+    private static final float  SWEEP_S     = 4.0f;
+
+    private static final String[] STAGES = { "decode+process", "fit", "score" };
+
+    /** One file's outcome; error is null on success. */
+    private static final class Row {
+        final File file;
+        int sampleRate;
+        double seconds;
+        long latencyNs;
+        final long[] stageNs = new long[STAGES.length];
+        ResponseScore.Result raw, eq;
+        AutoEQResult fit;
+        String error;
+
+        Row(File file) {
+            this.file = file;
+        }
+    }
+
+    private final double[] axis = ParametricEQUtils.logSpace(AXIS_MIN, AXIS_MAX, AXIS_POINTS);
+    private final double[] targetDb;
+    // engines keep scratch buffers, so one per pool thread
+    private final ThreadLocal<BiquadResponseEngine> engine =
+            ThreadLocal.withInitial(() -> new BiquadResponseEngine(axis, FS));
+    private long wallNs;
+
+    private BatchRunner(double[][] target) {
+        // resampled once, like TargetCurveRegistry does for the app
+        ResponseCache cache = ResponseCache.shared();
+        targetDb = cache.resample(ResponseCache.contentId(target[0], target[1]), target[0], target[1],
+                cache.intern(axis));
+    }
+
+    public static void main(String[] args) throws Exception {
+        File dir = null, target = null, out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean recursive = false;
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (a.equals("-o") && i + 1 < args.length)      out = new File(args[++i]);
+            else if (a.equals("-j") && i + 1 < args.length) threads = Math.max(1, Integer.parseInt(args[++i]));
+            else if (a.equals("-r"))                        recursive = true;
+            else if (dir == null)                           dir = new File(a);
+            else if (target == null)                        target = new File(a);
+            else usage("Unexpected argument: " + a);
+        }
+        if (dir == null || target == null) usage(null);
+        if (!dir.isDirectory()) usage("Not a directory: " + dir);
+        if (out == null) out = new File(dir, "batch_report.csv");
+
+        double[][] tgt = ParametricEQUtils.loadFrequencyResponse(target);
+        if (tgt[0].length < 2) usage("No freq,dB rows in " + target);
+
+        List<File> wavs = new ArrayList<>();
+        collectWavs(dir, recursive, wavs);
+        if (wavs.isEmpty()) usage("No .wav files in " + dir);
+
+        // the pool already keeps every core busy; the threaded FFT would only contend for it
+        DSPProcessor.initConfig(FS, 0.30f, 0.5f, SWEEP_S, 31, 3,
+                threads > 1 ? DSPProcessor.FFT_SIMD : DSPProcessor.FFT_AUTO);
+
+        BatchRunner runner = new BatchRunner(tgt);
+        System.out.printf(Locale.US, "%d files, %d threads, target %s%n", wavs.size(), threads, target.getName());
+        List<Row> rows = runner.runAll(wavs, threads);
+        writeReport(out, rows);
+        printSummary(rows, runner.wallNs, out);
+    }
+
+    private static void usage(String problem) {
+        if (problem != null) System.err.println(problem);
+        System.err.println("usage: BatchRunner <wav dir> <target freq,dB file> [-o report.csv] [-j threads] [-r]");
+        System.exit(2);
+    }
+
+    private static void collectWavs(File dir, boolean recursive, List<File> out) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files);
+        for (File f : files) {
+            if (f.isDirectory()) {
+                if (recursive) collectWavs(f, true, out);
+            } else if (f.getName().toLowerCase(Locale.US).endsWith(".wav")) {
+                out.add(f);
+            }
+        }
+    }
+
+    private List<Row> runAll(List<File> wavs, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        long t0 = System.nanoTime();
+        try {
+            List<Future<Row>> futures = new ArrayList<>(wavs.size());
+            for (File f : wavs) futures.add(pool.submit(() -> run(f)));
+            List<Row> rows = new ArrayList<>(wavs.size());
+            for (Future<Row> fu : futures) {
+                try {
+                    rows.add(fu.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());   // run() reports its own failures
+                }
+            }
+            wallNs = System.nanoTime() - t0;
+            return rows;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Whole pipeline for one file; failures end up in the row, not in the pool. */
+    private Row run(File f) {
+        Row row = new Row(f);
+        long t0 = System.nanoTime();
+        try {
+            AnalysisResult measured = measure(f, row);
+            long t1 = System.nanoTime();
+            row.stageNs[0] = t1 - t0;
+
+            // fit on the raw curve like EqActivity, against the resampled target
+            double[] freqs = toDouble(measured.freqs);
+            double[] rawDb = toDouble(measured.rawDb);
+            row.fit = PEQOptimizer.fit(freqs, rawDb, axis, targetDb, FS);
+            long t2 = System.nanoTime();
+            row.stageNs[1] = t2 - t1;
+
+            double[] rawOnAxis = ParametricEQUtils.interpLogFreq(freqs, rawDb, axis);
+            double[] eqedDb = new double[AXIS_POINTS];
+            engine.get().applyEq(rawOnAxis, row.fit.bands, row.fit.preampDb, eqedDb);
+            row.raw = ResponseScore.score(axis, rawOnAxis, axis, targetDb, ResponseScore.Options.DEFAULT);
+            row.eq  = ResponseScore.score(axis, eqedDb, axis, targetDb, ResponseScore.Options.DEFAULT);
+            row.stageNs[2] = System.nanoTime() - t2;
+        } catch (IOException | RuntimeException e) {
+            row.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        row.latencyNs = System.nanoTime() - t0;
+        return row;
+    }
+
+    /** Same two paths as ProcessActivity.processWav: mapped PCM16 in place, otherwise decoded floats. */
+    private static AnalysisResult measure(File f, Row row) throws IOException {
+        try (WavReader wav = new WavReader(f)) {
+            row.sampleRate = wav.sampleRate();
+            row.seconds    = (double) wav.numFrames() / wav.sampleRate();
+            if (wav.sampleRate() != FS) {
+                throw new IOException("Sample rate " + wav.sampleRate() + " Hz, expected " + FS);
+            }
+            if (row.seconds < SWEEP_S) {
+                throw new IOException(String.format(Locale.US, "%.2f s is shorter than one sweep", row.seconds));
+            }
+            ByteBuffer pcm16 = wav.pcm16Data();
+            if (pcm16 != null) {
+                FloatBuffer freqs  = DSPProcessor.allocateResult(PLOT_POINTS);
+                FloatBuffer rawDb  = DSPProcessor.allocateResult(PLOT_POINTS);
+                FloatBuffer smooth = DSPProcessor.allocateResult(PLOT_POINTS);
+                DSPProcessor.processBufferPcm16(pcm16, PLOT_POINTS, DSPProcessor.SMOOTH_SAVGOL, 0f,
+                        freqs, rawDb, smooth);
+                return new AnalysisResult(toArray(freqs), toArray(rawDb), toArray(smooth));
+            }
+            float[] audio = wav.readAll(0);
+            AnalysisResult res = DSPProcessor.processBufferLog(audio, PLOT_POINTS,
+                    DSPProcessor.SMOOTH_SAVGOL, 0f, false);
+            if (res == null) throw new IOException("DSP failed");
+            return res;
+        }
+    }
+
+    private static void writeReport(File out, List<Row> rows) throws IOException {
+        try (BufferedWriter w = new BufferedWriter(new FileWriter(out))) {
+            w.write("file,fs,seconds,latency_ms,");
+            for (String s : STAGES) w.write(s + "_ms,");
+            w.write("mse_raw,mse_eq,rms_eq,max_dev_eq,preference_raw,preference_eq,preamp_db,bands,error\n");
+            for (Row r : rows) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(csv(r.file.getPath())).append(',')
+                  .append(r.sampleRate).append(',')
+                  .append(fmt(r.seconds)).append(',')
+                  .append(fmt(r.latencyNs / 1e6)).append(',');
+                for (long ns : r.stageNs) sb.append(fmt(ns / 1e6)).append(',');
+                if (r.error == null) {
+                    sb.append(fmt(r.raw.mse)).append(',')
+                      .append(fmt(r.eq.mse)).append(',')
+                      .append(fmt(r.eq.rms)).append(',')
+                      .append(fmt(r.eq.maxDeviation)).append(',')
+                      .append(fmt(r.raw.preference)).append(',')
+                      .append(fmt(r.eq.preference)).append(',')
+                      .append(fmt(r.fit.preampDb)).append(',')
+                      .append(csv(bands(r.fit.bands))).append(',');
+                } else {
+                    sb.append(",,,,,,,,").append(csv(r.error));
+                }
+                w.write(sb.append('\n').toString());
+            }
+        }
+    }
+
+    /** "LSC 105 0.70 3.1; PK 1234 1.41 -2.0; ...", the filter lines of speaker_eq.txt in short */
+    private static String bands(List<PEQBand> bands) {
+        StringBuilder sb = new StringBuilder();
+        for (PEQBand b : bands) {
+            if (sb.length() > 0) sb.append("; ");
+            String t = b.type == PEQBand.Type.LOW_SHELF ? "LSC"
+                    : b.type == PEQBand.Type.HIGH_SHELF ? "HSC" : "PK";
+            sb.append(String.format(Locale.US, "%s %.0f %.2f %.1f", t, b.fc, b.Q, b.gainDb));
+        }
+        return sb.toString();
+    }
+
+    private static void printSummary(List<Row> rows, long wallNs, File out) {
+        int failed = 0;
+        long[] lat = new long[rows.size()];
+        double[] stageSum = new double[STAGES.length];
+        double mseRaw = 0, mseEq = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            Row r = rows.get(i);
+            lat[i] = r.latencyNs;
+            if (r.error != null) {
+                failed++;
+                System.err.println(r.file.getName() + ": " + r.error);
+                continue;
+            }
+            for (int s = 0; s < STAGES.length; s++) stageSum[s] += r.stageNs[s];
+            mseRaw += r.raw.mse;
+            mseEq  += r.eq.mse;
+        }
+        Arrays.sort(lat);
+        int ok = rows.size() - failed;
+        double wallS = wallNs / 1e9;
+
+        System.out.printf(Locale.US, "%d ok, %d failed in %.2f s: %.2f files/s%n",
+                ok, failed, wallS, rows.size() / wallS);
+        System.out.printf(Locale.US, "latency ms  p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n",
+                percentile(lat, 50) / 1e6, percentile(lat, 90) / 1e6,
+                percentile(lat, 99) / 1e6, lat[lat.length - 1] / 1e6);
+        if (ok > 0) {
+            StringBuilder sb = new StringBuilder("mean stage ms");
+            for (int s = 0; s < STAGES.length; s++) {
+                sb.append(String.format(Locale.US, "  %s %.1f", STAGES[s], stageSum[s] / ok / 1e6));
+            }
+            System.out.println(sb);
+            System.out.printf(Locale.US, "mean MSE dB^2  raw %.2f  eq %.2f%n", mseRaw / ok, mseEq / ok);
+        }
+        System.out.println("response cache: " + ResponseCache.shared().stats());
+        System.out.println("report: " + out.getPath());
+    }
+
+    /** Nearest-rank percentile of sorted values */
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static String fmt(double v) {
+        return Double.isNaN(v) ? "" : String.format(Locale.US, "%.3f", v);
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static float[] toArray(FloatBuffer b) {
+        float[] out = new float[b.remaining()];
+        b.get(out);
+        return out;
+    }
+
+    private static double[] toDouble(float[] a) {
+        double[] d = new double[a.length];
+        for (int i = 0; i < a.length; i++) d[i] = a[i];
+        return d;
+    }
+}
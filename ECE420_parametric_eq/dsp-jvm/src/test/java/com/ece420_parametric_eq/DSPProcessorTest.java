@@ -0,0 +1,219 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.models.AnalysisResult;
+import com.ece420_parametric_eq.models.PEQBand;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The native measurement pipeline through JNI, against the host build of the library; runs
+ * only with ./gradlew :dsp-jvm:test -PhostNative.
+ * Like dsp_bench --check: sweeps are played through a known room (a few biquads, a delay
+ * and a little noise) and the measured response must come out as the room's analytic one.
+ * DeconvStream must give what the batch path gives for the same recording.
+ */
+public class DSPProcessorTest {
+    private static final int FS = 48000;
+    private static final float SWEEP_S = 1.0f;       // short sweeps keep the test quick
+    private static final float MARKER_SILENCE = 0.5f;
+    private static final int SWEEPS = 3;
+    private static final int POINTS = 480;
+
+    // same band the app plays, see kSweepF1/kSweepF2 in measurement.h
+    private static final double SWEEP_F1 = 10, SWEEP_F2 = 21000;
+
+    private static final PEQBand[] ROOM = {
+            new PEQBand(PEQBand.Type.LOW_SHELF, 120, 0.7, 6),
+            new PEQBand(PEQBand.Type.PEAKING, 2500, 1.5, -5),
+            new PEQBand(PEQBand.Type.HIGH_SHELF, 8000, 0.7, -4),
+    };
+
+    private static float[] recording;
+
+    @BeforeClass
+    public static void setUp() {
+        DSPProcessor.initConfig(FS, 0.30f, MARKER_SILENCE, SWEEP_S, 31, 3);
+        recording = makeRecording(new double[SWEEPS]);
+    }
+
+    @Test
+    public void processBufferLogFindsTheRoom() {
+        AnalysisResult r = DSPProcessor.processBufferLog(recording, POINTS,
+                DSPProcessor.SMOOTH_OCTAVE, 12f, false);
+        assertNotNull(r);
+        assertEquals(POINTS, r.freqs.length);
+        double worst = worstDeviationFromRoom(r.freqs, r.smoothDb);
+        assertTrue("max deviation from room " + worst + " dB", worst < 1.0);
+    }
+
+    @Test
+    public void streamedFloatMatchesBatch() {
+        AnalysisResult batch = DSPProcessor.processBuffer(recording);
+        AnalysisResult streamed;
+        try (DeconvStream dc = new DeconvStream()) {
+            // block sizes that do not line up with the stream's own
+            for (int off = 0; off < recording.length; off += 777) {
+                dc.push(recording, off, Math.min(777, recording.length - off));
+            }
+            streamed = dc.finish();
+        }
+        assertSameResponse(batch, streamed, 0.01);
+    }
+
+    @Test
+    public void streamedPcm16MatchesBatchOfSameSamples() {
+        // the batch path sees the PCM16-quantised samples too, so only the paths differ
+        float[] quantised = new float[recording.length];
+        ByteBuffer pcm = ByteBuffer.allocateDirect(2 * 1024).order(ByteOrder.nativeOrder());
+        AnalysisResult streamed;
+        try (DeconvStream dc = new DeconvStream()) {
+            for (int off = 0; off < recording.length; off += 1024) {
+                int n = Math.min(1024, recording.length - off);
+                pcm.clear();
+                for (int i = 0; i < n; i++) {
+                    short s = (short) Math.max(-32768, Math.min(32767, Math.round(recording[off + i] * 32768)));
+                    pcm.putShort(s);
+                    quantised[off + i] = s / 32768f;
+                }
+                dc.push(pcm, n);
+            }
+            streamed = dc.finish();
+        }
+        assertSameResponse(DSPProcessor.processBuffer(quantised), streamed, 0.01);
+    }
+
+    @Test
+    public void streamedSingleSweepMatchesBatch() {
+        float[] one = makeRecording(new double[1]);
+        AnalysisResult streamed;
+        try (DeconvStream dc = new DeconvStream()) {
+            dc.push(one, 0, one.length);
+            streamed = dc.finish();
+        }
+        assertSameResponse(DSPProcessor.processBuffer(one), streamed, 0.01);
+    }
+
+    @Test
+    public void streamedAveragesEverySweepLikeBatch() {
+        // the 2.5 kHz dip changes from sweep to sweep, so the average differs from any one sweep
+        float[] varying = makeRecording(new double[] { 0, 3, -3 });
+        AnalysisResult streamed;
+        try (DeconvStream dc = new DeconvStream()) {
+            dc.push(varying, 0, varying.length);
+            streamed = dc.finish();
+        }
+        assertSameResponse(DSPProcessor.processBuffer(varying), streamed, 0.01);
+    }
+
+    // Helpers
+
+    private static void assertSameResponse(AnalysisResult expected, AnalysisResult actual, double tolDb) {
+        assertNotNull(actual);
+        assertEquals(expected.freqs.length, actual.freqs.length);
+        for (int i = 0; i < expected.freqs.length; i++) {
+            assertEquals(expected.freqs[i], actual.freqs[i], 1e-3);
+            if (expected.freqs[i] < 20 || expected.freqs[i] > 20000) continue;
+            assertEquals("raw dB at " + expected.freqs[i] + " Hz", expected.rawDb[i], actual.rawDb[i], tolDb);
+            assertEquals("smooth dB at " + expected.freqs[i] + " Hz", expected.smoothDb[i], actual.smoothDb[i], tolDb);
+        }
+    }
+
+    /** Largest |measured - room| over 100 Hz .. 10 kHz, both relative to their 1 kHz level. */
+    private static double worstDeviationFromRoom(float[] freqs, float[] db) {
+        double measuredRef = interp(freqs, db, 1000), roomRef = roomDb(1000);
+        double worst = 0;
+        for (int i = 0; i < freqs.length; i++) {
+            if (freqs[i] < 100 || freqs[i] > 10000) continue;
+            double d = (db[i] - measuredRef) - (roomDb(freqs[i]) - roomRef);
+            worst = Math.max(worst, Math.abs(d));
+        }
+        return worst;
+    }
+
+    private static double roomDb(double f) {
+        double s = Math.sin(Math.PI * f / FS);
+        double db = 0;
+        for (PEQBand b : ROOM) db += ParametricEQUtils.biquadMagnitudeDb(coefficients(b), 4 * s * s);
+        return db;
+    }
+
+    private static double interp(float[] xs, float[] ys, double x) {
+        int i = 1;
+        while (i < xs.length - 1 && xs[i] < x) i++;
+        double t = (x - xs[i - 1]) / (xs[i] - xs[i - 1]);
+        return ys[i - 1] + t * (ys[i] - ys[i - 1]);
+    }
+
+    private static double[] coefficients(PEQBand b) {
+        double[] c = new double[5];
+        ParametricEQUtils.biquadCoefficients(b.type, b.fc, b.Q, b.gainDb, FS, c);
+        return c;
+    }
+
+    /**
+     * silence | sweep | silence | sweep ... through the room, 7 ms late, with -70 dBFS noise.
+     * One sweep per entry of dipChangeDb, added to the room's 2.5 kHz gain for that sweep.
+     */
+    private static float[] makeRecording(double[] dipChangeDb) {
+        float[] sweep = makeSweep();
+        int gap = (int) (MARKER_SILENCE * FS);
+        int delay = FS * 7 / 1000;
+        double[] x = new double[delay + dipChangeDb.length * (gap + sweep.length) + gap + FS];
+        int pos = delay;
+        for (double change : dipChangeDb) {
+            pos += gap;
+            double[] played = new double[x.length];
+            for (int i = 0; i < sweep.length; i++) played[pos + i] = sweep[i];
+            pos += sweep.length;
+            for (PEQBand b : ROOM) {
+                double gain = b.type == PEQBand.Type.PEAKING ? b.gainDb + change : b.gainDb;
+                filter(coefficients(new PEQBand(b.type, b.fc, b.Q, gain)), played);
+            }
+            for (int i = 0; i < x.length; i++) x[i] += played[i];
+        }
+
+        float[] rec = new float[x.length];
+        int seed = 12345;
+        for (int i = 0; i < x.length; i++) {
+            seed = seed * 1664525 + 1013904223;
+            rec[i] = (float) (x[i] + 3.2e-4 * ((seed >>> 8) / (double) (1 << 24) - 0.5));
+        }
+        return rec;
+    }
+
+    /** In place, transposed direct form II. */
+    private static void filter(double[] c, double[] x) {
+        double z1 = 0, z2 = 0;
+        for (int i = 0; i < x.length; i++) {
+            double in = x[i];
+            double out = c[0] * in + z1;
+            z1 = c[1] * in - c[3] * out + z2;
+            z2 = c[2] * in - c[4] * out;
+            x[i] = out;
+        }
+    }
+
+    /** The exponential sweep the inverse filter is built for, with a 5 ms fade. */
+    private static float[] makeSweep() {
+        int n = (int) (SWEEP_S * FS);
+        double alpha = Math.log(SWEEP_F2 / SWEEP_F1) / SWEEP_S;
+        double k = 2 * Math.PI * SWEEP_F1 / alpha;
+        float[] s = new float[n];
+        for (int i = 0; i < n; i++) s[i] = (float) (0.5 * Math.sin(k * (Math.exp(alpha * i / FS) - 1)));
+        int fade = (int) (0.005 * FS);
+        for (int i = 0; i < fade && 2 * fade < n; i++) {
+            float w = (float) i / fade;
+            s[i] *= w;
+            s[n - 1 - i] *= w;
+        }
+        return s;
+    }
+}
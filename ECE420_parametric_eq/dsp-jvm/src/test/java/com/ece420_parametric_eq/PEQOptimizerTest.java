@@ -0,0 +1,246 @@
+package com.ece420_parametric_eq;
+
+import com.ece420_parametric_eq.ParametricEQUtils.AutoEQResult;
+import com.ece420_parametric_eq.models.PEQBand;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PEQOptimizer against peq.py: PEQ._optimizer_loss and PEQ._init_optimizer_params on
+ * hand-computed cases, and the whole fit against autoeq_helper.fit_arrays output written by
+ * src/test/python/make_peq_fixtures.py into resources/peq/expected_autoeq.csv. That file is
+ * checked in; the parity test fails, rather than skips, when it is missing.
+ */
+public class PEQOptimizerTest {
+    private static final double FS = 48000;
+    private static final File HARMAN = new File("../app/src/main/assets/harman.csv");
+
+    // Hand-computed PEQ._optimizer_loss
+
+    @Test
+    public void lossIsZeroWhenFlatFiltersMeetFlatTarget() {
+        double[] f = axis();
+        assertEquals(0.0, PEQOptimizer.loss(f, new double[f.length], FS, flatBands()), 1e-12);
+    }
+
+    @Test
+    public void lossOfConstantTargetIsItsLevel() {
+        double[] f = axis();
+        double[] target = new double[f.length];
+        Arrays.fill(target, -2.5);
+        // sqrt(mean(2.5^2)) below 10 kHz, and the tail mean differs by the same 2.5 dB
+        assertEquals(2.5, PEQOptimizer.loss(f, target, FS, flatBands()), 1e-12);
+    }
+
+    @Test
+    public void lossOnlyCountsTheMeanAbove10k() {
+        double[] f = axis();
+        int ix10k = argMinAbs(f, 10000), last = f.length - 1;
+        double[] target = new double[f.length];
+        Arrays.fill(target, 0, ix10k, 1.0);
+        // +-4 dB around a 0.5 dB mean: only the 0.5 dB survives in the tail term
+        for (int i = ix10k; i < f.length; i++) target[i] = 0.5 + ((i & 1) == 0 ? 4 : -4);
+        double tailMean = 0;
+        for (int i = ix10k; i < f.length; i++) tailMean += target[i];
+        tailMean /= f.length - ix10k;
+        // fr[min_f_ix:max_f_ix] leaves out the 20 kHz point itself
+        double expected = Math.sqrt((ix10k * 1.0 + (last - ix10k) * tailMean * tailMean) / last);
+        assertEquals(expected, PEQOptimizer.loss(f, target, FS, flatBands()), 1e-12);
+    }
+
+    @Test
+    public void lossAddsSharpnessPenaltyOfTooSharpPeak() {
+        double[] f = axis();
+        List<PEQBand> bands = flatBands();
+        PEQBand sharp = new PEQBand(PEQBand.Type.PEAKING, 1000, 6.0, 10.0);
+        bands.set(2, sharp);
+        double[] fr = response(f, sharp);
+
+        // target == filter response, so the error term is zero and only the penalty is left:
+        // gain limit -0.0950 + 20.575 / q = 3.33 dB, sigmoid(100 * (10 / 3.33 - 1)) == 1
+        double gainLimit = -0.09503189270199464 + 20.575128011847003 / sharp.Q;
+        double coef = 1 / (1 + Math.exp(-(sharp.gainDb / gainLimit - 1) * 100));
+        double penalty = 0;
+        for (double v : fr) penalty += (v * coef) * (v * coef);
+        penalty /= fr.length;
+        assertEquals(Math.sqrt(penalty), PEQOptimizer.loss(f, fr, FS, bands), 1e-9);
+    }
+
+    // PEQ._init_optimizer_params order
+
+    @Test
+    public void initFitsHighShelfFirstThenLowShelfOnTheRemainder() {
+        double[] f = axis();
+        double[] target = new double[f.length];
+        Arrays.fill(target, 3.0);
+        List<PEQBand> init = PEQOptimizer.initialBands(f, target, FS);
+        PEQBand low = init.get(0), high = init.get(1);
+        assertEquals(PEQBand.Type.LOW_SHELF, low.type);
+        assertEquals(PEQBand.Type.HIGH_SHELF, high.type);
+
+        // high shelf first: the 1 dB-shelf-weighted average of a flat 3 dB target is 3 dB
+        assertEquals(3.0, high.gainDb, 1e-9);
+        // low shelf second, on what the 3 dB high shelf left over
+        double[] hs = response(f, high);
+        double[] ls1 = response(f, new PEQBand(PEQBand.Type.LOW_SHELF, low.fc, low.Q, 1.0));
+        double dot = 0, sum = 0;
+        for (int i = 0; i < f.length; i++) {
+            dot += (target[i] - hs[i]) * ls1[i];
+            sum += ls1[i];
+        }
+        assertEquals(dot / sum, low.gainDb, 1e-9);
+        // the shelves barely overlap, so low shelf first (which would give exactly 3 dB) only
+        // differs in the 6th decimal; still far outside the tolerance above
+        assertTrue("low shelf saw the high shelf's remainder", Math.abs(low.gainDb - 3.0) > 1e-6);
+    }
+
+    @Test
+    public void initPlacesPeakingFiltersOnBiggestFeaturesLeft() {
+        double[] f = axis();
+        double[] target = new double[f.length];
+        // a wide +5 dB bump at 500 Hz and a narrower -3 dB dip at 3 kHz on a flat line
+        for (int i = 0; i < f.length; i++) {
+            target[i] = 5 * Math.exp(-0.5 * sq(log2(f[i] / 500) / 0.5))
+                      - 3 * Math.exp(-0.5 * sq(log2(f[i] / 3000) / 0.2));
+        }
+        List<PEQBand> init = PEQOptimizer.initialBands(f, target, FS);
+        PEQBand first = init.get(2), second = init.get(3);
+        assertEquals(PEQBand.Type.PEAKING, first.type);
+        assertEquals(500, first.fc, 500 * 0.05);
+        assertTrue(first.gainDb > 0);
+        assertEquals(3000, second.fc, 3000 * 0.05);
+        assertTrue(second.gainDb < 0);
+    }
+
+    // Whole fit
+
+    @Test
+    public void fitEndsBelowItsStartingLoss() throws Exception {
+        double[][] meas = fixture("measured.csv");
+        double[][] tgt  = ParametricEQUtils.loadFrequencyResponse(HARMAN);
+        double[][] eq   = PEQOptimizer.equalization(meas[0], meas[1], tgt[0], tgt[1]);
+
+        double start = PEQOptimizer.loss(eq[0], eq[1], FS, PEQOptimizer.initialBands(eq[0], eq[1], FS));
+        AutoEQResult fit = PEQOptimizer.fit(meas[0], meas[1], tgt[0], tgt[1], FS);
+        double end = PEQOptimizer.loss(eq[0], eq[1], FS, fit.bands);
+        assertTrue("loss " + start + " -> " + end, end < start);
+        // without the preamp, which only moves the level (and the target is not level-matched)
+        assertTrue("EQ'd MSE below raw", mse(meas, tgt, new AutoEQResult(0, fit.bands))
+                < mse(meas, tgt, new AutoEQResult(0, flatBands())));
+    }
+
+    @Test
+    public void fitMatchesPythonReference() throws Exception {
+        File expected = resource("expected_autoeq.csv");
+        assertTrue("missing " + expected + ": run src/test/python/make_peq_fixtures.py and commit it",
+                expected.isFile());
+
+        double[][] meas = fixture("measured.csv");
+        double[][] tgt  = ParametricEQUtils.loadFrequencyResponse(HARMAN);
+        double[][] eq   = PEQOptimizer.equalization(meas[0], meas[1], tgt[0], tgt[1]);
+        AutoEQResult python = readExpected(expected);
+        AutoEQResult java   = PEQOptimizer.fit(meas[0], meas[1], tgt[0], tgt[1], FS);
+
+        // different optimizers (fmin_slsqp vs projected L-BFGS): same objective, similar optimum
+        double lossPy   = PEQOptimizer.loss(eq[0], eq[1], FS, python.bands);
+        double lossJava = PEQOptimizer.loss(eq[0], eq[1], FS, java.bands);
+        assertTrue("loss java " + lossJava + " vs python " + lossPy, lossJava <= lossPy * 1.1 + 0.05);
+
+        double msePy   = mse(meas, tgt, python);
+        double mseJava = mse(meas, tgt, java);
+        assertEquals("MSE dB^2", msePy, mseJava, Math.max(1.0, 0.15 * msePy));
+        assertEquals("preamp dB", python.preampDb, java.preampDb, 1.0);
+    }
+
+    // Helpers
+
+    /** The optimizer's own axis, so f[argmin |f - 20 kHz|] is the last point as in fit(). */
+    private static double[] axis() {
+        return PEQOptimizer.generateFrequencies(20, 20000, 1.02);
+    }
+
+    /** fit() layout with every gain at 0 dB. */
+    private static List<PEQBand> flatBands() {
+        List<PEQBand> bands = new ArrayList<>();
+        bands.add(new PEQBand(PEQBand.Type.LOW_SHELF, 105, 0.7, 0));
+        bands.add(new PEQBand(PEQBand.Type.HIGH_SHELF, 10000, 0.7, 0));
+        for (int i = 0; i < 8; i++) bands.add(new PEQBand(PEQBand.Type.PEAKING, 1000, 1.0, 0));
+        return bands;
+    }
+
+    private static double[] response(double[] f, PEQBand b) {
+        double[] c = new double[5];
+        ParametricEQUtils.biquadCoefficients(b.type, b.fc, b.Q, b.gainDb, FS, c);
+        double[] out = new double[f.length];
+        for (int i = 0; i < f.length; i++) {
+            double s = Math.sin(Math.PI * f[i] / FS);
+            out[i] = ParametricEQUtils.biquadMagnitudeDb(c, 4 * s * s);
+        }
+        return out;
+    }
+
+    /** MSE vs target of raw + EQ + preamp on the 512-point display axis, as EqActivity shows it. */
+    private static double mse(double[][] meas, double[][] tgt, AutoEQResult eq) {
+        double[] axis = ParametricEQUtils.logSpace(20, 20000, 512);
+        double[] raw = ParametricEQUtils.interpLogFreq(meas[0], meas[1], axis);
+        double[] eqed = new double[axis.length];
+        new BiquadResponseEngine(axis, FS).applyEq(raw, eq.bands, eq.preampDb, eqed);
+        return ResponseScore.mse(axis, eqed, tgt[0], tgt[1]);
+    }
+
+    private static AutoEQResult readExpected(File file) throws IOException {
+        PEQBand.Type[] types = PEQBand.Type.values();
+        double preamp = 0;
+        List<PEQBand> bands = new ArrayList<>();
+        try (BufferedReader rd = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = rd.readLine()) != null) {
+                String[] p = line.trim().split(",");
+                if (p[0].equals("preamp")) {
+                    preamp = Double.parseDouble(p[1]);
+                } else if (p.length == 4) {
+                    bands.add(new PEQBand(types[Integer.parseInt(p[0])], Double.parseDouble(p[1]),
+                            Double.parseDouble(p[2]), Double.parseDouble(p[3])));
+                }
+            }
+        }
+        return new AutoEQResult(preamp, bands);
+    }
+
+    private static double[][] fixture(String name) throws IOException, URISyntaxException {
+        return ParametricEQUtils.loadFrequencyResponse(resource(name));
+    }
+
+    private static File resource(String name) throws URISyntaxException {
+        File dir = new File(PEQOptimizerTest.class.getResource("/peq/measured.csv").toURI()).getParentFile();
+        return new File(dir, name);
+    }
+
+    private static int argMinAbs(double[] xs, double x) {
+        int best = 0;
+        for (int i = 1; i < xs.length; i++) {
+            if (Math.abs(xs[i] - x) < Math.abs(xs[best] - x)) best = i;
+        }
+        return best;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+
+    private static double sq(double x) {
+        return x * x;
+    }
+}
@@ -0,0 +1,50 @@
+# dsp-jvm/src/test/python/make_peq_fixtures.py
+#
+# Writes the reference fit PEQOptimizerTest compares the Java optimizer against:
+# autoeq_helper.fit_arrays on test resource peq/measured.csv and the bundled harman.csv.
+# Needs the autoeq package (pip install autoeq) and its numpy/scipy. From the repo root:
+#
+#   python3 dsp-jvm/src/test/python/make_peq_fixtures.py
+#
+# Output: dsp-jvm/src/test/resources/peq/expected_autoeq.csv, "preamp,<dB>" followed by one
+# "type,fc,q,gain" row per filter in fit_arrays order (type is the PEQBand.Type ordinal).
+
+import csv
+import os
+import sys
+
+ROOT = os.path.abspath(os.path.join(os.path.dirname(__file__), '..', '..', '..', '..'))
+sys.path.insert(0, os.path.join(ROOT, 'app', 'src', 'main', 'python'))
+
+import autoeq_helper  # noqa: E402
+
+RESOURCES = os.path.join(ROOT, 'dsp-jvm', 'src', 'test', 'resources', 'peq')
+
+
+def read_curve(path):
+    freqs, db = [], []
+    with open(path) as fh:
+        for row in csv.reader(fh):
+            try:
+                freqs.append(float(row[0]))
+                db.append(float(row[1]))
+            except (ValueError, IndexError):
+                continue
+    return freqs, db
+
+
+def main():
+    freqs, raw = read_curve(os.path.join(RESOURCES, 'measured.csv'))
+    tgt_freqs, tgt = read_curve(os.path.join(ROOT, 'app', 'src', 'main', 'assets', 'harman.csv'))
+    out = autoeq_helper.fit_arrays(freqs, raw, tgt_freqs, tgt, 48000)
+
+    path = os.path.join(RESOURCES, 'expected_autoeq.csv')
+    with open(path, 'w') as fh:
+        fh.write('preamp,%.6f\n' % out[0])
+        for i in range(1, len(out), 4):
+            fh.write('%d,%.6f,%.6f,%.6f\n' % (int(out[i]), out[i + 1], out[i + 2], out[i + 3]))
+    print('wrote', path)
+
+
+if __name__ == '__main__':
+    main()